@@ -24,7 +24,7 @@ public class SqlBuilder {
      * @param params
      * @throws SQLException
      */
-    private void buildParameters(PreparedStatement pstmt, List<Param> params) throws SQLException {
+    public static void buildParameters(PreparedStatement pstmt, List<Param> params) throws SQLException {
         int index = 1;
         StringBuilder builder = null;
         if (log.isDebugEnabled()) {
@@ -59,7 +59,7 @@ public class SqlBuilder {
      * @param pstmt
      * @param param
      */
-    private void fillParameter(int index, PreparedStatement pstmt, Param param) throws SQLException {
+    public static void fillParameter(int index, PreparedStatement pstmt, Param param) throws SQLException {
         if (param.obj == null) {
             pstmt.setObject(index, param.obj);
             return;
@@ -1,10 +1,37 @@
 package com.reign.jdbc;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * @ClassName: SqlFactory
- * @Description: TODO
+ * @Description: SQL工厂，按标识登记SQL，获取时没有登记的标识直接作为SQL返回
  * @Author: wuwx
  * @Date: 2021-04-02 10:22
  **/
 public class SqlFactory  {
+
+    //标识->SQL
+    private final Map<String, String> sqlMap = new ConcurrentHashMap<>();
+
+    /**
+     * 登记SQL
+     *
+     * @param sqlId
+     * @param sql
+     */
+    public void register(String sqlId, String sql) {
+        sqlMap.put(sqlId, sql);
+    }
+
+    /**
+     * 根据标识获取SQL
+     *
+     * @param sqlId
+     * @return 没有登记时返回sqlId本身
+     */
+    public String get(String sqlId) {
+        String sql = sqlMap.get(sqlId);
+        return null == sql ? sqlId : sql;
+    }
 }
@@ -131,7 +131,7 @@ public class SqlFormatter {
             case String:
                 return getValue((String) obj.obj);
             case Date:
-                return "'" + DateUtil.formatDate((Date) obj.obj, DateUtil.DATETIME_FULLHYPHEN);
+                return "'" + DateUtil.formatDate((Date) obj.obj, DateUtil.DATETIME_FULLHYPHEN) + "'";
             default:
                 break;
         }
@@ -0,0 +1,58 @@
+package com.reign.jdbc.orm;
+
+/**
+ * @ClassName: FieldAccessor
+ * @Description: 属性访问器，在实体注册时生成，替代每次调用时的setAccessible以及Field.get/set
+ * @Author: wuwx
+ * @Date: 2021-04-13 10:05
+ **/
+public interface FieldAccessor {
+
+    /**
+     * 获取属性值，基本类型会装箱
+     *
+     * @param obj
+     * @return
+     */
+    Object get(Object obj);
+
+    /**
+     * 设置属性值
+     *
+     * @param obj
+     * @param value
+     */
+    void set(Object obj, Object value);
+
+    /**
+     * 获取int属性值，int/Integer属性不装箱
+     *
+     * @param obj
+     * @return
+     */
+    int getInt(Object obj);
+
+    /**
+     * 获取long属性值，long/Long属性不装箱
+     *
+     * @param obj
+     * @return
+     */
+    long getLong(Object obj);
+
+    /**
+     * 设置int属性值
+     *
+     * @param obj
+     * @param value
+     */
+    void setInt(Object obj, int value);
+
+    /**
+     * 设置long属性值
+     *
+     * @param obj
+     * @param value
+     */
+    void setLong(Object obj, long value);
+}
@@ -0,0 +1,295 @@
+package com.reign.jdbc.orm;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * @ClassName: FieldAccessors
+ * @Description: 属性访问器工厂，只在创建时做一次访问检查。
+ * 有public的getter/setter时通过LambdaMetafactory生成直接调用的访问器，性能接近直接调用；否则使用MethodHandle
+ * @Author: wuwx
+ * @Date: 2021-04-13 10:20
+ **/
+public final class FieldAccessors {
+
+    private FieldAccessors() {
+    }
+
+    /**
+     * 为属性创建访问器，优先使用getter/setter生成的lambda
+     *
+     * @param field
+     * @param getter 可以为null
+     * @param setter 可以为null
+     * @return
+     */
+    public static FieldAccessor of(Field field, Method getter, Method setter) {
+        if (isPublic(getter) && isPublic(setter)) {
+            try {
+                return new LambdaAccessor(field, getter, setter);
+            } catch (Throwable t) {
+                //类加载器不可见等情况，退回MethodHandle
+            }
+        }
+        return of(field);
+    }
+
+    /**
+     * 为属性创建基于MethodHandle的访问器
+     *
+     * @param field
+     * @return
+     */
+    public static FieldAccessor of(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            return new MethodHandleAccessor(field, lookup.unreflectGetter(field), lookup.unreflectSetter(field));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("create field accessor error " + field, e);
+        }
+    }
+
+    private static boolean isPublic(Method method) {
+        return null != method && Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers());
+    }
+
+    /**
+     * 通过LambdaMetafactory生成函数对象，返回类型由调用方的函数接口类型决定
+     *
+     * @param iface      函数接口
+     * @param name       接口方法名
+     * @param erased     接口方法擦除后的类型
+     * @param impl       实现方法
+     * @param instantiated 实例化后的类型
+     * @return
+     * @throws Throwable
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T lambda(Class<?> iface, String name, MethodType erased, MethodHandle impl, MethodType instantiated) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(), name, MethodType.methodType(iface), erased, impl, instantiated);
+        return (T) site.getTarget().invoke();
+    }
+
+    /**
+     * 基于getter/setter生成的lambda访问器，int/long属性额外生成不装箱的函数
+     */
+    private static final class LambdaAccessor implements FieldAccessor {
+
+        private final Function<Object, Object> getter;
+
+        private final BiConsumer<Object, Object> setter;
+
+        //int属性时不为null
+        private final ToIntFunction<Object> intGetter;
+
+        //long属性时不为null
+        private final ToLongFunction<Object> longGetter;
+
+        //int属性时不为null
+        private final ObjIntConsumer<Object> intSetter;
+
+        //long属性时不为null
+        private final ObjLongConsumer<Object> longSetter;
+
+        LambdaAccessor(Field field, Method getterMethod, Method setterMethod) throws Throwable {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> owner = field.getDeclaringClass();
+            Class<?> type = field.getType();
+            Class<?> boxed = MethodType.methodType(type).wrap().returnType();
+            MethodHandle get = lookup.unreflect(getterMethod);
+            MethodHandle set = lookup.unreflect(setterMethod);
+            this.getter = lambda(Function.class, "apply", MethodType.methodType(Object.class, Object.class),
+                    get, MethodType.methodType(boxed, owner));
+            this.setter = lambda(BiConsumer.class, "accept", MethodType.methodType(void.class, Object.class, Object.class),
+                    set, MethodType.methodType(void.class, owner, boxed));
+            if (int.class == type) {
+                this.intGetter = lambda(ToIntFunction.class, "applyAsInt", MethodType.methodType(int.class, Object.class),
+                        get, MethodType.methodType(int.class, owner));
+                this.intSetter = lambda(ObjIntConsumer.class, "accept", MethodType.methodType(void.class, Object.class, int.class),
+                        set, MethodType.methodType(void.class, owner, int.class));
+            } else {
+                this.intGetter = null;
+                this.intSetter = null;
+            }
+            if (long.class == type) {
+                this.longGetter = lambda(ToLongFunction.class, "applyAsLong", MethodType.methodType(long.class, Object.class),
+                        get, MethodType.methodType(long.class, owner));
+                this.longSetter = lambda(ObjLongConsumer.class, "accept", MethodType.methodType(void.class, Object.class, long.class),
+                        set, MethodType.methodType(void.class, owner, long.class));
+            } else {
+                this.longGetter = null;
+                this.longSetter = null;
+            }
+        }
+
+        @Override
+        public Object get(Object obj) {
+            return getter.apply(obj);
+        }
+
+        @Override
+        public void set(Object obj, Object value) {
+            setter.accept(obj, value);
+        }
+
+        @Override
+        public int getInt(Object obj) {
+            return null == intGetter ? ((Number) getter.apply(obj)).intValue() : intGetter.applyAsInt(obj);
+        }
+
+        @Override
+        public long getLong(Object obj) {
+            return null == longGetter ? ((Number) getter.apply(obj)).longValue() : longGetter.applyAsLong(obj);
+        }
+
+        @Override
+        public void setInt(Object obj, int value) {
+            if (null == intSetter) {
+                setter.accept(obj, value);
+            } else {
+                intSetter.accept(obj, value);
+            }
+        }
+
+        @Override
+        public void setLong(Object obj, long value) {
+            if (null == longSetter) {
+                setter.accept(obj, value);
+            } else {
+                longSetter.accept(obj, value);
+            }
+        }
+    }
+
+    /**
+     * 基于MethodHandle的访问器，int/long属性额外生成不装箱的句柄
+     */
+    private static final class MethodHandleAccessor implements FieldAccessor {
+
+        //属性
+        private final Field field;
+
+        //(Object)Object
+        private final MethodHandle getter;
+
+        //(Object,Object)void
+        private final MethodHandle setter;
+
+        //(Object)int，不支持时为null
+        private final MethodHandle intGetter;
+
+        //(Object)long，不支持时为null
+        private final MethodHandle longGetter;
+
+        //(Object,int)void，不支持时为null
+        private final MethodHandle intSetter;
+
+        //(Object,long)void，不支持时为null
+        private final MethodHandle longSetter;
+
+        MethodHandleAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            this.field = field;
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.intGetter = adapt(getter, MethodType.methodType(int.class, Object.class));
+            this.longGetter = adapt(getter, MethodType.methodType(long.class, Object.class));
+            this.intSetter = adapt(setter, MethodType.methodType(void.class, Object.class, int.class));
+            this.longSetter = adapt(setter, MethodType.methodType(void.class, Object.class, long.class));
+        }
+
+        /**
+         * 转换句柄类型，类型不兼容时返回null
+         *
+         * @param handle
+         * @param type
+         * @return
+         */
+        private static MethodHandle adapt(MethodHandle handle, MethodType type) {
+            Class<?> fieldType = handle.type().returnType() == void.class ? handle.type().parameterType(1) : handle.type().returnType();
+            if (!fieldType.isPrimitive() && !Number.class.isAssignableFrom(fieldType)) return null;
+            try {
+                return handle.asType(type);
+            } catch (WrongMethodTypeException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Object get(Object obj) {
+            try {
+                return (Object) getter.invokeExact(obj);
+            } catch (Throwable t) {
+                throw new RuntimeException("get field error " + field.getName(), t);
+            }
+        }
+
+        @Override
+        public void set(Object obj, Object value) {
+            try {
+                setter.invokeExact(obj, value);
+            } catch (Throwable t) {
+                throw new RuntimeException("set field error " + field.getName(), t);
+            }
+        }
+
+        @Override
+        public int getInt(Object obj) {
+            if (null == intGetter) return ((Number) get(obj)).intValue();
+            try {
+                return (int) intGetter.invokeExact(obj);
+            } catch (Throwable t) {
+                throw new RuntimeException("get field error " + field.getName(), t);
+            }
+        }
+
+        @Override
+        public long getLong(Object obj) {
+            if (null == longGetter) return ((Number) get(obj)).longValue();
+            try {
+                return (long) longGetter.invokeExact(obj);
+            } catch (Throwable t) {
+                throw new RuntimeException("get field error " + field.getName(), t);
+            }
+        }
+
+        @Override
+        public void setInt(Object obj, int value) {
+            if (null == intSetter) {
+                set(obj, value);
+                return;
+            }
+            try {
+                intSetter.invokeExact(obj, value);
+            } catch (Throwable t) {
+                throw new RuntimeException("set field error " + field.getName(), t);
+            }
+        }
+
+        @Override
+        public void setLong(Object obj, long value) {
+            if (null == longSetter) {
+                set(obj, value);
+                return;
+            }
+            try {
+                longSetter.invokeExact(obj, value);
+            } catch (Throwable t) {
+                throw new RuntimeException("set field error " + field.getName(), t);
+            }
+        }
+    }
+}
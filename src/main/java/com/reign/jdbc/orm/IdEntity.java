@@ -40,6 +40,19 @@ public interface IdEntity {
      */
     String getKeyValuesByParams(Object... args);
 
+    /**
+     * 是否为单列int/long主键，是时可以通过getLongKeyByObject直接获取主键值，不生成字符串key
+     * @return
+     */
+    boolean isPrimitiveKey();
+
+    /**
+     * 获取单列int/long主键的值，不装箱
+     * @param obj
+     * @return
+     */
+    long getLongKeyByObject(Object obj);
+
     /**
      * 获取主键的列名
      * @return
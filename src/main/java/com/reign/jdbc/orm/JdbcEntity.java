@@ -1,6 +1,7 @@
 package com.reign.jdbc.orm;
 
 import com.reign.jdbc.NameStrategy;
+import com.reign.jdbc.Params;
 import com.reign.jdbc.orm.cache.CacheManager;
 
 /**
@@ -76,6 +77,7 @@ public class JdbcEntity {
 
     public void setFields(JdbcField[] fields) {
         this.fields = fields;
+        buildAccessors(fields);
     }
 
     public IdEntity getId() {
@@ -220,5 +222,67 @@ public class JdbcEntity {
 
     public void setIdFields(JdbcField[] idFields) {
         this.idFields = idFields;
+        buildAccessors(idFields);
+    }
+
+    /**
+     * 生成插入语句的参数，顺序与insertSQL中的列一致：所有属性中除去ignore和insertIgnore的属性
+     *
+     * @param obj
+     * @return
+     */
+    public Params builderInsertParams(Object obj) {
+        Params params = new Params();
+        for (JdbcField field : fields) {
+            if (field.ignore || field.insertIgnore) continue;
+            params.addParam(field.getValue(obj), field.jdbcType);
+        }
+        return params;
+    }
+
+    /**
+     * 生成更新语句的参数，顺序与updateSQL一致：先是SET中除去主键和ignore的属性，再是WHERE中的主键
+     *
+     * @param obj
+     * @return
+     */
+    public Params buildUpdateParams(Object obj) {
+        Params params = new Params();
+        for (JdbcField field : fields) {
+            if (field.ignore || field.isPrimary) continue;
+            params.addParam(field.getValue(obj), field.jdbcType);
+        }
+        for (JdbcField field : idFields) {
+            params.addParam(field.getValue(obj), field.jdbcType);
+        }
+        return params;
+    }
+
+    /**
+     * 生成主键删除语句的参数
+     *
+     * @param args 实体对象，或者按主键顺序的主键值
+     * @return
+     */
+    public Params buildDeleteParams(Object... args) {
+        Params params = new Params();
+        boolean isEntity = args.length == 1 && clazz.isInstance(args[0]);
+        for (int i = 0; i < idFields.length; i++) {
+            Object value = isEntity ? idFields[i].getValue(args[0]) : args[i];
+            params.addParam(value, idFields[i].jdbcType);
+        }
+        return params;
+    }
+
+    /**
+     * 注册实体时为每个属性生成访问器，避免运行时反射
+     *
+     * @param jdbcFields
+     */
+    private void buildAccessors(JdbcField[] jdbcFields) {
+        if (null == jdbcFields) return;
+        for (JdbcField field : jdbcFields) {
+            field.getAccessor();
+        }
     }
 }
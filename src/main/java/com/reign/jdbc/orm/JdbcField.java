@@ -41,6 +41,9 @@ public class JdbcField {
     //数据库类型
     public Type jdbcType;
 
+    //属性访问器，实体注册时生成
+    public FieldAccessor accessor;
+
     public JdbcField(Lang.MyField field, NameStrategy nameStrategy){
         this.field = field.field;
         this.fieldName = Lang.capitalize(field.fieldName);
@@ -51,4 +54,38 @@ public class JdbcField {
         this.writter = field.writter;
 
     }
+
+    /**
+     * 获取属性访问器，未生成时立即生成
+     *
+     * @return
+     */
+    public FieldAccessor getAccessor() {
+        FieldAccessor result = accessor;
+        if (null == result) {
+            result = FieldAccessors.of(field, getter, writter);
+            accessor = result;
+        }
+        return result;
+    }
+
+    /**
+     * 获取对象中该属性的值
+     *
+     * @param obj
+     * @return
+     */
+    public Object getValue(Object obj) {
+        return getAccessor().get(obj);
+    }
+
+    /**
+     * 设置对象中该属性的值
+     *
+     * @param obj
+     * @param value
+     */
+    public void setValue(Object obj, Object value) {
+        getAccessor().set(obj, value);
+    }
 }
@@ -34,6 +34,16 @@ public class ComplexIdEntity implements IdEntity {
         return null;
     }
 
+    @Override
+    public boolean isPrimitiveKey() {
+        return false;
+    }
+
+    @Override
+    public long getLongKeyByObject(Object obj) {
+        throw new UnsupportedOperationException("complex id has no long key");
+    }
+
     @Override
     public String[] getIdColumnName() {
         return new String[0];
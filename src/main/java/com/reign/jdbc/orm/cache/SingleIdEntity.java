@@ -1,5 +1,6 @@
 package com.reign.jdbc.orm.cache;
 
+import com.reign.jdbc.Type;
 import com.reign.jdbc.orm.IdEntity;
 import com.reign.jdbc.orm.JdbcEntity;
 import com.reign.jdbc.orm.JdbcField;
@@ -20,10 +21,14 @@ public class SingleIdEntity implements IdEntity {
 
     private JdbcEntity entity;
 
+    //主键为int/long
+    private boolean primitiveKey;
+
     public SingleIdEntity(JdbcField field, JdbcEntity entity) {
         this.field = field;
         this.entity = entity;
         this.autoGenerator = field.field.getAnnotation(AutoGenerator.class) != null;
+        this.primitiveKey = Type.Int == field.jdbcType || Type.Long == field.jdbcType;
     }
 
     @Override
@@ -37,8 +42,7 @@ public class SingleIdEntity implements IdEntity {
             return;
         }
         try {
-            field.field.setAccessible(true);
-            field.field.set(obj, args[0]);
+            field.setValue(obj, args[0]);
         } catch (Throwable t) {
             throw new RuntimeException("set key error" + t);
         }
@@ -48,8 +52,7 @@ public class SingleIdEntity implements IdEntity {
     @Override
     public Object[] getIdValue(Object obj) {
         try {
-            field.field.setAccessible(true);
-            Object result = field.field.get(obj);
+            Object result = field.getValue(obj);
             return new Object[]{result};
         } catch (Throwable t) {
             throw new RuntimeException("get key error " + t);
@@ -60,8 +63,7 @@ public class SingleIdEntity implements IdEntity {
     public String getKeyValueByObject(Object obj) {
 
         try {
-            field.field.setAccessible(true);
-            Object result = field.field.get(obj);
+            Object result = field.getValue(obj);
             return String.valueOf(result);
         } catch (Throwable t) {
             throw new RuntimeException("get key error " + t);
@@ -73,6 +75,17 @@ public class SingleIdEntity implements IdEntity {
         return String.valueOf(args[0]);
     }
 
+    @Override
+    public boolean isPrimitiveKey() {
+        return primitiveKey;
+    }
+
+    @Override
+    public long getLongKeyByObject(Object obj) {
+        if (!primitiveKey) throw new UnsupportedOperationException("id is not int/long, column:" + field.columnName);
+        return Type.Int == field.jdbcType ? field.getAccessor().getInt(obj) : field.getAccessor().getLong(obj);
+    }
+
     @Override
     public String[] getIdColumnName() {
         return new String[]{field.columnName};
@@ -1,18 +1,26 @@
 package com.reign.memorydb;
 
+import com.reign.common.Lang;
 import com.reign.jdbc.Param;
 import com.reign.jdbc.SqlFactory;
-import com.reign.jdbc.async.SqlFormatter;
 import com.reign.log.Logger;
+import com.reign.memorydb.annotation.SyncDBConfig;
 import com.reign.memorydb.standardthread.StandardRunnable;
 import com.reign.memorydb.standardthread.StandardThread;
 import com.reign.jdbc.orm.JdbcEntity;
 
 import javax.sql.DataSource;
+import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * @ClassName: AsyncDBExecutor
@@ -27,21 +35,35 @@ public final class AsyncDBExecutor {
 
     private static final AsyncDBExecutor instance = new AsyncDBExecutor();
 
-    //消息队列
-    private List<SQLEntry>[] messageArray = new ArrayList[2];
+    //接收队列，业务线程无锁写入预先分配的槽位，由SQL主线程消费
+    private MpscRingBuffer<SQLEntry> ringBuffer;
+
+    //接收队列容量，2的幂
+    private int ringBufferSize = 1 << 16;
+
+    //消息队列，从接收队列取出的SQL，只有持有lock的消费线程访问
+    private List<SQLEntry> messageList = new ArrayList<>();
 
     //幸存者
     private List<SQLEntry> survivorList = new ArrayList<>();
 
-    //游标
-    private volatile int cursor;
+    //未交给执行线程的SQL，表名->主键key->SQL，同一行的后续修改合并到其中，受lock保护
+    private Map<String, Map<String, SQLEntry>> pendingMap = new HashMap<>();
 
     //间隔
     static final int INTERVAL = 500;
 
-    //锁
+    //锁，只在消费线程之间使用：SQL主线程与flushSQL
     private Object lock = new Object();
 
+    //处理接收队列中的槽位
+    private final Consumer<SQLEntry> intakeHandler = new Consumer<SQLEntry>() {
+        @Override
+        public void accept(SQLEntry slot) {
+            onIntake(slot);
+        }
+    };
+
     //ds
     private DataSource ds;
 
@@ -63,6 +85,36 @@ public final class AsyncDBExecutor {
     //连接检查周期,5分钟检查一次
     private long connCheckInterval = 5 * 60 * 1000;
 
+    //是否把同一模板的insert合并为多行SQL
+    private boolean multiRow = false;
+
+    //多行模式下是否把整行update改写为INSERT ... ON DUPLICATE KEY UPDATE
+    private boolean multiRowUpsert = false;
+
+    //多行SQL的大小上限，需小于数据库的max_allowed_packet
+    private int maxPacketSize = 1024 * 1024;
+
+    //队列满时的处理策略
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    //每个执行线程的SQL队列容量
+    private int maxQueueSize = 100000;
+
+    //接收队列满时业务线程最多等待的时间，毫秒
+    private long blockTimeout = 3000L;
+
+    //溢写日志文件
+    private File spillFile = new File("async_sql.journal");
+
+    //溢写日志，策略为SPILL或者上次进程留下了溢写日志时创建，受lock保护
+    private SqlJournal journal;
+
+    //执行队列已满，暂停从接收队列取出SQL，受lock保护
+    private boolean backlogged = false;
+
+    //表名->是否为低优先级的表
+    private final Map<String, Boolean> lowPriorityMap = new ConcurrentHashMap<>();
+
 
     //sql工厂
     private SqlFactory sqlFactory;
@@ -84,9 +136,12 @@ public final class AsyncDBExecutor {
     public synchronized void init(SqlFactory sqlFactory, DataSource ds) {
         if (init) return;
 
-        this.messageArray[0] = new ArrayList<>();
-        this.messageArray[1] = new ArrayList<>();
-        this.cursor = 0;
+        this.ringBuffer = new MpscRingBuffer<>(ringBufferSize, new Supplier<SQLEntry>() {
+            @Override
+            public SQLEntry get() {
+                return new SQLEntry();
+            }
+        });
         this.ds = ds;
         this.sqlFactory = sqlFactory;
         this.executor = new StandardThread("AsyncDBExecutor-thread", new SQLExecutorMainThread(), INTERVAL);
@@ -102,6 +157,15 @@ public final class AsyncDBExecutor {
         this.threadNum = num;
     }
 
+    /**
+     * 设置接收队列容量，必须是2的幂，必须在init之前调用，否则无效
+     *
+     * @param ringBufferSize
+     */
+    public synchronized void setRingBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
     /**
      * 设置batchSize大小，必须在startExecute之前调用，否则无效
      *
@@ -120,11 +184,83 @@ public final class AsyncDBExecutor {
         this.connCheckInterval = connCheckInterval;
     }
 
+    /**
+     * 设置是否开启多行SQL模式，必须在startExecute之前调用，否则无效。
+     * 开启后同一表的insert合并为INSERT ... VALUES (...),(...)，update仍然逐条批量执行
+     *
+     * @param multiRow
+     */
+    public void setMultiRow(boolean multiRow) {
+        this.multiRow = multiRow;
+    }
+
+    /**
+     * 设置多行模式下是否把整行update合并为INSERT ... ON DUPLICATE KEY UPDATE，必须在startExecute之前调用，否则无效，
+     * 只在开启多行模式时生效。改写后的语句与update并不等价，只适用于确认没有以下情况的表：
+     * 对应的行在数据库中已经被删除时会按其他列的默认值重新插入该行；
+     * 表上有主键以外的唯一索引时，冲突会更新另一行而不是报错
+     *
+     * @param multiRowUpsert
+     */
+    public void setMultiRowUpsert(boolean multiRowUpsert) {
+        this.multiRowUpsert = multiRowUpsert;
+    }
+
+    /**
+     * 设置多行SQL的大小上限，必须在startExecute之前调用，否则无效
+     *
+     * @param maxPacketSize
+     */
+    public void setMaxPacketSize(int maxPacketSize) {
+        this.maxPacketSize = maxPacketSize;
+    }
+
+    /**
+     * 设置队列满时的处理策略，必须在startExecute之前调用，否则无效
+     *
+     * @param overflowPolicy
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * 设置每个执行线程的SQL队列容量，必须在startExecute之前调用，否则无效。
+     * DB不可用时每个执行线程最多保留队列中和重试中的两倍容量的SQL
+     *
+     * @param maxQueueSize
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * 设置接收队列满时业务线程最多等待的时间，毫秒，超时抛出异常
+     *
+     * @param blockTimeout
+     */
+    public void setBlockTimeout(long blockTimeout) {
+        this.blockTimeout = blockTimeout;
+    }
+
+    /**
+     * 设置溢写日志文件，必须在startExecute之前调用，否则无效
+     *
+     * @param spillFile
+     */
+    public void setSpillFile(File spillFile) {
+        this.spillFile = spillFile;
+    }
+
 
     /**
      * 开始执行
      */
     public void startExecute() {
+        //上次进程留下的溢写日志需要先执行
+        if (OverflowPolicy.SPILL == overflowPolicy || spillFile.exists()) {
+            this.journal = new SqlJournal(spillFile);
+        }
         this.threadNum = Math.max(1, this.threadNum);
         this.threadPool = new SQLExecutorThread[this.threadNum];
         for (int i = 0; i < this.threadNum; i++) {
@@ -146,23 +282,21 @@ public final class AsyncDBExecutor {
      * @param interval
      */
     public void addSQL(String sql, List<Param> params, JdbcEntity entity, int order, long interval) {
-        SQLEntry entry = new SQLEntry();
-        entry.id = order;
-        entry.aliveTime = interval;
-        entry.op = AsyncOp.UPDATE;
-        entry.entity = entity;
-        getSQL(sql, params, entry);
-
-        synchronized (lock) {
-            List<SQLEntry> messageList = messageArray[cursor];
-            messageList.add(entry);
-            doLog(log, entry, 1);
-        }
+        long sequence = claim(entity);
+        if (sequence < 0) return;
+        SQLEntry slot = ringBuffer.get(sequence);
+        slot.id = order;
+        slot.aliveTime = interval;
+        slot.op = AsyncOp.UPDATE;
+        slot.entity = entity;
+        slot.sqlIdentify = sql;
+        slot.params = params;
+        ringBuffer.publish(sequence);
     }
 
 
     /**
-     * 添加一条需要同步的SQL
+     * 添加一条需要同步的SQL，SQL由消费线程生成，obj在交给之后不能再修改
      *
      * @param op
      * @param entity
@@ -171,22 +305,19 @@ public final class AsyncDBExecutor {
      * @param interval
      */
     public void addSQL(AsyncOp op, JdbcEntity entity, Object obj, int order, long interval) {
-        SQLEntry entry = new SQLEntry();
-        entry.id = order;
-        entry.aliveTime = interval;
-        entry.op = AsyncOp.UPDATE;
-        entry.entity = entity;
-        getSQL(op, entity, entry, obj);
-
-        synchronized (lock) {
-            List<SQLEntry> messageList = messageArray[cursor];
-            messageList.add(entry);
-            doLog(log, entry, 1);
-        }
+        long sequence = claim(entity);
+        if (sequence < 0) return;
+        SQLEntry slot = ringBuffer.get(sequence);
+        slot.id = order;
+        slot.aliveTime = interval;
+        slot.op = op;
+        slot.entity = entity;
+        slot.value = obj;
+        ringBuffer.publish(sequence);
     }
 
     /**
-     * 添加一条需要更新的SQL
+     * 添加一条需要更新的SQL，SQL由消费线程生成，obj在交给之后不能再修改
      *
      * @param entity
      * @param obj
@@ -195,54 +326,325 @@ public final class AsyncDBExecutor {
      * @param interval
      */
     public void addUpdateSQL(JdbcEntity entity, Object obj, Object old, int order, long interval) {
+        long sequence = claim(entity);
+        if (sequence < 0) return;
+        SQLEntry slot = ringBuffer.get(sequence);
+        slot.id = order;
+        slot.aliveTime = interval;
+        slot.op = AsyncOp.UPDATE;
+        slot.entity = entity;
+        slot.value = obj;
+        slot.oldValue = old;
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * 领取接收队列的槽位，队列满时低优先级的表按SHED策略丢弃，其他情况最多等待blockTimeout
+     *
+     * @param entity
+     * @return 丢弃时返回-1
+     */
+    private long claim(JdbcEntity entity) {
+        long sequence = ringBuffer.tryNext();
+        if (sequence >= 0) return sequence;
+        if (OverflowPolicy.SHED == overflowPolicy && isLowPriority(entity)) {
+            MemoryDBMonitor.recordOverflow(OverflowPolicy.SHED, 1);
+            return -1;
+        }
+        sequence = ringBuffer.next(TimeUnit.MILLISECONDS.toNanos(blockTimeout));
+        if (sequence < 0) {
+            MemoryDBMonitor.recordOverflow(OverflowPolicy.BLOCK, 1);
+            throw new RuntimeException("async db queue full, wait " + blockTimeout + "ms, table " + entity.getTableName());
+        }
+        return sequence;
+    }
+
+    /**
+     * 是否为低优先级的表
+     *
+     * @param entity
+     * @return
+     */
+    private boolean isLowPriority(JdbcEntity entity) {
+        Boolean lowPriority = lowPriorityMap.get(entity.getTableName());
+        if (null == lowPriority) {
+            SyncDBConfig config = null == entity.getEntityClass() ? null : Lang.getAnnotation(entity.getEntityClass(), SyncDBConfig.class);
+            lowPriority = null != config && config.lowPriority();
+            lowPriorityMap.put(entity.getTableName(), lowPriority);
+        }
+        return lowPriority;
+    }
+
+    /**
+     * 取出接收队列中所有已发布的SQL，需要持有lock
+     */
+    private void drainIntake() {
+        ringBuffer.drain(intakeHandler);
+    }
+
+    /**
+     * 把接收队列槽位中的数据复制为新的SQL并加入消息队列，之后清空槽位供生产者重用
+     *
+     * @param slot
+     */
+    private void onIntake(SQLEntry slot) {
         SQLEntry entry = new SQLEntry();
-        entry.id = order;
-        entry.aliveTime = interval;
-        entry.op = AsyncOp.UPDATE;
-        entry.entity = entity;
-        getSQL(AsyncOp.UPDATE, entity, entry, obj, old);
-        synchronized (lock) {
-            List<SQLEntry> messageList = messageArray[cursor];
+        entry.id = slot.id;
+        entry.aliveTime = slot.aliveTime;
+        entry.op = slot.op;
+        entry.entity = slot.entity;
+        try {
+            if (null == slot.value) {
+                //直接添加的SQL，不能合并
+                getSQL(slot.sqlIdentify, slot.params, entry);
+                messageList.add(entry);
+                doLog(log, entry, 1);
+            } else {
+                entry.idKey = getIdKey(slot.op, slot.entity, slot.value);
+                if (AsyncOp.UPDATE == slot.op) {
+                    getSQL(slot.op, slot.entity, entry, slot.value, slot.oldValue);
+                } else {
+                    //delete的参数按单个对象或主键值解析，不能带上oldValue
+                    getSQL(slot.op, slot.entity, entry, slot.value);
+                }
+                addMergeableSQL(entry, slot.value);
+            }
+        } catch (Throwable t) {
+            //无法生成SQL，这次写入丢失，计数并记录是哪一行
+            MemoryDBMonitor.recordIntakeError();
+            System.out.println("async db intake error,table:" + (null == slot.entity ? null : slot.entity.getTableName())
+                    + ",op:" + slot.op + ",key:" + (null != entry.idKey ? entry.idKey : null != slot.value ? slot.value : slot.sqlIdentify)
+                    + ",error:" + t);
+            t.printStackTrace();
+        } finally {
+            slot.sqlIdentify = null;
+            slot.params = null;
+            slot.value = null;
+            slot.oldValue = null;
+            slot.entity = null;
+        }
+    }
+
+    /**
+     * 获取SQL对应的主键key，delete的参数可以是对象也可以是主键值
+     *
+     * @param op
+     * @param entity
+     * @param obj
+     * @return
+     */
+    private String getIdKey(AsyncOp op, JdbcEntity entity, Object obj) {
+        if (AsyncOp.DELETE == op && !entity.getEntityClass().isInstance(obj)) {
+            return entity.getId().getKeyValuesByParams(obj);
+        }
+        return entity.getId().getKeyValueByObject(obj);
+    }
+
+    /**
+     * 添加一条可以按主键合并的SQL，同一(表, 主键)在交给执行线程之前只保留一条：
+     * update合并到之前的insert或update中，update之后的delete替换为delete，insert之后的delete两条都不执行。
+     * 合并后的SQL保留原来的存活时间，频繁修改的行不会一直推迟执行；
+     * 没有主键key的SQL（如复合主键）无法按行区分，直接按顺序追加，不参与合并
+     *
+     * 需要持有lock
+     *
+     * @param entry
+     * @param obj   最新的对象，update合并到insert时用于重新生成insert语句
+     */
+    private void addMergeableSQL(SQLEntry entry, Object obj) {
+        if (null == entry.idKey) {
             messageList.add(entry);
             doLog(log, entry, 1);
+            return;
+        }
+        Map<String, SQLEntry> tableMap = pendingMap.get(entry.entity.getTableName());
+        if (null == tableMap) {
+            tableMap = new HashMap<>();
+            pendingMap.put(entry.entity.getTableName(), tableMap);
+        }
+        SQLEntry pending = tableMap.get(entry.idKey);
+        if (null != pending && merge(pending, entry, obj)) {
+            if (pending.cancelled) {
+                tableMap.remove(entry.idKey);
+            }
+            doLog(log, pending, 2);
+            return;
+        }
+        messageList.add(entry);
+        tableMap.put(entry.idKey, entry);
+        doLog(log, entry, 1);
+    }
+
+    /**
+     * 把新的SQL合并到同一行未执行的SQL中，需要持有lock
+     *
+     * @param pending 未执行的SQL
+     * @param entry   新的SQL
+     * @param obj
+     * @return 是否合并，不能合并时新的SQL按顺序追加
+     */
+    private boolean merge(SQLEntry pending, SQLEntry entry, Object obj) {
+        switch (pending.op) {
+            case INSERT:
+                if (AsyncOp.UPDATE == entry.op) {
+                    //insert之后的update，用最新的对象重新生成insert
+                    getSQL(AsyncOp.INSERT, pending.entity, pending, obj);
+                    return true;
+                }
+                if (AsyncOp.DELETE == entry.op) {
+                    //insert之后delete，这一行从未写入数据库
+                    pending.cancelled = true;
+                    return true;
+                }
+                return false;
+            case UPDATE:
+                if (AsyncOp.UPDATE == entry.op || AsyncOp.DELETE == entry.op) {
+                    //update语句为整行更新，后面的update或delete直接覆盖前面的update
+                    pending.op = entry.op;
+                    pending.sqlIdentify = entry.sqlIdentify;
+                    pending.params = entry.params;
+                    return true;
+                }
+                return false;
+            default:
+                //delete之后重新insert等情况按顺序执行
+                return false;
+        }
+    }
+
+    /**
+     * 取出幸存者和消息队列中的全部SQL，幸存者在前，保证同一行的SQL按加入顺序执行，需要持有lock和survivorList
+     *
+     * @return
+     */
+    private List<SQLEntry> takeAll() {
+        List<SQLEntry> resultList = new ArrayList<>(survivorList.size() + messageList.size());
+        resultList.addAll(survivorList);
+        resultList.addAll(messageList);
+        survivorList.clear();
+        messageList.clear();
+        return resultList;
+    }
+
+    /**
+     * SQL交给执行线程，之后的修改不能再合并进来，需要持有lock。
+     * 执行队列满时按溢出策略处理：SPILL写入溢写日志，SHED丢弃低优先级的表，其他情况返回false，由调用方保留
+     *
+     * @param entry
+     * @return 执行队列满且没有按策略处理时返回false
+     */
+    private boolean dispatch(SQLEntry entry) {
+        if (entry.cancelled) return true;
+        try {
+            if (null != journal && !journal.isEmpty()) {
+                //溢写日志中还有SQL，之后的SQL也写入日志，保证执行顺序
+                journal.append(entry);
+                MemoryDBMonitor.recordOverflow(OverflowPolicy.SPILL, 1);
+            } else if (!getThread(entry).offerSQLEntry(entry)) {
+                if (OverflowPolicy.SPILL == overflowPolicy) {
+                    journal.append(entry);
+                    MemoryDBMonitor.recordOverflow(OverflowPolicy.SPILL, 1);
+                } else if (OverflowPolicy.SHED == overflowPolicy && isLowPriority(entry.entity)) {
+                    MemoryDBMonitor.recordOverflow(OverflowPolicy.SHED, 1);
+                } else {
+                    return false;
+                }
+            }
+        } catch (RuntimeException e) {
+            //溢写日志写入失败或参数无法记录，保留SQL
+            System.out.println("async db dispatch error" + e);
+            return false;
+        }
+        if (null != entry.idKey) {
+            Map<String, SQLEntry> tableMap = pendingMap.get(entry.entity.getTableName());
+            if (null != tableMap && tableMap.get(entry.idKey) == entry) {
+                tableMap.remove(entry.idKey);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * SQL所在表对应的执行线程
+     *
+     * @param entry
+     * @return
+     */
+    private SQLExecutorThread getThread(SQLEntry entry) {
+        int mod = Math.abs(entry.entity.getTableName().hashCode()) % threadNum;
+        return threadPool[mod];
+    }
+
+    /**
+     * 按顺序把溢写日志中的SQL交给执行线程，直到执行队列满，需要持有lock
+     */
+    private void replayJournal() {
+        if (null == journal) return;
+        try {
+            SQLEntry entry;
+            while (null != (entry = journal.peek())) {
+                if (!getThread(entry).offerSQLEntry(entry)) break;
+                journal.poll();
+            }
+        } catch (RuntimeException e) {
+            System.out.println("async db journal error" + e);
+        }
+    }
+
+    /**
+     * 刷新溢写日志，需要持有lock
+     */
+    private void flushJournal() {
+        if (null == journal) return;
+        try {
+            journal.flush();
+        } catch (RuntimeException e) {
+            System.out.println("async db journal error" + e);
         }
     }
 
 
     public void flushSQL() {
         synchronized (lock) {
-            List<SQLEntry> oldList = messageArray[cursor];
+            replayJournal();
+            drainIntake();
             //合并
             synchronized (survivorList) {
-                for (SQLEntry entry : survivorList) {
-                    oldList.add(entry);
-                }
-                survivorList.clear();
-
-                for (SQLEntry entry : oldList) {
-                    int mod = Math.abs(entry.entity.getTableName().hashCode()) % threadNum;
-                    //子线程执行
-                    threadPool[mod].addSQLEntry(entry);
+                List<SQLEntry> sqlList = takeAll();
+                backlogged = false;
+                for (int i = 0; i < sqlList.size(); i++) {
+                    if (dispatch(sqlList.get(i))) continue;
+                    //执行队列满，先执行已经交出的SQL再继续
+                    flushExecutors();
+                    if (!dispatch(sqlList.get(i))) {
+                        survivorList.addAll(sqlList.subList(i, sqlList.size()));
+                        backlogged = true;
+                        break;
+                    }
                 }
-                oldList.clear();
             }
+            flushJournal();
             //停止子线程
-            for (SQLExecutorThread thread : threadPool) {
-                thread.flushSql();
-            }
+            flushExecutors();
+        }
+    }
+
+    private void flushExecutors() {
+        for (SQLExecutorThread thread : threadPool) {
+            thread.flushSql();
         }
     }
 
 
     private void doLog(Logger log, SQLEntry entry, int type) {
-        if (entry.sql != null) {
+        if (entry.sqlIdentify != null) {
             switch (type) {
 
                 case 1:
-                    System.out.println("插入SQL到队列" + entry.entity.getTableName() + entry.id + type + entry.sql);
+                    System.out.println("插入SQL到队列" + entry.entity.getTableName() + entry.id + type + entry.sqlIdentify);
                     break;
                 default:
-                    System.out.println("插入SQL到队列" + entry.entity.getTableName() + entry.id + type + entry.sql);
+                    System.out.println("插入SQL到队列" + entry.entity.getTableName() + entry.id + type + entry.sqlIdentify);
                     break;
             }
         }
@@ -250,7 +652,7 @@ public final class AsyncDBExecutor {
     }
 
     /**
-     * 获取异步执行的SQL
+     * 获取异步执行的SQL，只记录SQL模板和参数，参数在执行线程中绑定到PreparedStatement
      *
      * @param sql
      * @param params
@@ -260,56 +662,45 @@ public final class AsyncDBExecutor {
         //从SQLFactory中获取SQL
         sql = sqlFactory.get(sql);
         sql = sql.trim();
-        //填充参数
-        if (params.size() > 0) {
-            sql = SqlFormatter.format(sql, params);
-        }
 
         entry.sqlIdentify = sql;
-        entry.sql = sql;
+        entry.params = params;
 
     }
 
     /**
-     * 获取异步执行的SQL
+     * 获取异步执行的SQL，只记录SQL模板和参数，参数在执行线程中绑定到PreparedStatement
      *
      * @param op
      * @param entity
      */
     private void getSQL(AsyncOp op, JdbcEntity entity, SQLEntry entry, Object... args) {
-        String sql = null;
         String sqlIdentity = "";
+        List<Param> params = null;
         switch (op) {
             case INSERT:
-                sql = entity.getInsertSQL();
-                sql = sql.trim();
-                sqlIdentity = sql;
-                sql = SqlFormatter.format(sql, entity.builderInsertParams(args[0]));
+                sqlIdentity = entity.getInsertSQL().trim();
+                params = entity.builderInsertParams(args[0]);
                 break;
             case UPDATE:
                 //实体更新
                 if (entity.isEnhance()) {
-                    String[] sqls = getDynamicUpdateSQL(args[0], args[1], entity);
-                    sqlIdentity = sqls[0];
-                    sql = sqls[1];
+                    sqlIdentity = getDynamicUpdateSQL(args[0], args.length > 1 ? args[1] : null, entity);
                 } else {
-                    String[] sqls = getUpdateSQL(args[0], entity);
-                    sqlIdentity = sqls[0];
-                    sql = sqls[1];
+                    sqlIdentity = getUpdateSQL(args[0], entity);
                 }
+                params = entity.buildUpdateParams(args[0]);
                 break;
             case DELETE:
                 //主键删除
-                sql = entity.getDeleteSQL();
-                sql = sql.trim();
-                sqlIdentity = sql;
-                sql = SqlFormatter.format(sql, args);
+                sqlIdentity = entity.getDeleteSQL().trim();
+                params = entity.buildDeleteParams(args);
                 break;
             default:
                 break;
         }
         entry.sqlIdentify = sqlIdentity;
-        entry.sql = sqlFactory.get(sql);
+        entry.params = params;
 
     }
 
@@ -320,9 +711,8 @@ public final class AsyncDBExecutor {
      * @param entity
      * @return
      */
-    private String[] getUpdateSQL(Object arg, JdbcEntity entity) {
-
-        return null;
+    private String getUpdateSQL(Object arg, JdbcEntity entity) {
+        return entity.getUpdateSQL().trim();
     }
 
     /**
@@ -333,11 +723,10 @@ public final class AsyncDBExecutor {
      * @param entity
      * @return
      */
-    private String[] getDynamicUpdateSQL(Object arg, Object arg1, JdbcEntity entity) {
+    private String getDynamicUpdateSQL(Object arg, Object arg1, JdbcEntity entity) {
         String sqlIdentity = entity.getUpdateSQL();
         sqlIdentity = sqlIdentity.trim();
-        String sql = SqlFormatter.format(sqlIdentity, entity.buildUpdateParams(obj));
-        return new String[]{sqlIdentity, sql};
+        return sqlIdentity;
     }
 
 
@@ -352,42 +741,45 @@ public final class AsyncDBExecutor {
 
         @Override
         public void execute() {
-            int oldCursor = cursor;
+            //合并map，未交给执行线程的SQL仍然可以合并，需要持有lock
             synchronized (lock) {
-                //切换游标
-                cursor = 1 - oldCursor;
-            }
-            //检查队列中SQL积攒数量
-            int num = 0;
-            for (int i = 0; i < threadPool.length; i++) {
-                num += threadPool[i].getQueueSize();
-            }
-            MemoryDBMonitor.recordSQLQueueSize(num);
-
-            List<SQLEntry> oldList = messageArray[oldCursor];
-            if (oldList.isEmpty())
-                return;
+                //检查队列中SQL积攒数量，包括接收队列中未取出的和溢写日志中的
+                int num = ringBuffer.size();
+                for (int i = 0; i < threadPool.length; i++) {
+                    num += threadPool[i].getQueueSize();
+                }
+                if (null != journal) {
+                    num += journal.size();
+                }
+                MemoryDBMonitor.recordSQLQueueSize(num);
 
-            //合并map
-            synchronized (survivorList) {
-                for (SQLEntry entry : survivorList) {
-                    oldList.add(entry);
+                //先读回溢写日志中的SQL
+                replayJournal();
+                //执行队列满时不再取出接收队列，接收队列满后业务线程等待
+                if (!backlogged) {
+                    drainIntake();
+                }
+                if (messageList.isEmpty() && survivorList.isEmpty()) {
+                    flushJournal();
+                    return;
                 }
-                survivorList.clear();
-
-                //遍历消息，执行SQL
-                for (SQLEntry entry : oldList) {
-                    entry.aliveTime = entry.aliveTime - INTERVAL;
-                    if (entry.aliveTime < 0) {
-                        int mod = Math.abs(entry.entity.getTableName().hashCode()) % threadNum;
-                        //子线程执行
-                        threadPool[mod].addSQLEntry(entry);
-                    } else {
+
+                synchronized (survivorList) {
+                    backlogged = false;
+                    //遍历消息，执行SQL
+                    for (SQLEntry entry : takeAll()) {
+                        if (entry.cancelled) continue;
+                        entry.aliveTime = entry.aliveTime - INTERVAL;
+                        if (!backlogged && entry.aliveTime < 0) {
+                            if (dispatch(entry)) continue;
+                            //执行队列满，之后的SQL保留顺序等待下次
+                            backlogged = true;
+                        }
                         survivorList.add(entry);
                     }
-                }
-                oldList.clear();
 
+                }
+                flushJournal();
             }
         }
     }
@@ -415,9 +807,9 @@ public final class AsyncDBExecutor {
         //sqlExecutor
         private SqlExecutor executor;
 
-        //添加SQL
-        public void addSQLEntry(SQLEntry entry) {
-            executor.addSQLEntry(entry);
+        //添加SQL，队列满时返回false
+        public boolean offerSQLEntry(SQLEntry entry) {
+            return executor.offerSQLEntry(entry);
         }
 
         public int getQueueSize() {
@@ -426,7 +818,7 @@ public final class AsyncDBExecutor {
 
         public SQLExecutorThread(int num) {
             super("AsyncDBExecutor-thread-" + num);
-            this.executor = new SqlExecutor(instance, batchSize, connCheckInterval);
+            this.executor = new SqlExecutor(instance, batchSize, connCheckInterval, multiRow, multiRowUpsert, maxPacketSize, maxQueueSize);
         }
 
 
@@ -2,9 +2,16 @@ package com.reign.memorydb;
 
 
 import java.util.ArrayList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @ClassName: BPlusTree
@@ -12,12 +19,17 @@ import java.util.List;
  * @Author: wuwx
  * @Date: 2020-10-13 17:06
  **/
-public class BPlusTree<T extends Comparable<T>, V> {
+public class BPlusTree<T extends Comparable<T>, V> implements IndexTree<T, V> {
 
     /**
-     * 默认阶数，10阶
+     * 默认阶数，64阶；节点内采用二分查找路由，较大的阶数可以降低树高
      **/
-    private static final int DEFAULT_M = 10;
+    public static final int DEFAULT_M = 64;
+
+    /**
+     * 批量构建时默认的节点填充因子
+     **/
+    public static final double DEFAULT_FILL_FACTOR = 0.9;
 
     //M的大小，偶数个
     private int M;
@@ -40,6 +52,7 @@ public class BPlusTree<T extends Comparable<T>, V> {
     }
 
     public BPlusTree(int m) {
+        if (m < 4) throw new IllegalArgumentException("m must not be less than 4");
         this.M = m % 2 == 0 ? m : m - 1;
         //初始时根节点是一个叶子节点
         this.root = new LeafNode();
@@ -109,41 +122,236 @@ public class BPlusTree<T extends Comparable<T>, V> {
      * @return
      */
     public List<V> rangeFind(T start, T end) {
-        if (start.compareTo(end) >= 0) throw new RuntimeException("starter cannot greater than end");
-        LeafNode<T, V> startNode = (LeafNode<T, V>) this.root.gteFind(start);
-        LeafNode<T, V> endNode = (LeafNode<T, V>) this.root.lteFind(end);
+        if (start.compareTo(end) > 0) throw new RuntimeException("starter cannot greater than end");
+        List<V> resultList = new ArrayList<>();
+        TreeCursor<T, V> cursor = cursor();
+        for (boolean valid = cursor.seek(start); valid && end.compareTo(cursor.key()) >= 0; valid = cursor.next()) {
+            resultList.add(cursor.value());
+        }
+        return resultList;
+    }
+
+    /**
+     * 升序范围查找，可指定边界是否包含，start或end为null表示不限制
+     *
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @return
+     */
+    @Override
+    public List<V> rangeFind(T start, boolean startInclusive, T end, boolean endInclusive) {
+        return rangeFind(start, startInclusive, end, endInclusive, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 升序范围查找，可指定边界是否包含，start或end为null表示不限制
+     *
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @param limit          最多返回条数
+     * @return
+     */
+    public List<V> rangeFind(T start, boolean startInclusive, T end, boolean endInclusive, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+        List<V> resultList = new ArrayList<>(Math.min(limit, DEFAULT_M));
+        Cursor cursor = new Cursor();
+        boolean valid = null == start ? cursor.first() : cursor.seekCeiling(start, startInclusive);
+        for (; valid && resultList.size() < limit; valid = cursor.next()) {
+            if (null != end && outOfBound(cursor.key(), end, endInclusive)) break;
+            resultList.add(cursor.value());
+        }
+        return resultList;
+    }
+
+    /**
+     * 降序范围查找[start, end]，从end开始沿previous指针向前遍历，最多返回limit条
+     *
+     * @param start
+     * @param end
+     * @param limit
+     * @return
+     */
+    public List<V> descendingRange(T start, T end, int limit) {
+        return descendingRange(start, true, end, true, limit);
+    }
+
+    /**
+     * 降序范围查找，可指定边界是否包含，start或end为null表示不限制
+     *
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @param limit          最多返回条数
+     * @return
+     */
+    public List<V> descendingRange(T start, boolean startInclusive, T end, boolean endInclusive, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+        List<V> resultList = new ArrayList<>(Math.min(limit, DEFAULT_M));
+        Cursor cursor = new Cursor();
+        boolean valid = null == end ? cursor.last() : cursor.seekFloor(end, endInclusive);
+        for (; valid && resultList.size() < limit; valid = cursor.previous()) {
+            if (null != start && outOfBound(start, cursor.key(), startInclusive)) break;
+            resultList.add(cursor.value());
+        }
+        return resultList;
+    }
+
+    /**
+     * 最小的n个value，升序
+     *
+     * @param n
+     * @return
+     */
+    public List<V> firstN(int n) {
+        return rangeFind(null, true, null, true, n);
+    }
+
+    /**
+     * 最大的n个value，降序
+     *
+     * @param n
+     * @return
+     */
+    public List<V> lastN(int n) {
+        return descendingRange(null, true, null, true, n);
+    }
+
+    /**
+     * 小于等于key的最大元素，不存在返回null
+     *
+     * @param key
+     * @return
+     */
+    public Map.Entry<T, V> floor(T key) {
+        Cursor cursor = new Cursor();
+        return cursor.seekFloor(key, true) ? cursor.entry() : null;
+    }
+
+    /**
+     * 大于等于key的最小元素，不存在返回null
+     *
+     * @param key
+     * @return
+     */
+    public Map.Entry<T, V> ceiling(T key) {
+        Cursor cursor = new Cursor();
+        return cursor.seekCeiling(key, true) ? cursor.entry() : null;
+    }
+
+    /**
+     * 严格小于key的最大元素，不存在返回null
+     *
+     * @param key
+     * @return
+     */
+    public Map.Entry<T, V> lower(T key) {
+        Cursor cursor = new Cursor();
+        return cursor.seekFloor(key, false) ? cursor.entry() : null;
+    }
+
+    /**
+     * 严格大于key的最小元素，不存在返回null
+     *
+     * @param key
+     * @return
+     */
+    public Map.Entry<T, V> higher(T key) {
+        Cursor cursor = new Cursor();
+        return cursor.seekCeiling(key, false) ? cursor.entry() : null;
+    }
+
+    /**
+     * key是否超出上边界bound
+     *
+     * @param key
+     * @param bound
+     * @param inclusive 是否包含边界
+     * @return
+     */
+    private boolean outOfBound(T key, T bound, boolean inclusive) {
+        int c = key.compareTo(bound);
+        return c > 0 || (c == 0 && !inclusive);
+    }
+
+    /**
+     * 获取游标，用于惰性遍历，不生成结果集合
+     *
+     * @return
+     */
+    public TreeCursor<T, V> cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 升序遍历[start, end]范围内的value，start或end为null表示不限制；
+     * 流是惰性的，limit/findFirst等短路操作会提前结束遍历
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    public Stream<V> stream(T start, T end) {
+        TreeCursor<T, V> cursor = cursor();
         if (null == start) {
-            return Collections.emptyList();
+            cursor.first();
         } else {
-            List<V> resultList = new ArrayList<>();
-            LeafNode<T, V> node = startNode;
-            boolean match = false;
-            while (null != node && node != endNode) {
-                for (int i = 0; i < node.size; i++) {
-                    if (!match && start.compareTo((T) node.keys[i]) <= 0) {
-                        match = true;
-                    }
-                    if (match) {
-                        resultList.add((V) node.values[i]);
-                    }
-                }
-                node = node.next;
-            }
+            cursor.seek(start);
+        }
+        return StreamSupport.stream(new CursorSpliterator<>(cursor, end), false);
+    }
 
-            for (int i = 0; i < endNode.size; i++) {
-                if (!match && start.compareTo((T) node.keys[i]) <= 0) {
-                    match = true;
-                }
-                if (end.compareTo((T) endNode.keys[i]) < 0) {
-                    break;
-                }
-                if (match) {
-                    resultList.add((V) endNode.values[i]);
-                }
+    /**
+     * 查找key所在的叶子节点
+     *
+     * @param key
+     * @return
+     */
+    private LeafNode<T, V> findLeaf(T key) {
+        Node<T, V> node = root();
+        while (node instanceof InternalNode) {
+            InternalNode<T, V> internal = (InternalNode<T, V>) node;
+            node = internal.pointers[internal.childIndex(key)];
+        }
+        return (LeafNode<T, V>) node;
+    }
 
-            }
-            return resultList;
+    /**
+     * 根节点，字段为原始类型，读取时转换为当前树的类型
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private Node<T, V> root() {
+        return (Node<T, V>) this.root;
+    }
+
+    /**
+     * 第一个叶子节点，字段为原始类型，读取时转换为当前树的类型
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private LeafNode<T, V> head() {
+        return (LeafNode<T, V>) this.head;
+    }
+
+    /**
+     * 获取最后一个叶子节点
+     *
+     * @return
+     */
+    private LeafNode<T, V> lastLeaf() {
+        Node<T, V> node = root();
+        while (node instanceof InternalNode) {
+            InternalNode<T, V> internal = (InternalNode<T, V>) node;
+            node = internal.pointers[internal.size - 1];
         }
+        return (LeafNode<T, V>) node;
     }
 
     /**
@@ -172,6 +380,230 @@ public class BPlusTree<T extends Comparable<T>, V> {
         return height;
     }
 
+    /**
+     * 批量构建，默认填充因子
+     *
+     * @param iterator 按key升序排列的数据
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<T, V>> iterator) {
+        bulkLoad(iterator, DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * 批量构建；自底向上按填充因子装满叶子节点，再逐层生成内部节点，避免逐条插入带来的反复分裂。
+     * 构建前会清空树中已有的数据
+     *
+     * @param iterator   按key升序排列的数据，key相同时后面的值覆盖前面的值
+     * @param fillFactor 节点填充因子，取值范围[0.5, 1]
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<T, V>> iterator, double fillFactor) {
+        if (fillFactor < 0.5 || fillFactor > 1) throw new IllegalArgumentException("fill factor must between 0.5 and 1");
+        int m = M / 2;
+        int fill = Math.max(m, (int) (M * fillFactor));
+
+        //构建叶子节点
+        List<Node<T, V>> level = new ArrayList<>();
+        LeafNode<T, V> leaf = new LeafNode<>();
+        level.add(leaf);
+        T lastKey = null;
+        while (iterator.hasNext()) {
+            Map.Entry<T, V> entry = iterator.next();
+            T key = entry.getKey();
+            if (key == null) throw new NullPointerException("must not be null for key");
+            if (lastKey != null) {
+                int cvalue = key.compareTo(lastKey);
+                if (cvalue < 0) throw new IllegalArgumentException("bulk load data must be sorted by key");
+                if (cvalue == 0) {
+                    leaf.values[leaf.size - 1] = entry.getValue();
+                    continue;
+                }
+            }
+            if (leaf.size >= fill) {
+                LeafNode<T, V> next = new LeafNode<>();
+                leaf.next = next;
+                next.previous = leaf;
+                leaf = next;
+                level.add(leaf);
+            }
+            leaf.insertIntoTail(key, entry.getValue());
+            lastKey = key;
+        }
+        if (level.size() > 1 && leaf.size < m) {
+            //最后一个叶子节点不足m/2个元素，与前一个节点重新分配
+            LeafNode<T, V> previous = leaf.previous;
+            if (previous.size + leaf.size <= M) {
+                for (int i = 0; i < leaf.size; i++) {
+                    previous.insertIntoTail(leaf.keys[i], leaf.values[i]);
+                }
+                previous.next = null;
+                level.remove(level.size() - 1);
+            } else {
+                while (leaf.size < m) {
+                    leaf.insertIntoHead(previous.keys[previous.size - 1], previous.values[previous.size - 1]);
+                    previous.deleteFromTail();
+                }
+            }
+        }
+        this.head = (LeafNode<T, V>) level.get(0);
+
+        //逐层构建内部节点
+        while (level.size() > 1) {
+            List<Node<T, V>> parents = new ArrayList<>(level.size() / fill + 1);
+            InternalNode<T, V> parent = null;
+            for (Node<T, V> child : level) {
+                if (parent == null || parent.size >= fill) {
+                    parent = new InternalNode<>();
+                    parents.add(parent);
+                }
+                parent.insertIntoTail(child.keys[0], child);
+            }
+            if (parents.size() > 1 && parent.size < m) {
+                InternalNode<T, V> previous = (InternalNode<T, V>) parents.get(parents.size() - 2);
+                if (previous.size + parent.size <= M) {
+                    for (int i = 0; i < parent.size; i++) {
+                        previous.insertIntoTail(parent.keys[i], parent.pointers[i]);
+                    }
+                    parents.remove(parents.size() - 1);
+                } else {
+                    while (parent.size < m) {
+                        parent.insertIntoHead(previous.keys[previous.size - 1], previous.pointers[previous.size - 1]);
+                        previous.deleteFromTail();
+                    }
+                }
+            }
+            level = parents;
+        }
+        Node<T, V> root = level.get(0);
+        root.parent = null;
+        this.root = root;
+    }
+
+    /**
+     * 对无序数据先并行排序，再批量构建
+     *
+     * @param entries
+     */
+    public void bulkLoadUnsorted(Collection<? extends Map.Entry<T, V>> entries) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map.Entry<T, V>[] array = entries.toArray(new Map.Entry[0]);
+        Arrays.parallelSort(array, new Comparator<Map.Entry<T, V>>() {
+            @Override
+            public int compare(Map.Entry<T, V> o1, Map.Entry<T, V> o2) {
+                return o1.getKey().compareTo(o2.getKey());
+            }
+        });
+        bulkLoad(Arrays.asList(array).iterator(), DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * 沿叶子节点链表移动的游标，正向使用next指针，反向使用previous指针
+     */
+    private class Cursor implements TreeCursor<T, V> {
+
+        //当前叶子节点
+        private LeafNode<T, V> node;
+
+        //当前叶子节点中的位置
+        private int index;
+
+        @Override
+        public boolean seek(T key) {
+            return seekCeiling(key, true);
+        }
+
+        /**
+         * 定位到第一个大于(inclusive时大于等于)key的位置
+         *
+         * @param key
+         * @param inclusive
+         * @return
+         */
+        boolean seekCeiling(T key, boolean inclusive) {
+            this.node = findLeaf(key);
+            this.index = inclusive ? this.node.lowerBound(key) : this.node.upperBound(key);
+            if (this.index >= this.node.size) {
+                this.node = this.node.next;
+                this.index = 0;
+            }
+            return valid();
+        }
+
+        /**
+         * 定位到最后一个小于(inclusive时小于等于)key的位置
+         *
+         * @param key
+         * @param inclusive
+         * @return
+         */
+        boolean seekFloor(T key, boolean inclusive) {
+            this.node = findLeaf(key);
+            this.index = (inclusive ? this.node.upperBound(key) : this.node.lowerBound(key)) - 1;
+            if (this.index < 0) {
+                this.node = this.node.previous;
+                this.index = null == this.node ? -1 : this.node.size - 1;
+            }
+            return valid();
+        }
+
+        /**
+         * 当前位置的key-value
+         *
+         * @return
+         */
+        Map.Entry<T, V> entry() {
+            return new AbstractMap.SimpleImmutableEntry<>(key(), value());
+        }
+
+        @Override
+        public boolean first() {
+            this.node = head();
+            this.index = 0;
+            return valid();
+        }
+
+        @Override
+        public boolean last() {
+            this.node = lastLeaf();
+            this.index = this.node.size - 1;
+            return valid();
+        }
+
+        @Override
+        public boolean next() {
+            if (!valid()) return false;
+            if (++this.index >= this.node.size) {
+                this.node = this.node.next;
+                this.index = 0;
+            }
+            return valid();
+        }
+
+        @Override
+        public boolean previous() {
+            if (!valid()) return false;
+            if (--this.index < 0) {
+                this.node = this.node.previous;
+                this.index = null == this.node ? -1 : this.node.size - 1;
+            }
+            return valid();
+        }
+
+        @Override
+        public boolean valid() {
+            return null != this.node && this.index >= 0 && this.index < this.node.size;
+        }
+
+        @Override
+        public T key() {
+            return (T) this.node.keys[this.index];
+        }
+
+        @Override
+        public V value() {
+            return (V) this.node.values[this.index];
+        }
+    }
+
     /**
      * 内部节点
      */
@@ -209,16 +641,6 @@ public class BPlusTree<T extends Comparable<T>, V> {
          */
         abstract V find(T key);
 
-        /**
-         * 查找
-         *
-         * @param key
-         * @return
-         */
-        abstract Node<T, V> gteFind(T key);
-
-        abstract Node<T, V> lteFind(T key);
-
         abstract List<V> find(T key, Comparator<T> comparator);
 
         /**
@@ -237,30 +659,53 @@ public class BPlusTree<T extends Comparable<T>, V> {
          * @return
          */
         protected final int binaryFind(T key) {
-            //找到位置
+            int middle = lowerBound(key);
+            if (middle < this.size && key.compareTo((T) this.keys[middle]) == 0) {
+                //找到
+                return middle;
+            }
+            //未找到
+            return -1;
+        }
+
+        /**
+         * 二分查找第一个大于等于key的位置
+         *
+         * @param key
+         * @return
+         */
+        protected final int lowerBound(T key) {
             int start = 0;
             int end = this.size;
-            int middle = (start + end) / 2;
             while (start < end) {
-                if (start == middle) break;
-                T middleKey = (T) this.keys[middle];
-                int cvalue = key.compareTo(middleKey);
-                if (cvalue == 0) return middle;
-                if (cvalue < 0) {
-                    end = middle;
+                int middle = (start + end) >>> 1;
+                if (((T) this.keys[middle]).compareTo(key) < 0) {
+                    start = middle + 1;
                 } else {
-                    start = middle;
+                    end = middle;
                 }
-                middle = (start + end) / 2;
             }
+            return start;
+        }
 
-            T middleKey = (T) this.keys[middle];
-            if (key.compareTo(middleKey) == 0) {
-                //找到
-                return middle;
+        /**
+         * 二分查找第一个大于key的位置
+         *
+         * @param key
+         * @return
+         */
+        protected final int upperBound(T key) {
+            int start = 0;
+            int end = this.size;
+            while (start < end) {
+                int middle = (start + end) >>> 1;
+                if (((T) this.keys[middle]).compareTo(key) <= 0) {
+                    start = middle + 1;
+                } else {
+                    end = middle;
+                }
             }
-            //未找到
-            return -1;
+            return start;
         }
 
     }
@@ -282,51 +727,39 @@ public class BPlusTree<T extends Comparable<T>, V> {
             this.keys = new Object[M];
         }
 
-        @Override
-        Node<T, V> insert(T key, V value) {
-            int i = 1;
-            for (; i < this.size; i++) {
-                if (key.compareTo((T) this.keys[i]) < 0) break;
-            }
-
-            return this.pointers[i - 1].insert(key, value);
-        }
-
-        @Override
-        V remove(T key) {
-            int i = 1;
-            for (; i < this.size; i++) {
-                if (key.compareTo((T) this.keys[i]) < 0) break;
+        /**
+         * 二分查找key所在的孩子位置，即keys[1..size)中最后一个小于等于key的位置
+         *
+         * @param key
+         * @return
+         */
+        final int childIndex(T key) {
+            int start = 1;
+            int end = this.size;
+            while (start < end) {
+                int middle = (start + end) >>> 1;
+                if (key.compareTo((T) this.keys[middle]) < 0) {
+                    end = middle;
+                } else {
+                    start = middle + 1;
+                }
             }
-
-            return this.pointers[i - 1].remove(key);
+            return start - 1;
         }
 
         @Override
-        V find(T key) {
-            int i = 1;
-            for (; i < this.size; i++) {
-                if (key.compareTo((T) this.keys[i]) < 0) break;
-            }
-            return this.pointers[i - 1].find(key);
+        Node<T, V> insert(T key, V value) {
+            return this.pointers[childIndex(key)].insert(key, value);
         }
 
         @Override
-        Node<T, V> gteFind(T key) {
-            int i = 1;
-            for (; i < this.size; i++) {
-                if (key.compareTo((T) this.keys[i]) < 0) break;
-            }
-            return this.pointers[i - 1].gteFind(key);
+        V remove(T key) {
+            return this.pointers[childIndex(key)].remove(key);
         }
 
         @Override
-        Node<T, V> lteFind(T key) {
-            int i = 1;
-            for (; i < this.size; i++) {
-                if (key.compareTo((T) this.keys[i]) < 0) break;
-            }
-            return this.pointers[i - 1].lteFind(key);
+        V find(T key) {
+            return this.pointers[childIndex(key)].find(key);
         }
 
         @Override
@@ -437,7 +870,7 @@ public class BPlusTree<T extends Comparable<T>, V> {
                         } else if (next != null && next.size <= m) {
                             //同后面节点合并
                             for (int i = 0; i < next.size; i++) {
-                                previous.insertIntoTail(next.keys[i], next.pointers[i]);
+                                this.insertIntoTail(next.keys[i], next.pointers[i]);
                             }
                             //父节点移除
                             ((InternalNode) this.parent).removePointer((T) next.keys[0]);
@@ -534,11 +967,7 @@ public class BPlusTree<T extends Comparable<T>, V> {
 
             if (this.size >= M) {
                 //查找插入位置
-                int i = 0;
-                for (; i < this.size; i++) {
-                    T curKey = (T) this.keys[i];
-                    if (curKey.compareTo(rightKey) > 0) break;
-                }
+                int i = upperBound(rightKey);
 
                 //已满，需要分裂
                 int m = this.size / 2;
@@ -577,11 +1006,7 @@ public class BPlusTree<T extends Comparable<T>, V> {
             }
 
             //查找插入位置
-            int i = 0;
-            for (; i < this.size; i++) {
-                T curKey = (T) this.keys[i];
-                if (curKey.compareTo(rightKey) > 0) break;
-            }
+            int i = upperBound(rightKey);
 
             //插入
             System.arraycopy(this.keys, i, this.keys, i + 1, size - i);
@@ -624,16 +1049,11 @@ public class BPlusTree<T extends Comparable<T>, V> {
         public Node<T, V> insert(T key, V value) {
             if (this.size >= M) {
                 //走到这里表明新插入key的大小必定在该node数组中间；需要找到插入的位置
-                int i = 0;
-                for (; i < this.size; i++) {
-                    T curKey = (T) this.keys[i];
-                    int cvalue = curKey.compareTo(key);
-                    if (cvalue == 0) {
-                        //如果插入的key已经存在，则覆盖值
-                        values[i] = value;
-                        return null;
-                    }
-                    if (cvalue > 0) break;
+                int i = lowerBound(key);
+                if (i < this.size && key.compareTo((T) this.keys[i]) == 0) {
+                    //如果插入的key已经存在，则覆盖值
+                    values[i] = value;
+                    return null;
                 }
                 //已满，分裂
                 int m = this.size / 2;
@@ -678,17 +1098,12 @@ public class BPlusTree<T extends Comparable<T>, V> {
             }
 
 
-            //若节点没有满，则通过遍历节点中key并比较后找到合适位置并插入
-            int i = 0;
+            //若节点没有满，则通过二分查找找到合适位置并插入
             T headKey = (T) this.keys[0];
-            for (; i < this.size; i++) {
-                T curKey = (T) this.keys[i];
-                int cvalue = curKey.compareTo(key);
-                if (cvalue == 0) {
-                    values[i] = value;
-                    return null;
-                }
-                if (cvalue > 0) break;
+            int i = lowerBound(key);
+            if (i < this.size && key.compareTo((T) this.keys[i]) == 0) {
+                values[i] = value;
+                return null;
             }
 
             System.arraycopy(this.keys, i, this.keys, i + 1, size - i);
@@ -849,22 +1264,6 @@ public class BPlusTree<T extends Comparable<T>, V> {
             return middle != -1 ? (V) this.values[middle] : null;
         }
 
-        /**
-         * 如果key比第一个节点大，这个Node就包含需要查找的内容
-         *
-         * @param key
-         * @return
-         */
-        @Override
-        Node<T, V> gteFind(T key) {
-            return key.compareTo((T) this.keys[0]) >= 0 ? this : null;
-        }
-
-        @Override
-        Node<T, V> lteFind(T key) {
-            return this;
-        }
-
         @Override
         List<V> find(T key, Comparator<T> comparator) {
             if (this.size == 0) return Collections.emptyList();
@@ -0,0 +1,598 @@
+package com.reign.memorydb;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * @ClassName: ConcurrentBPlusTree
+ * @Description: 支持并发访问的索引树，采用乐观锁耦合(optimistic lock coupling)
+ * <p>
+ * 每个节点持有一个版本锁(StampedLock)，读操作全程只做乐观读，通过校验版本号判断读到的数据是否一致，
+ * 不一致则从根节点重试，因此读操作不会阻塞；写操作下降时同样乐观读，只对需要修改的叶子节点、
+ * 以及分裂时涉及的父节点加写锁。内部节点在下降过程中如果已满则提前分裂，保证父节点总能容纳分裂出的新节点。
+ * <p>
+ * 删除时不做节点合并，节点一旦创建就不会被回收，叶子链表上的节点始终有效，
+ * 这样范围扫描沿着next指针前进时不需要担心节点被释放。
+ * @Author: wuwx
+ * @Date: 2021-04-07 14:20
+ **/
+public class ConcurrentBPlusTree<T extends Comparable<T>, V> implements IndexTree<T, V> {
+
+    //M的大小，每个节点最多容纳的key数量
+    private final int M;
+
+    //叶子节点的头结点，分裂时左半部分保留在原节点中，所以头结点不会变化
+    private final LeafNode head;
+
+    private volatile Node root;
+
+    public ConcurrentBPlusTree() {
+        this(BPlusTree.DEFAULT_M);
+    }
+
+    public ConcurrentBPlusTree(int m) {
+        if (m < 4) throw new IllegalArgumentException("m must not be less than 4");
+        this.M = m % 2 == 0 ? m : m - 1;
+        this.head = new LeafNode();
+        this.root = this.head;
+    }
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     */
+    @Override
+    public void insert(T key, V value) {
+        if (key == null) throw new NullPointerException("must not be null for key");
+        while (!tryInsert(key, value)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 尝试插入一次，版本校验失败时返回false，由调用方重试
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    private boolean tryInsert(T key, V value) {
+        Node node = this.root;
+        long stamp = node.latch.tryOptimisticRead();
+        if (stamp == 0 || node != this.root) return false;
+
+        InternalNode parent = null;
+        long parentStamp = 0;
+        while (node instanceof ConcurrentBPlusTree.InternalNode) {
+            InternalNode inner = (InternalNode) node;
+            if (inner.size >= M) {
+                //已满，提前分裂，分裂完成后从根节点重试
+                splitInternal(parent, parentStamp, inner, stamp);
+                return false;
+            }
+            if (parent != null && !parent.latch.validate(parentStamp)) return false;
+
+            Node child = inner.child(key, stamp);
+            if (child == null) return false;
+            long childStamp = child.latch.tryOptimisticRead();
+            if (childStamp == 0 || !inner.latch.validate(stamp)) return false;
+
+            parent = inner;
+            parentStamp = stamp;
+            node = child;
+            stamp = childStamp;
+        }
+
+        LeafNode leaf = (LeafNode) node;
+        long parentWrite = 0;
+        if (leaf.size >= M && parent != null) {
+            //叶子节点需要分裂，父节点也需要加写锁
+            parentWrite = parent.latch.tryConvertToWriteLock(parentStamp);
+            if (parentWrite == 0) return false;
+        }
+        long write = leaf.latch.tryConvertToWriteLock(stamp);
+        if (write == 0) {
+            if (parentWrite != 0) parent.latch.unlockWrite(parentWrite);
+            return false;
+        }
+        if (parentWrite == 0 && parent != null && !parent.latch.validate(parentStamp)) {
+            leaf.latch.unlockWrite(write);
+            return false;
+        }
+        if (parent == null && leaf != this.root) {
+            leaf.latch.unlockWrite(write);
+            return false;
+        }
+
+        try {
+            int i = leaf.lowerBound(key);
+            if (i < leaf.size && key.compareTo(ConcurrentBPlusTree.<T>cast(leaf.keys[i])) == 0) {
+                //如果插入的key已经存在，则覆盖值
+                leaf.values[i] = value;
+            } else if (leaf.size < M) {
+                leaf.insertAt(i, key, value);
+            } else {
+                LeafNode right = leaf.split();
+                T separator = cast(right.keys[0]);
+                if (key.compareTo(separator) >= 0) {
+                    right.insertAt(right.lowerBound(key), key, value);
+                } else {
+                    leaf.insertAt(i, key, value);
+                }
+                if (parent != null) {
+                    parent.insertPointer(separator, right);
+                } else {
+                    this.root = new InternalNode(leaf, separator, right);
+                }
+            }
+        } finally {
+            leaf.latch.unlockWrite(write);
+            if (parentWrite != 0) parent.latch.unlockWrite(parentWrite);
+        }
+        return true;
+    }
+
+    /**
+     * 分裂已满的内部节点
+     *
+     * @param parent
+     * @param parentStamp
+     * @param inner
+     * @param stamp
+     */
+    private void splitInternal(InternalNode parent, long parentStamp, InternalNode inner, long stamp) {
+        long parentWrite = 0;
+        if (parent != null) {
+            parentWrite = parent.latch.tryConvertToWriteLock(parentStamp);
+            if (parentWrite == 0) return;
+        }
+        long write = inner.latch.tryConvertToWriteLock(stamp);
+        if (write == 0) {
+            if (parentWrite != 0) parent.latch.unlockWrite(parentWrite);
+            return;
+        }
+        try {
+            if (parent == null && inner != this.root) return;
+            int m = inner.size / 2;
+            T separator = cast(inner.keys[m]);
+            InternalNode right = inner.split(m);
+            if (parent != null) {
+                parent.insertPointer(separator, right);
+            } else {
+                this.root = new InternalNode(inner, separator, right);
+            }
+        } finally {
+            inner.latch.unlockWrite(write);
+            if (parentWrite != 0) parent.latch.unlockWrite(parentWrite);
+        }
+    }
+
+    /**
+     * 依据key查找，不加锁
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public V find(T key) {
+        long[] stamp = new long[1];
+        for (; ; ) {
+            LeafNode leaf = findLeaf(key, stamp);
+            if (leaf == null) {
+                Thread.yield();
+                continue;
+            }
+            try {
+                int i = leaf.lowerBound(key);
+                Object value = i < leaf.size && key.compareTo(ConcurrentBPlusTree.<T>cast(leaf.keys[i])) == 0 ? leaf.values[i] : null;
+                if (leaf.latch.validate(stamp[0])) {
+                    return cast(value);
+                }
+            } catch (RuntimeException e) {
+                //乐观读到了不一致的数据，校验失败则重试
+                if (leaf.latch.validate(stamp[0])) throw e;
+            }
+        }
+    }
+
+    /**
+     * 乐观下降到key所在的叶子节点
+     *
+     * @param key
+     * @param stamp 输出参数，叶子节点读取时的版本
+     * @return 版本校验失败时返回null
+     */
+    private LeafNode findLeaf(T key, long[] stamp) {
+        Node node = this.root;
+        long version = node.latch.tryOptimisticRead();
+        if (version == 0 || node != this.root) return null;
+        while (node instanceof ConcurrentBPlusTree.InternalNode) {
+            InternalNode inner = (InternalNode) node;
+            Node child = inner.child(key, version);
+            if (child == null) return null;
+            long childVersion = child.latch.tryOptimisticRead();
+            if (childVersion == 0 || !inner.latch.validate(version)) return null;
+            node = child;
+            version = childVersion;
+        }
+        stamp[0] = version;
+        return (LeafNode) node;
+    }
+
+    /**
+     * 范围查找，包含start和end；扫描过程中不加锁，逐个叶子节点校验版本
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    @Override
+    public List<V> rangeFind(T start, T end) {
+        if (start.compareTo(end) > 0) throw new RuntimeException("starter cannot greater than end");
+        return rangeFind(start, true, end, true);
+    }
+
+    /**
+     * 范围查找，可指定边界是否包含，start或end为null表示不限制；扫描过程中不加锁，逐个叶子节点校验版本
+     *
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @return
+     */
+    @Override
+    public List<V> rangeFind(T start, boolean startInclusive, T end, boolean endInclusive) {
+        List<V> resultList = new ArrayList<>();
+        List<V> leafList = new ArrayList<>(M);
+        long[] leafStamp = new long[1];
+        //已经扫描过的最大key，重试时从这里继续
+        T from = start;
+        boolean inclusive = startInclusive;
+        LeafNode leaf = null;
+        long stamp = 0;
+        for (; ; ) {
+            if (leaf == null) {
+                if (from == null) {
+                    leaf = head;
+                    leafStamp[0] = head.latch.tryOptimisticRead();
+                    if (leafStamp[0] == 0) leaf = null;
+                } else {
+                    leaf = findLeaf(from, leafStamp);
+                }
+                if (leaf == null) {
+                    Thread.yield();
+                    continue;
+                }
+                stamp = leafStamp[0];
+            }
+            leafList.clear();
+            T last = null;
+            boolean finish = false;
+            LeafNode next;
+            try {
+                int size = Math.min(leaf.size, M);
+                int i = from == null ? 0 : inclusive ? leaf.lowerBound(from) : leaf.upperBound(from);
+                for (; i < size; i++) {
+                    T k = cast(leaf.keys[i]);
+                    if (end != null && (endInclusive ? k.compareTo(end) > 0 : k.compareTo(end) >= 0)) {
+                        finish = true;
+                        break;
+                    }
+                    leafList.add(ConcurrentBPlusTree.<V>cast(leaf.values[i]));
+                    last = k;
+                }
+                next = leaf.next;
+            } catch (RuntimeException e) {
+                if (leaf.latch.validate(stamp)) throw e;
+                leaf = null;
+                continue;
+            }
+            if (!leaf.latch.validate(stamp)) {
+                leaf = null;
+                continue;
+            }
+            resultList.addAll(leafList);
+            if (finish || next == null) return resultList;
+            if (last != null) {
+                from = last;
+                inclusive = false;
+            }
+            long nextStamp = next.latch.tryOptimisticRead();
+            if (nextStamp == 0) {
+                leaf = null;
+                continue;
+            }
+            leaf = next;
+            stamp = nextStamp;
+        }
+    }
+
+    /**
+     * 根据自定义比较器比较，全表扫描；逐个叶子节点校验版本
+     *
+     * @param matcher
+     * @return
+     */
+    @Override
+    public List<V> findAll(Matcher<V> matcher) {
+        List<V> resultList = new ArrayList<>();
+        Object[] values = new Object[M];
+        LeafNode node = head;
+        while (node != null) {
+            long stamp = node.latch.tryOptimisticRead();
+            if (stamp == 0) {
+                Thread.yield();
+                continue;
+            }
+            int size = Math.min(node.size, M);
+            System.arraycopy(node.values, 0, values, 0, size);
+            LeafNode next = node.next;
+            if (!node.latch.validate(stamp)) continue;
+            for (int i = 0; i < size; i++) {
+                if (matcher.match(ConcurrentBPlusTree.<V>cast(values[i]))) {
+                    resultList.add(ConcurrentBPlusTree.<V>cast(values[i]));
+                }
+            }
+            node = next;
+        }
+        return resultList;
+    }
+
+    /**
+     * 移除指定元素，只锁定叶子节点，不做节点合并
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public V remove(T key) {
+        long[] stamp = new long[1];
+        for (; ; ) {
+            LeafNode leaf = findLeaf(key, stamp);
+            if (leaf == null) {
+                Thread.yield();
+                continue;
+            }
+            long write = leaf.latch.tryConvertToWriteLock(stamp[0]);
+            if (write == 0) continue;
+            try {
+                int i = leaf.lowerBound(key);
+                if (i < leaf.size && key.compareTo(ConcurrentBPlusTree.<T>cast(leaf.keys[i])) == 0) {
+                    return cast(leaf.removeAt(i));
+                }
+                return null;
+            } finally {
+                leaf.latch.unlockWrite(write);
+            }
+        }
+    }
+
+    /**
+     * 获取树高
+     *
+     * @return
+     */
+    @Override
+    public int getHeight() {
+        int height = 1;
+        Node node = this.root;
+        while (node instanceof ConcurrentBPlusTree.InternalNode) {
+            height++;
+            node = ((InternalNode) node).pointers[0];
+        }
+        return height;
+    }
+
+    /**
+     * 节点中的key和value都是插入时的T和V
+     *
+     * @param value
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E cast(Object value) {
+        return (E) value;
+    }
+
+    /**
+     * 节点
+     */
+    abstract class Node {
+
+        //版本锁
+        final StampedLock latch = new StampedLock();
+
+        //keys节点key值
+        Object[] keys;
+
+        //节点大小
+        int size;
+
+        /**
+         * 二分查找第一个大于等于key的位置
+         *
+         * @param key
+         * @return
+         */
+        final int lowerBound(T key) {
+            int start = 0;
+            int end = Math.min(this.size, this.keys.length);
+            while (start < end) {
+                int middle = (start + end) >>> 1;
+                if (ConcurrentBPlusTree.<T>cast(this.keys[middle]).compareTo(key) < 0) {
+                    start = middle + 1;
+                } else {
+                    end = middle;
+                }
+            }
+            return start;
+        }
+
+        /**
+         * 二分查找第一个大于key的位置
+         *
+         * @param key
+         * @return
+         */
+        final int upperBound(T key) {
+            int start = 0;
+            int end = Math.min(this.size, this.keys.length);
+            while (start < end) {
+                int middle = (start + end) >>> 1;
+                if (ConcurrentBPlusTree.<T>cast(this.keys[middle]).compareTo(key) <= 0) {
+                    start = middle + 1;
+                } else {
+                    end = middle;
+                }
+            }
+            return start;
+        }
+    }
+
+    /**
+     * 非叶子节点，keys[i]为pointers[i + 1]子树中的最小key
+     */
+    final class InternalNode extends Node {
+
+        //指向下一级的指针
+        Node[] pointers;
+
+        InternalNode() {
+            this.keys = new Object[M];
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node[] pointers = new ConcurrentBPlusTree.Node[M + 1];
+            this.pointers = pointers;
+        }
+
+        InternalNode(Node left, T separator, Node right) {
+            this();
+            this.keys[0] = separator;
+            this.pointers[0] = left;
+            this.pointers[1] = right;
+            this.size = 1;
+        }
+
+        /**
+         * 乐观读取key所在的孩子节点
+         *
+         * @param key
+         * @param stamp
+         * @return 读到不一致的数据时返回null
+         */
+        Node child(T key, long stamp) {
+            try {
+                return this.pointers[upperBound(key)];
+            } catch (RuntimeException e) {
+                if (this.latch.validate(stamp)) throw e;
+                return null;
+            }
+        }
+
+        /**
+         * 插入分裂出的右节点，调用方持有写锁并保证节点未满
+         *
+         * @param separator
+         * @param right
+         */
+        void insertPointer(T separator, Node right) {
+            int i = upperBound(separator);
+            System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+            System.arraycopy(this.pointers, i + 1, this.pointers, i + 2, this.size - i);
+            this.keys[i] = separator;
+            this.pointers[i + 1] = right;
+            this.size++;
+        }
+
+        /**
+         * 以keys[m]为分隔分裂节点，keys[m]上移到父节点
+         *
+         * @param m
+         * @return 分裂出的右节点
+         */
+        InternalNode split(int m) {
+            InternalNode right = new InternalNode();
+            right.size = this.size - m - 1;
+            System.arraycopy(this.keys, m + 1, right.keys, 0, right.size);
+            System.arraycopy(this.pointers, m + 1, right.pointers, 0, right.size + 1);
+            for (int j = m; j < this.size; j++) {
+                this.keys[j] = null;
+                this.pointers[j + 1] = null;
+            }
+            this.size = m;
+            return right;
+        }
+    }
+
+    /**
+     * 叶子节点，用来存储keys和真正的value;
+     */
+    final class LeafNode extends Node {
+
+        //叶节点的后节点
+        volatile LeafNode next;
+
+        Object[] values;
+
+        LeafNode() {
+            this.keys = new Object[M];
+            this.values = new Object[M];
+        }
+
+        /**
+         * 在指定位置插入
+         *
+         * @param i
+         * @param key
+         * @param value
+         */
+        void insertAt(int i, T key, V value) {
+            System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+            System.arraycopy(this.values, i, this.values, i + 1, this.size - i);
+            this.keys[i] = key;
+            this.values[i] = value;
+            this.size++;
+        }
+
+        /**
+         * 移除指定位置
+         *
+         * @param i
+         * @return
+         */
+        Object removeAt(int i) {
+            Object value = this.values[i];
+            System.arraycopy(this.keys, i + 1, this.keys, i, this.size - i - 1);
+            System.arraycopy(this.values, i + 1, this.values, i, this.size - i - 1);
+            this.size--;
+            this.keys[this.size] = null;
+            this.values[this.size] = null;
+            return value;
+        }
+
+        /**
+         * 平分节点，调用方持有写锁
+         *
+         * @return 分裂出的右节点
+         */
+        LeafNode split() {
+            int m = this.size / 2;
+            LeafNode right = new LeafNode();
+            right.size = this.size - m;
+            System.arraycopy(this.keys, m, right.keys, 0, right.size);
+            System.arraycopy(this.values, m, right.values, 0, right.size);
+            for (int j = m; j < this.size; j++) {
+                this.keys[j] = null;
+                this.values[j] = null;
+            }
+            this.size = m;
+            right.next = this.next;
+            this.next = right;
+            return right;
+        }
+    }
+}
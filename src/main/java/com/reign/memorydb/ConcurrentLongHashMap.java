@@ -0,0 +1,308 @@
+package com.reign.memorydb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * @ClassName: ConcurrentLongHashMap
+ * @Description: long类型key的并发开放寻址哈希表，key直接存放在long[]中，不生成字符串key也不装箱。
+ * 按hash高位分段，每段一个StampedLock：写操作持有段写锁，读操作先乐观读，版本校验失败时才退回读锁，
+ * 读多写少时读操作不写共享内存。value不能为null，null表示空槽
+ * @Author: wuwx
+ * @Date: 2021-04-16 15:20
+ **/
+public class ConcurrentLongHashMap<V> {
+
+    //默认分段数
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    //每段默认容量
+    private static final int DEFAULT_CAPACITY = 16;
+
+    //装载因子
+    private static final float LOAD_FACTOR = 0.75f;
+
+    //分段
+    private final Segment[] segments;
+
+    //hash右移位数，取高位选择分段
+    private final int segmentShift;
+
+    public ConcurrentLongHashMap() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param segmentCount 分段数，必须是2的幂
+     */
+    public ConcurrentLongHashMap(int segmentCount) {
+        if (segmentCount <= 0 || (segmentCount & (segmentCount - 1)) != 0) {
+            throw new IllegalArgumentException("segment count must be a power of two: " + segmentCount);
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    }
+
+    /**
+     * 依据key查找
+     *
+     * @param key
+     * @return
+     */
+    public V get(long key) {
+        int h = hash(key);
+        return cast(segmentFor(h).get(key, h));
+    }
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     * @return 原来的value
+     */
+    public V put(long key, V value) {
+        if (null == value) throw new IllegalArgumentException("value must not be null");
+        int h = hash(key);
+        return cast(segmentFor(h).put(key, h, value));
+    }
+
+    /**
+     * 移除指定元素
+     *
+     * @param key
+     * @return
+     */
+    public V remove(long key) {
+        int h = hash(key);
+        return cast(segmentFor(h).remove(key, h));
+    }
+
+    /**
+     * 元素个数，并发修改时为近似值
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * 所有value的快照，逐段加读锁复制
+     *
+     * @return
+     */
+    public List<V> values() {
+        List<V> resultList = new ArrayList<>(size());
+        for (Segment segment : segments) {
+            segment.copyValues(resultList);
+        }
+        return resultList;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentFor(int h) {
+        return segments[segmentShift == 32 ? 0 : h >>> segmentShift];
+    }
+
+    /**
+     * 分段中的value按Object存放，只有put放入的V
+     *
+     * @param value
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 哈希表数组，扩容时整体替换，保证读操作看到的keys和values来自同一次分配
+     */
+    private static final class Table {
+
+        final long[] keys;
+
+        final Object[] values;
+
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+
+    /**
+     * 分段，线性探测，删除时回移后续元素
+     */
+    private static final class Segment extends StampedLock {
+
+        private static final long serialVersionUID = 1L;
+
+        //哈希表
+        private volatile Table table = new Table(DEFAULT_CAPACITY);
+
+        //元素个数
+        private volatile int size;
+
+        Object get(long key, int h) {
+            long stamp = tryOptimisticRead();
+            if (stamp != 0) {
+                Object value = probe(key, h);
+                if (validate(stamp)) return value;
+            }
+            stamp = readLock();
+            try {
+                return probe(key, h);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        /**
+         * 探测key，乐观读时可能看到修改中的数组，最多探测一圈，结果由调用方校验版本
+         *
+         * @param key
+         * @param h
+         * @return
+         */
+        private Object probe(long key, int h) {
+            Table t = table;
+            int slot = h & t.mask;
+            for (int n = 0; n <= t.mask; n++) {
+                Object value = t.values[slot];
+                if (null == value) return null;
+                if (t.keys[slot] == key) return value;
+                slot = (slot + 1) & t.mask;
+            }
+            return null;
+        }
+
+        Object put(long key, int h, Object value) {
+            long stamp = writeLock();
+            try {
+                Table t = table;
+                int slot = h & t.mask;
+                while (null != t.values[slot]) {
+                    if (t.keys[slot] == key) {
+                        Object old = t.values[slot];
+                        t.values[slot] = value;
+                        return old;
+                    }
+                    slot = (slot + 1) & t.mask;
+                }
+                t.keys[slot] = key;
+                t.values[slot] = value;
+                size++;
+                if (size > (t.mask + 1) * LOAD_FACTOR) {
+                    rehash(t);
+                }
+                return null;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        Object remove(long key, int h) {
+            long stamp = writeLock();
+            try {
+                Table t = table;
+                int slot = h & t.mask;
+                Object value;
+                while (null != (value = t.values[slot])) {
+                    if (t.keys[slot] == key) {
+                        size--;
+                        shiftKeys(t, slot);
+                        return value;
+                    }
+                    slot = (slot + 1) & t.mask;
+                }
+                return null;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * 删除slot后，把探测链上后续的元素回移填补空位
+         *
+         * @param t
+         * @param slot
+         */
+        private static void shiftKeys(Table t, int slot) {
+            for (; ; ) {
+                int last = slot;
+                slot = (slot + 1) & t.mask;
+                for (; ; ) {
+                    if (null == t.values[slot]) {
+                        t.values[last] = null;
+                        return;
+                    }
+                    int ideal = hash(t.keys[slot]) & t.mask;
+                    //理想位置不在(last, slot]之间时可以回移到last
+                    if (last <= slot ? last >= ideal || ideal > slot : last >= ideal && ideal > slot) break;
+                    slot = (slot + 1) & t.mask;
+                }
+                t.keys[last] = t.keys[slot];
+                t.values[last] = t.values[slot];
+            }
+        }
+
+        private void rehash(Table old) {
+            Table t = new Table((old.mask + 1) << 1);
+            for (int i = 0; i <= old.mask; i++) {
+                if (null == old.values[i]) continue;
+                int slot = hash(old.keys[i]) & t.mask;
+                while (null != t.values[slot]) {
+                    slot = (slot + 1) & t.mask;
+                }
+                t.keys[slot] = old.keys[i];
+                t.values[slot] = old.values[i];
+            }
+            this.table = t;
+        }
+
+        <V> void copyValues(List<V> resultList) {
+            long stamp = readLock();
+            try {
+                for (Object value : table.values) {
+                    if (null != value) {
+                        resultList.add(ConcurrentLongHashMap.<V>cast(value));
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                this.table = new Table(DEFAULT_CAPACITY);
+                this.size = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package com.reign.memorydb;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName: CopyOnWriteBPlusTree
+ * @Description: 写时复制的唯一索引树，节点发布后不再修改，插入和删除只复制从根到叶子的路径并替换根节点。
+ * <p>
+ * snapshot()只是记录当前根节点，开销为O(1)；长时间的扫描在快照上进行，不需要加锁，也不会阻塞写操作。
+ * 写操作之间串行执行，读操作不加锁。不再被任何快照引用的旧版本节点由GC回收。
+ * 叶子节点之间没有链表（链表会使整棵树无法共享），范围遍历从根节点向下进行
+ * @Author: wuwx
+ * @Date: 2021-04-10 09:20
+ **/
+public class CopyOnWriteBPlusTree<T extends Comparable<T>, V> implements IndexTree<T, V> {
+
+    /**
+     * 默认阶数，64阶
+     **/
+    private static final int DEFAULT_M = BPlusTree.DEFAULT_M;
+
+    //M的大小，偶数个
+    private final int M;
+
+    //当前版本的根节点
+    private volatile Node root;
+
+    public CopyOnWriteBPlusTree() {
+        this(DEFAULT_M);
+    }
+
+    public CopyOnWriteBPlusTree(int m) {
+        if (m < 4) throw new IllegalArgumentException("m must not be less than 4");
+        this.M = m % 2 == 0 ? m : m - 1;
+        //初始时根节点是一个空的叶子节点
+        this.root = new LeafNode(new Object[0], new Object[0]);
+    }
+
+    /**
+     * 获取当前版本的只读快照
+     *
+     * @return
+     */
+    public Snapshot<T, V> snapshot() {
+        return new Snapshot<>(this.root);
+    }
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     */
+    @Override
+    public synchronized void insert(T key, V value) {
+        if (key == null) throw new NullPointerException("must not be null for key");
+        Node[] nodes = this.root.insert(key, value, M);
+        if (nodes.length == 1) {
+            this.root = nodes[0];
+        } else {
+            //根节点分裂，树长高一层
+            this.root = new InternalNode(new Object[]{nodes[0].keys[0], nodes[1].keys[0]}, nodes);
+        }
+    }
+
+    /**
+     * 依据key查找
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public V find(T key) {
+        return cast(find(this.root, key));
+    }
+
+    /**
+     * 范围查找，包含start和end
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    @Override
+    public List<V> rangeFind(T start, T end) {
+        return rangeFind(this.root, start, end);
+    }
+
+    /**
+     * 范围查找，可指定边界是否包含，start或end为null表示不限制
+     *
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @return
+     */
+    @Override
+    public List<V> rangeFind(T start, boolean startInclusive, T end, boolean endInclusive) {
+        List<V> resultList = new ArrayList<>();
+        collect(this.root, start, startInclusive, end, endInclusive, resultList);
+        return resultList;
+    }
+
+    /**
+     * 根据自定义比较器比较，全表扫描
+     *
+     * @param matcher
+     * @return
+     */
+    @Override
+    public List<V> findAll(Matcher<V> matcher) {
+        return findAll(this.root, matcher);
+    }
+
+    /**
+     * 移除指定元素
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public synchronized V remove(T key) {
+        Object[] removed = new Object[1];
+        Node node = this.root.remove(key, removed, M);
+        if (node == this.root) return null;
+        //根节点只剩一个孩子，树降低一层
+        if (node instanceof InternalNode && node.keys.length == 1) {
+            node = ((InternalNode) node).pointers[0];
+        }
+        this.root = node;
+        return cast(removed[0]);
+    }
+
+    /**
+     * 获取树高
+     *
+     * @return
+     */
+    @Override
+    public int getHeight() {
+        return getHeight(this.root);
+    }
+
+    private static Object find(Node node, Object key) {
+        while (node instanceof InternalNode) {
+            node = ((InternalNode) node).pointers[node.childIndex(key)];
+        }
+        int i = node.lowerBound(key);
+        return i < node.keys.length && compare(key, node.keys[i]) == 0 ? ((LeafNode) node).values[i] : null;
+    }
+
+    private static <V> List<V> rangeFind(Node node, Object start, Object end) {
+        if (compare(start, end) > 0) throw new RuntimeException("starter cannot greater than end");
+        List<V> resultList = new ArrayList<>();
+        collect(node, start, true, end, true, resultList);
+        return resultList;
+    }
+
+    /**
+     * 递归收集范围内的value，start或end为null表示不限制
+     *
+     * @param node
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @param resultList
+     */
+    private static <V> void collect(Node node, Object start, boolean startInclusive, Object end, boolean endInclusive, List<V> resultList) {
+        if (node instanceof LeafNode) {
+            LeafNode leaf = (LeafNode) node;
+            int i = null == start ? 0 : startInclusive ? leaf.lowerBound(start) : leaf.upperBound(start);
+            for (; i < leaf.keys.length; i++) {
+                if (null != end) {
+                    int c = compare(end, leaf.keys[i]);
+                    if (c < 0 || (c == 0 && !endInclusive)) return;
+                }
+                resultList.add(CopyOnWriteBPlusTree.<V>cast(leaf.values[i]));
+            }
+            return;
+        }
+        InternalNode internal = (InternalNode) node;
+        int last = null == end ? internal.keys.length - 1 : internal.upperBound(end) - 1;
+        for (int i = null == start ? 0 : internal.childIndex(start); i <= last; i++) {
+            collect(internal.pointers[i], start, startInclusive, end, endInclusive, resultList);
+        }
+    }
+
+    private static <V> List<V> findAll(Node node, Matcher<V> matcher) {
+        List<V> resultList = new ArrayList<>();
+        findAll(node, matcher, resultList);
+        return resultList;
+    }
+
+    private static <V> void findAll(Node node, Matcher<V> matcher, List<V> resultList) {
+        if (node instanceof LeafNode) {
+            for (Object value : ((LeafNode) node).values) {
+                if (matcher.match(CopyOnWriteBPlusTree.<V>cast(value))) {
+                    resultList.add(CopyOnWriteBPlusTree.<V>cast(value));
+                }
+            }
+            return;
+        }
+        for (Node child : ((InternalNode) node).pointers) {
+            findAll(child, matcher, resultList);
+        }
+    }
+
+    /**
+     * 比较两个key，树中的key都是插入时的T
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    /**
+     * 节点中的value都是插入时的V
+     *
+     * @param value
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static int getHeight(Node node) {
+        int height = 1;
+        while (node instanceof InternalNode) {
+            height++;
+            node = ((InternalNode) node).pointers[0];
+        }
+        return height;
+    }
+
+    /**
+     * 只读快照，持有某一版本的根节点，之后的写操作对快照不可见
+     */
+    public static final class Snapshot<T extends Comparable<T>, V> {
+
+        //快照版本的根节点
+        private final Node root;
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+
+        /**
+         * 依据key查找
+         *
+         * @param key
+         * @return
+         */
+        public V find(T key) {
+            return cast(CopyOnWriteBPlusTree.find(root, key));
+        }
+
+        /**
+         * 范围查找，包含start和end
+         *
+         * @param start
+         * @param end
+         * @return
+         */
+        public List<V> rangeFind(T start, T end) {
+            return CopyOnWriteBPlusTree.rangeFind(root, start, end);
+        }
+
+        /**
+         * 范围查找，可指定边界是否包含，start或end为null表示不限制
+         *
+         * @param start
+         * @param startInclusive
+         * @param end
+         * @param endInclusive
+         * @return
+         */
+        public List<V> rangeFind(T start, boolean startInclusive, T end, boolean endInclusive) {
+            List<V> resultList = new ArrayList<>();
+            collect(root, start, startInclusive, end, endInclusive, resultList);
+            return resultList;
+        }
+
+        /**
+         * 根据自定义比较器比较，全表扫描
+         *
+         * @param matcher
+         * @return
+         */
+        public List<V> findAll(Matcher<V> matcher) {
+            return CopyOnWriteBPlusTree.findAll(root, matcher);
+        }
+
+        /**
+         * 获取树高
+         *
+         * @return
+         */
+        public int getHeight() {
+            return CopyOnWriteBPlusTree.getHeight(root);
+        }
+    }
+
+    /**
+     * 不可变节点，keys数组长度即节点大小
+     */
+    abstract static class Node {
+
+        //keys节点key值，内部节点中keys[i]为pointers[i]子树的最小key
+        final Object[] keys;
+
+        Node(Object[] keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * 插入数据，返回替换本节点的新节点，发生分裂时返回两个节点
+         *
+         * @param key
+         * @param value
+         * @param m     阶数
+         * @return
+         */
+        abstract Node[] insert(Object key, Object value, int m);
+
+        /**
+         * 删除数据，返回替换本节点的新节点，key不存在时返回本节点
+         *
+         * @param key
+         * @param removed 输出被删除的value
+         * @param m       阶数
+         * @return
+         */
+        abstract Node remove(Object key, Object[] removed, int m);
+
+        /**
+         * 与右侧兄弟节点合并，元素过多时重新平分为两个节点
+         *
+         * @param right
+         * @param m     阶数
+         * @return
+         */
+        abstract Node[] merge(Node right, int m);
+
+        /**
+         * 二分查找第一个大于等于key的位置
+         *
+         * @param key
+         * @return
+         */
+        final int lowerBound(Object key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(key, keys[middle]) > 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 二分查找第一个大于key的位置
+         *
+         * @param key
+         * @return
+         */
+        final int upperBound(Object key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(key, keys[middle]) >= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 获取key所在的孩子位置
+         *
+         * @param key
+         * @return
+         */
+        final int childIndex(Object key) {
+            int i = upperBound(key) - 1;
+            return i < 0 ? 0 : i;
+        }
+    }
+
+    /**
+     * 非叶子节点
+     */
+    static final class InternalNode extends Node {
+
+        //指向下一级的指针
+        final Node[] pointers;
+
+        InternalNode(Object[] keys, Node[] pointers) {
+            super(keys);
+            this.pointers = pointers;
+        }
+
+        @Override
+        Node[] insert(Object key, Object value, int m) {
+            int i = childIndex(key);
+            Node[] children = this.pointers[i].insert(key, value, m);
+            Object[] newKeys;
+            Node[] newPointers;
+            if (children.length == 1) {
+                newKeys = this.keys.clone();
+                newPointers = this.pointers.clone();
+            } else {
+                newKeys = insertAt(this.keys, i + 1, children[1].keys[0]);
+                newPointers = insertAt(this.pointers, i + 1, children[1]);
+            }
+            newKeys[i] = children[0].keys[0];
+            newPointers[i] = children[0];
+            return split(newKeys, newPointers, m);
+        }
+
+        /**
+         * 元素超过m时平分为两个节点
+         *
+         * @param newKeys
+         * @param newPointers
+         * @param m
+         * @return
+         */
+        private static Node[] split(Object[] newKeys, Node[] newPointers, int m) {
+            if (newKeys.length <= m) {
+                return new Node[]{new InternalNode(newKeys, newPointers)};
+            }
+            int middle = newKeys.length / 2;
+            return new Node[]{
+                    new InternalNode(Arrays.copyOfRange(newKeys, 0, middle), Arrays.copyOfRange(newPointers, 0, middle)),
+                    new InternalNode(Arrays.copyOfRange(newKeys, middle, newKeys.length), Arrays.copyOfRange(newPointers, middle, newPointers.length))};
+        }
+
+        @Override
+        Node remove(Object key, Object[] removed, int m) {
+            int i = childIndex(key);
+            Node child = this.pointers[i].remove(key, removed, m);
+            if (child == this.pointers[i]) return this;
+
+            Object[] newKeys = this.keys.clone();
+            Node[] newPointers = this.pointers.clone();
+            newKeys[i] = child.keys.length > 0 ? child.keys[0] : newKeys[i];
+            newPointers[i] = child;
+            if (child.keys.length >= m / 2 || this.keys.length == 1) {
+                return new InternalNode(newKeys, newPointers);
+            }
+
+            //孩子节点少于m/2个元素，同兄弟节点合并或者重新平分
+            int left = i > 0 ? i - 1 : i;
+            Node[] merged = newPointers[left].merge(newPointers[left + 1], m);
+            newKeys[left] = merged[0].keys[0];
+            newPointers[left] = merged[0];
+            if (merged.length == 2) {
+                newKeys[left + 1] = merged[1].keys[0];
+                newPointers[left + 1] = merged[1];
+                return new InternalNode(newKeys, newPointers);
+            }
+            return new InternalNode(removeAt(newKeys, left + 1), removeAt(newPointers, left + 1));
+        }
+
+        @Override
+        Node[] merge(Node right, int m) {
+            InternalNode other = (InternalNode) right;
+            return split(concat(this.keys, other.keys), concat(this.pointers, other.pointers), m);
+        }
+    }
+
+    /**
+     * 叶子节点，用来存储keys和真正的value
+     */
+    static final class LeafNode extends Node {
+
+        //value值
+        final Object[] values;
+
+        LeafNode(Object[] keys, Object[] values) {
+            super(keys);
+            this.values = values;
+        }
+
+        @Override
+        Node[] insert(Object key, Object value, int m) {
+            int i = lowerBound(key);
+            if (i < this.keys.length && compare(key, this.keys[i]) == 0) {
+                //如果插入的key已经存在，则覆盖值，keys数组可以共享
+                Object[] newValues = this.values.clone();
+                newValues[i] = value;
+                return new Node[]{new LeafNode(this.keys, newValues)};
+            }
+            return split(insertAt(this.keys, i, key), insertAt(this.values, i, value), m);
+        }
+
+        /**
+         * 元素超过m时平分为两个节点
+         *
+         * @param newKeys
+         * @param newValues
+         * @param m
+         * @return
+         */
+        private static Node[] split(Object[] newKeys, Object[] newValues, int m) {
+            if (newKeys.length <= m) {
+                return new Node[]{new LeafNode(newKeys, newValues)};
+            }
+            int middle = newKeys.length / 2;
+            return new Node[]{
+                    new LeafNode(Arrays.copyOfRange(newKeys, 0, middle), Arrays.copyOfRange(newValues, 0, middle)),
+                    new LeafNode(Arrays.copyOfRange(newKeys, middle, newKeys.length), Arrays.copyOfRange(newValues, middle, newValues.length))};
+        }
+
+        @Override
+        Node remove(Object key, Object[] removed, int m) {
+            int i = lowerBound(key);
+            if (i >= this.keys.length || compare(key, this.keys[i]) != 0) return this;
+            removed[0] = this.values[i];
+            return new LeafNode(removeAt(this.keys, i), removeAt(this.values, i));
+        }
+
+        @Override
+        Node[] merge(Node right, int m) {
+            LeafNode other = (LeafNode) right;
+            return split(concat(this.keys, other.keys), concat(this.values, other.values), m);
+        }
+    }
+
+    /**
+     * 复制数组并在指定位置插入元素
+     *
+     * @param array
+     * @param index
+     * @param element
+     * @return
+     */
+    private static <E> E[] insertAt(E[] array, int index, E element) {
+        E[] result = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        result[index] = element;
+        return result;
+    }
+
+    /**
+     * 复制数组并删除指定位置的元素
+     *
+     * @param array
+     * @param index
+     * @return
+     */
+    private static <E> E[] removeAt(E[] array, int index) {
+        E[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    /**
+     * 拼接两个数组
+     *
+     * @param left
+     * @param right
+     * @return
+     */
+    private static <E> E[] concat(E[] left, E[] right) {
+        E[] result = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, result, left.length, right.length);
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package com.reign.memorydb;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName: CursorSpliterator
+ * @Description: 基于游标的Spliterator，按需向后移动游标，流上的limit/findFirst等短路操作会提前结束遍历
+ * @Author: wuwx
+ * @Date: 2021-04-08 10:40
+ **/
+class CursorSpliterator<T extends Comparable<T>, V> extends Spliterators.AbstractSpliterator<V> {
+
+    //游标，已经定位到起始位置
+    private final TreeCursor<T, V> cursor;
+
+    //结束key，包含；为null表示不限制
+    private final T end;
+
+    CursorSpliterator(TreeCursor<T, V> cursor, T end) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.cursor = cursor;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super V> action) {
+        if (!cursor.valid()) return false;
+        if (end != null && end.compareTo(cursor.key()) < 0) return false;
+        action.accept(cursor.value());
+        cursor.next();
+        return true;
+    }
+}
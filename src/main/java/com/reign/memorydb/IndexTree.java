@@ -0,0 +1,71 @@
+package com.reign.memorydb;
+
+import java.util.List;
+
+/**
+ * @ClassName: IndexTree
+ * @Description: 索引树规范
+ * @Author: wuwx
+ * @Date: 2021-04-07 14:02
+ **/
+public interface IndexTree<T extends Comparable<T>, V> {
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     */
+    void insert(T key, V value);
+
+    /**
+     * 依据key查找
+     *
+     * @param key
+     * @return
+     */
+    V find(T key);
+
+    /**
+     * 范围查找
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    List<V> rangeFind(T start, T end);
+
+    /**
+     * 范围查找，可指定边界是否包含，start或end为null表示不限制
+     *
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @return
+     */
+    List<V> rangeFind(T start, boolean startInclusive, T end, boolean endInclusive);
+
+    /**
+     * 根据自定义比较器比较，全表扫描
+     *
+     * @param matcher
+     * @return
+     */
+    List<V> findAll(Matcher<V> matcher);
+
+    /**
+     * 移除指定元素
+     *
+     * @param key
+     * @return
+     */
+    V remove(T key);
+
+    /**
+     * 获取树高
+     *
+     * @return
+     */
+    int getHeight();
+}
@@ -0,0 +1,47 @@
+package com.reign.memorydb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @ClassName: KeyCodec
+ * @Description: 堆外索引树的定长编解码器，负责在ByteBuffer中读写以及直接比较已编码的数据
+ * @Author: wuwx
+ * @Date: 2021-04-09 09:30
+ **/
+public interface KeyCodec<T> {
+
+    /**
+     * 编码后的字节宽度，固定不变
+     *
+     * @return
+     */
+    int width();
+
+    /**
+     * 将value写入buffer的指定位置
+     *
+     * @param buffer
+     * @param offset
+     * @param value
+     */
+    void write(ByteBuffer buffer, int offset, T value);
+
+    /**
+     * 从buffer的指定位置读取
+     *
+     * @param buffer
+     * @param offset
+     * @return
+     */
+    T read(ByteBuffer buffer, int offset);
+
+    /**
+     * 比较buffer指定位置已编码的数据与key，不做解码
+     *
+     * @param buffer
+     * @param offset
+     * @param key
+     * @return 小于、等于、大于key时分别返回负数、0、正数
+     */
+    int compare(ByteBuffer buffer, int offset, T key);
+}
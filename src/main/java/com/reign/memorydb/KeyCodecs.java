@@ -0,0 +1,130 @@
+package com.reign.memorydb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @ClassName: KeyCodecs
+ * @Description: 常用的定长编解码器：int、long以及定长字符串
+ * @Author: wuwx
+ * @Date: 2021-04-09 09:45
+ **/
+public final class KeyCodecs {
+
+    /**
+     * int编码，4字节
+     */
+    public static final KeyCodec<Integer> INT = new KeyCodec<Integer>() {
+        @Override
+        public int width() {
+            return 4;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer value) {
+            buffer.putInt(offset, value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+
+        @Override
+        public int compare(ByteBuffer buffer, int offset, Integer key) {
+            return Integer.compare(buffer.getInt(offset), key);
+        }
+    };
+
+    /**
+     * long编码，8字节
+     */
+    public static final KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        @Override
+        public int width() {
+            return 8;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long value) {
+            buffer.putLong(offset, value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public int compare(ByteBuffer buffer, int offset, Long key) {
+            return Long.compare(buffer.getLong(offset), key);
+        }
+    };
+
+    private KeyCodecs() {
+    }
+
+    /**
+     * 定长字符串编码，最多容纳length个char
+     *
+     * @param length
+     * @return
+     */
+    public static KeyCodec<String> fixedString(int length) {
+        return new FixedStringCodec(length);
+    }
+
+    /**
+     * 定长字符串编码，布局为2字节长度加length个char，
+     * 按char逐个比较，顺序与String.compareTo一致
+     */
+    private static final class FixedStringCodec implements KeyCodec<String> {
+
+        //最多容纳的char数量
+        private final int length;
+
+        FixedStringCodec(int length) {
+            if (length <= 0 || length > Short.MAX_VALUE) throw new IllegalArgumentException("illegal length " + length);
+            this.length = length;
+        }
+
+        @Override
+        public int width() {
+            return 2 + 2 * length;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, String value) {
+            int len = value.length();
+            if (len > length) throw new IllegalArgumentException("string too long, max length " + length + ": " + value);
+            buffer.putShort(offset, (short) len);
+            for (int i = 0; i < len; i++) {
+                buffer.putChar(offset + 2 + 2 * i, value.charAt(i));
+            }
+        }
+
+        @Override
+        public String read(ByteBuffer buffer, int offset) {
+            int len = buffer.getShort(offset);
+            char[] chars = new char[len];
+            for (int i = 0; i < len; i++) {
+                chars[i] = buffer.getChar(offset + 2 + 2 * i);
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public int compare(ByteBuffer buffer, int offset, String key) {
+            int len = buffer.getShort(offset);
+            int keyLen = key.length();
+            int min = Math.min(len, keyLen);
+            for (int i = 0; i < min; i++) {
+                char c = buffer.getChar(offset + 2 + 2 * i);
+                char k = key.charAt(i);
+                if (c != k) {
+                    return c - k;
+                }
+            }
+            return len - keyLen;
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package com.reign.memorydb;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @ClassName: LongBPlusTree
+ * @Description: long类型key的唯一索引树，key直接存放在long[]中，避免装箱以及Comparable的虚调用，int类型key扩展为long后存放
+ * @Author: wuwx
+ * @Date: 2021-04-06 10:45
+ **/
+public class LongBPlusTree<V> {
+
+    /**
+     * 默认阶数，64阶
+     **/
+    private static final int DEFAULT_M = BPlusTree.DEFAULT_M;
+
+    //M的大小，偶数个
+    private int M;
+
+    //叶子节点的头结点
+    private LeafNode<V> head;
+
+    private Node<V> root;
+
+    public void print() {
+        System.out.println("height" + getHeight());
+        StringBuilder sb = new StringBuilder();
+        this.root.print(sb, 1);
+        System.out.println(sb.toString());
+    }
+
+    public LongBPlusTree() {
+        this(DEFAULT_M);
+    }
+
+    public LongBPlusTree(int m) {
+        if (m < 4) throw new IllegalArgumentException("m must not be less than 4");
+        this.M = m % 2 == 0 ? m : m - 1;
+        //初始时根节点是一个叶子节点
+        this.root = new LeafNode<>();
+        this.head = (LeafNode<V>) this.root;
+    }
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     */
+    public void insert(long key, V value) {
+        Node<V> right = this.root.insert(key, value);
+        if (right != null) {
+            //根节点分裂，树长高一层
+            InternalNode<V> newRoot = new InternalNode<>();
+            newRoot.keys[0] = this.root.keys[0];
+            newRoot.pointers[0] = this.root;
+            newRoot.keys[1] = right.keys[0];
+            newRoot.pointers[1] = right;
+            newRoot.size = 2;
+            this.root = newRoot;
+        }
+    }
+
+    /**
+     * 依据key查找
+     *
+     * @param key
+     * @return
+     */
+    public V find(long key) {
+        LeafNode<V> leaf = findLeaf(key);
+        int index = leaf.indexOf(key);
+        return index >= 0 ? leaf.valueAt(index) : null;
+    }
+
+    /**
+     * 根据自定义比较器比较，全表扫描
+     *
+     * @param matcher
+     * @return
+     */
+    public List<V> findAll(Matcher<V> matcher) {
+        LeafNode<V> node = head;
+        List<V> resultList = new ArrayList<>();
+        while (node != null) {
+            for (int i = 0; i < node.size; i++) {
+                if (matcher.match(node.valueAt(i))) {
+                    resultList.add(node.valueAt(i));
+                }
+            }
+            node = node.next;
+        }
+        return resultList;
+    }
+
+    /**
+     * 范围查找，包含start和end
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    public List<V> rangeFind(long start, long end) {
+        if (start > end) throw new RuntimeException("starter cannot greater than end");
+        LeafNode<V> node = findLeaf(start);
+        int i = node.lowerBound(start);
+        List<V> resultList = new ArrayList<>();
+        while (node != null) {
+            for (; i < node.size; i++) {
+                if (node.keys[i] > end) {
+                    return resultList;
+                }
+                resultList.add(node.valueAt(i));
+            }
+            node = node.next;
+            i = 0;
+        }
+        return resultList;
+    }
+
+    /**
+     * 移除指定元素
+     *
+     * @param key
+     * @return
+     */
+    public V remove(long key) {
+        V v = this.root.remove(key);
+        //根节点只剩一个孩子，树降低一层
+        if (this.root instanceof InternalNode && this.root.size == 1) {
+            this.root = ((InternalNode<V>) this.root).pointers[0];
+        }
+        return v;
+    }
+
+    /**
+     * 获取树高
+     *
+     * @return
+     */
+    public int getHeight() {
+        int height = 1;
+        Node<V> node = this.root;
+        while (!(node instanceof LeafNode)) {
+            height++;
+            node = ((InternalNode<V>) node).pointers[0];
+        }
+        return height;
+    }
+
+    /**
+     * 查找key所在的叶子节点
+     *
+     * @param key
+     * @return
+     */
+    private LeafNode<V> findLeaf(long key) {
+        Node<V> node = this.root;
+        while (node instanceof InternalNode) {
+            InternalNode<V> internal = (InternalNode<V>) node;
+            node = internal.pointers[internal.childIndex(key)];
+        }
+        return (LeafNode<V>) node;
+    }
+
+    /**
+     * 节点
+     */
+    abstract class Node<V> {
+
+        //keys节点key值，内部节点中keys[i]为pointers[i]子树的最小key
+        protected long[] keys;
+        //节点大小
+        protected int size;
+
+        /**
+         * 插入数据
+         *
+         * @param key
+         * @param value
+         * @return 发生分裂时返回分裂出的右节点，否则返回null
+         */
+        abstract Node<V> insert(long key, V value);
+
+        /**
+         * 删除数据
+         *
+         * @param key
+         * @return
+         */
+        abstract V remove(long key);
+
+        /**
+         * 打印节点
+         *
+         * @param sb
+         * @param height
+         */
+        abstract void print(StringBuilder sb, int height);
+
+        /**
+         * 二分查找第一个大于等于key的位置
+         *
+         * @param key
+         * @return
+         */
+        protected final int lowerBound(long key) {
+            int low = 0;
+            int high = this.size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.keys[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 二分查找第一个大于key的位置
+         *
+         * @param key
+         * @return
+         */
+        protected final int upperBound(long key) {
+            int low = 0;
+            int high = this.size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.keys[middle] <= key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * 非叶子节点，只存储keys
+     *
+     * @param <V>
+     */
+    class InternalNode<V> extends Node<V> {
+
+        //指向下一级的指针
+        private Node<V>[] pointers;
+
+        public InternalNode() {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node<V>[] pointers = new Node[M];
+            this.pointers = pointers;
+            this.size = 0;
+            this.keys = new long[M];
+        }
+
+        /**
+         * 获取key所在的孩子位置
+         *
+         * @param key
+         * @return
+         */
+        final int childIndex(long key) {
+            int i = upperBound(key) - 1;
+            return i < 0 ? 0 : i;
+        }
+
+        @Override
+        Node<V> insert(long key, V value) {
+            int i = childIndex(key);
+            if (key < this.keys[0]) {
+                //最左侧路径上维护最小key
+                this.keys[0] = key;
+            }
+            Node<V> right = this.pointers[i].insert(key, value);
+            if (right == null) return null;
+            return insertPointer(i + 1, right.keys[0], right);
+        }
+
+        /**
+         * 在指定位置插入指针，已满时分裂
+         *
+         * @param index
+         * @param key
+         * @param pointer
+         * @return 发生分裂时返回分裂出的右节点，否则返回null
+         */
+        private Node<V> insertPointer(int index, long key, Node<V> pointer) {
+            if (this.size < M) {
+                System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+                System.arraycopy(this.pointers, index, this.pointers, index + 1, this.size - index);
+                this.keys[index] = key;
+                this.pointers[index] = pointer;
+                this.size++;
+                return null;
+            }
+
+            //已满，需要分裂
+            int m = this.size / 2;
+            InternalNode<V> rightNode = new InternalNode<>();
+            rightNode.size = this.size - m;
+            System.arraycopy(this.keys, m, rightNode.keys, 0, rightNode.size);
+            System.arraycopy(this.pointers, m, rightNode.pointers, 0, rightNode.size);
+            //清理自己
+            for (int j = m; j < this.size; j++) {
+                this.pointers[j] = null;
+            }
+            this.size = m;
+
+            if (index > m) {
+                rightNode.insertPointer(index - m, key, pointer);
+            } else {
+                this.insertPointer(index, key, pointer);
+            }
+            return rightNode;
+        }
+
+        /**
+         * 移除指定位置的指针
+         *
+         * @param index
+         */
+        private void removePointer(int index) {
+            System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+            System.arraycopy(this.pointers, index + 1, this.pointers, index, this.size - index - 1);
+            this.pointers[this.size - 1] = null;
+            this.size--;
+        }
+
+        @Override
+        V remove(long key) {
+            int i = childIndex(key);
+            Node<V> child = this.pointers[i];
+            V value = child.remove(key);
+            if (value != null && child.size < M / 2) {
+                rebalance(i);
+            }
+            return value;
+        }
+
+        /**
+         * 孩子节点少于m/2个元素，向兄弟节点借或者与兄弟节点合并
+         *
+         * @param index
+         */
+        private void rebalance(int index) {
+            int m = M / 2;
+            Node<V> child = this.pointers[index];
+            Node<V> previous = index > 0 ? this.pointers[index - 1] : null;
+            Node<V> next = index + 1 < this.size ? this.pointers[index + 1] : null;
+
+            if (child instanceof LeafNode) {
+                LeafNode<V> leaf = (LeafNode<V>) child;
+                if (previous != null && previous.size > m) {
+                    //从前节点尾部借
+                    LeafNode<V> prev = (LeafNode<V>) previous;
+                    leaf.insertIntoHead(prev.keys[prev.size - 1], prev.values[prev.size - 1]);
+                    prev.deleteFromTail();
+                    this.keys[index] = leaf.keys[0];
+                } else if (next != null && next.size > m) {
+                    //从后节点头部借
+                    LeafNode<V> nextLeaf = (LeafNode<V>) next;
+                    leaf.insertIntoTail(nextLeaf.keys[0], nextLeaf.values[0]);
+                    nextLeaf.deleteFromHead();
+                    this.keys[index + 1] = nextLeaf.keys[0];
+                } else if (previous != null) {
+                    //同前面节点合并
+                    ((LeafNode<V>) previous).merge(leaf);
+                    removePointer(index);
+                } else if (next != null) {
+                    //同后面节点合并
+                    leaf.merge((LeafNode<V>) next);
+                    removePointer(index + 1);
+                }
+            } else {
+                InternalNode<V> internal = (InternalNode<V>) child;
+                if (previous != null && previous.size > m) {
+                    InternalNode<V> prev = (InternalNode<V>) previous;
+                    internal.insertPointerHead(prev.keys[prev.size - 1], prev.pointers[prev.size - 1]);
+                    prev.removePointer(prev.size - 1);
+                    this.keys[index] = internal.keys[0];
+                } else if (next != null && next.size > m) {
+                    InternalNode<V> nextInternal = (InternalNode<V>) next;
+                    internal.insertPointer(internal.size, nextInternal.keys[0], nextInternal.pointers[0]);
+                    nextInternal.removePointer(0);
+                    this.keys[index + 1] = nextInternal.keys[0];
+                } else if (previous != null) {
+                    ((InternalNode<V>) previous).merge(internal);
+                    removePointer(index);
+                } else if (next != null) {
+                    internal.merge((InternalNode<V>) next);
+                    removePointer(index + 1);
+                }
+            }
+        }
+
+        /**
+         * 插入到头部
+         *
+         * @param key
+         * @param pointer
+         */
+        private void insertPointerHead(long key, Node<V> pointer) {
+            System.arraycopy(this.keys, 0, this.keys, 1, this.size);
+            System.arraycopy(this.pointers, 0, this.pointers, 1, this.size);
+            this.keys[0] = key;
+            this.pointers[0] = pointer;
+            this.size++;
+        }
+
+        /**
+         * 合并右侧节点
+         *
+         * @param right
+         */
+        private void merge(InternalNode<V> right) {
+            System.arraycopy(right.keys, 0, this.keys, this.size, right.size);
+            System.arraycopy(right.pointers, 0, this.pointers, this.size, right.size);
+            this.size += right.size;
+        }
+
+        @Override
+        void print(StringBuilder sb, int height) {
+            int i = 0;
+            sb.append("T").append(height).append("(");
+            for (; i < this.size; i++) {
+                sb.append(this.keys[i]).append(" ");
+            }
+            sb.append(") ");
+            StringBuilder innerBuilder = new StringBuilder();
+            for (i = 0; i < this.size; i++) {
+                this.pointers[i].print(innerBuilder, height + 1);
+            }
+            innerBuilder.append("\n");
+            sb.append("\n").append(innerBuilder.toString());
+        }
+    }
+
+
+    /**
+     * 叶子节点，用来存储keys和真正的value;
+     *
+     * @param <V>
+     */
+    class LeafNode<V> extends Node<V> {
+
+        //叶节点的前节点
+        protected LeafNode<V> previous;
+
+        //叶节点的后节点
+        protected LeafNode<V> next;
+
+        private Object[] values;
+
+        public LeafNode() {
+            this.size = 0;
+            this.keys = new long[M];
+            this.values = new Object[M];
+        }
+
+        /**
+         * 第i个值，values中只有插入的V
+         *
+         * @param i
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        V valueAt(int i) {
+            return (V) values[i];
+        }
+
+        /**
+         * 精确查找key的位置
+         *
+         * @param key
+         * @return 未找到返回-1
+         */
+        final int indexOf(long key) {
+            int i = lowerBound(key);
+            return i < this.size && this.keys[i] == key ? i : -1;
+        }
+
+        @Override
+        Node<V> insert(long key, V value) {
+            int i = lowerBound(key);
+            if (i < this.size && this.keys[i] == key) {
+                //如果插入的key已经存在，则覆盖值
+                this.values[i] = value;
+                return null;
+            }
+            if (this.size < M) {
+                insertAt(i, key, value);
+                return null;
+            }
+
+            //已满，分裂
+            int m = this.size / 2;
+            LeafNode<V> rightNode = new LeafNode<>();
+            rightNode.size = this.size - m;
+            System.arraycopy(this.keys, m, rightNode.keys, 0, rightNode.size);
+            System.arraycopy(this.values, m, rightNode.values, 0, rightNode.size);
+            for (int j = m; j < this.size; j++) {
+                this.values[j] = null;
+            }
+            this.size = m;
+
+            //设置链接
+            rightNode.next = this.next;
+            if (this.next != null) {
+                this.next.previous = rightNode;
+            }
+            rightNode.previous = this;
+            this.next = rightNode;
+
+            if (i > m) {
+                rightNode.insertAt(i - m, key, value);
+            } else {
+                this.insertAt(i, key, value);
+            }
+            return rightNode;
+        }
+
+        /**
+         * 在指定位置插入
+         *
+         * @param i
+         * @param key
+         * @param value
+         */
+        private void insertAt(int i, long key, Object value) {
+            System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+            System.arraycopy(this.values, i, this.values, i + 1, this.size - i);
+            this.keys[i] = key;
+            this.values[i] = value;
+            this.size++;
+        }
+
+        @Override
+        V remove(long key) {
+            int middle = indexOf(key);
+            if (middle == -1) return null;
+            V value = valueAt(middle);
+            System.arraycopy(this.keys, middle + 1, this.keys, middle, this.size - middle - 1);
+            System.arraycopy(this.values, middle + 1, this.values, middle, this.size - middle - 1);
+            this.values[this.size - 1] = null;
+            this.size--;
+            return value;
+        }
+
+        /**
+         * 插入头部
+         *
+         * @param key
+         * @param value
+         */
+        private void insertIntoHead(long key, Object value) {
+            insertAt(0, key, value);
+        }
+
+        /**
+         * 插入尾部
+         *
+         * @param key
+         * @param value
+         */
+        private void insertIntoTail(long key, Object value) {
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size++;
+        }
+
+        /**
+         * 删除头部节点
+         */
+        private void deleteFromHead() {
+            System.arraycopy(this.keys, 1, this.keys, 0, this.size - 1);
+            System.arraycopy(this.values, 1, this.values, 0, this.size - 1);
+            this.values[this.size - 1] = null;
+            this.size--;
+        }
+
+        /**
+         * 删除尾部节点
+         */
+        private void deleteFromTail() {
+            this.values[this.size - 1] = null;
+            this.size--;
+        }
+
+        /**
+         * 合并右侧节点，并修正叶子节点链接
+         *
+         * @param right
+         */
+        private void merge(LeafNode<V> right) {
+            System.arraycopy(right.keys, 0, this.keys, this.size, right.size);
+            System.arraycopy(right.values, 0, this.values, this.size, right.size);
+            this.size += right.size;
+            this.next = right.next;
+            if (right.next != null) {
+                right.next.previous = this;
+            }
+        }
+
+        @Override
+        void print(StringBuilder sb, int height) {
+            sb.append("L").append(height).append("(");
+            for (int i = 0; i < this.size; i++) {
+                sb.append(this.keys[i]).append(",").append(this.values[i]).append("_");
+            }
+            if (this.size > 0) {
+                sb.deleteCharAt(sb.length() - 1);
+            }
+            sb.append(") ");
+        }
+    }
+}
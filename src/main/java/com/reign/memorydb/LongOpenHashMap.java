@@ -0,0 +1,197 @@
+package com.reign.memorydb;
+
+/**
+ * @ClassName: LongOpenHashMap
+ * @Description: long类型key的开放寻址哈希表，线性探测，key直接存放在long[]中，查找不装箱也不分配对象；
+ * 删除时回移后续元素而不是留下墓碑，探测链不会因为删除变长。value不能为null，null表示空槽
+ * @Author: wuwx
+ * @Date: 2021-04-14 15:10
+ **/
+public class LongOpenHashMap<V> {
+
+    //默认容量
+    private static final int DEFAULT_CAPACITY = 16;
+
+    //装载因子
+    private static final float LOAD_FACTOR = 0.75f;
+
+    //key数组
+    private long[] keys;
+
+    //value数组，null表示空槽
+    private Object[] values;
+
+    //容量-1
+    private int mask;
+
+    //元素个数
+    private int size;
+
+    //扩容阈值
+    private int threshold;
+
+    public LongOpenHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongOpenHashMap(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     * @return 原来的value
+     */
+    public V put(long key, V value) {
+        if (null == value) throw new IllegalArgumentException("value must not be null");
+        int slot = slot(key);
+        while (null != values[slot]) {
+            if (keys[slot] == key) {
+                V old = cast(values[slot]);
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * 依据key查找
+     *
+     * @param key
+     * @return
+     */
+    public V get(long key) {
+        int slot = slot(key);
+        Object value;
+        while (null != (value = values[slot])) {
+            if (keys[slot] == key) return cast(value);
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 移除指定元素
+     *
+     * @param key
+     * @return
+     */
+    public V remove(long key) {
+        int slot = slot(key);
+        Object value;
+        while (null != (value = values[slot])) {
+            if (keys[slot] == key) {
+                size--;
+                shiftKeys(slot);
+                return cast(value);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 预留容量，批量载入前调用可以避免多次扩容
+     *
+     * @param expected
+     */
+    public void ensureCapacity(int expected) {
+        int capacity = capacityFor(expected);
+        if (capacity > values.length) {
+            rehash(capacity);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        allocate(DEFAULT_CAPACITY);
+        this.size = 0;
+    }
+
+    /**
+     * 删除slot后，把探测链上后续的元素回移填补空位
+     *
+     * @param slot
+     */
+    private void shiftKeys(int slot) {
+        for (; ; ) {
+            int last = slot;
+            slot = (slot + 1) & mask;
+            for (; ; ) {
+                if (null == values[slot]) {
+                    values[last] = null;
+                    return;
+                }
+                int ideal = slot(keys[slot]);
+                //理想位置不在(last, slot]之间时可以回移到last
+                if (last <= slot ? last >= ideal || ideal > slot : last >= ideal && ideal > slot) break;
+                slot = (slot + 1) & mask;
+            }
+            keys[last] = keys[slot];
+            values[last] = values[slot];
+        }
+    }
+
+    /**
+     * values中只有put放入的V
+     *
+     * @param value
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (null == oldValues[i]) continue;
+            int slot = slot(oldKeys[i]);
+            while (null != values[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @ClassName: MemoryDBMonitor
@@ -47,6 +48,69 @@ public class MemoryDBMonitor {
     //manageTable，db不健康时被托管的内存表
     private static Map<MemoryTable, Object> managedTable = new ConcurrentHashMap<>();
 
+    //溢出时打印日志的间隔条数
+    private static final long OVERFLOW_LOG_INTERVAL = 10000;
+
+    //写入溢写日志的SQL条数
+    private static final AtomicLong spillCount = new AtomicLong();
+
+    //丢弃的SQL条数
+    private static final AtomicLong shedCount = new AtomicLong();
+
+    //业务线程等待超时的次数
+    private static final AtomicLong blockTimeoutCount = new AtomicLong();
+
+    //接收后无法生成SQL而丢失的写入次数
+    private static final AtomicLong intakeErrorCount = new AtomicLong();
+
+    /**
+     * 记录异步SQL队列满时按溢出策略处理的SQL，第一次和每OVERFLOW_LOG_INTERVAL条打印一次
+     *
+     * @param policy
+     * @param count
+     */
+    public static void recordOverflow(OverflowPolicy policy, int count) {
+        AtomicLong counter;
+        switch (policy) {
+            case SPILL:
+                counter = spillCount;
+                break;
+            case SHED:
+                counter = shedCount;
+                break;
+            default:
+                counter = blockTimeoutCount;
+                break;
+        }
+        long total = counter.addAndGet(count);
+        if (total == count || total / OVERFLOW_LOG_INTERVAL != (total - count) / OVERFLOW_LOG_INTERVAL) {
+            System.out.println("async db queue overflow,policy:" + policy + ",total:" + total);
+        }
+    }
+
+    public static long getSpillCount() {
+        return spillCount.get();
+    }
+
+    public static long getShedCount() {
+        return shedCount.get();
+    }
+
+    public static long getBlockTimeoutCount() {
+        return blockTimeoutCount.get();
+    }
+
+    /**
+     * 记录一次接收后无法生成SQL的写入
+     */
+    public static void recordIntakeError() {
+        intakeErrorCount.incrementAndGet();
+    }
+
+    public static long getIntakeErrorCount() {
+        return intakeErrorCount.get();
+    }
+
 
     public static void recordSQLQueueSize(int sqlQueueSize) {
         //1.无变化
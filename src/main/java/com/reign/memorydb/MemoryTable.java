@@ -1,6 +1,7 @@
 package com.reign.memorydb;
 
 import com.reign.common.Lang;
+import com.reign.common.concurrent.cache.StripedReadWriteLockSync;
 import com.reign.jdbc.Params;
 import com.reign.jdbc.Type;
 import com.reign.jdbc.orm.IBaseDao;
@@ -12,11 +13,15 @@ import com.reign.memorydb.annotation.AutoId;
 import com.reign.memorydb.annotation.SyncDBConfig;
 import com.reign.memorydb.index.IndexManager;
 import com.reign.memorydb.index.IndexManagerFactory;
+import com.reign.memorydb.query.Query;
+import com.reign.memorydb.query.QueryPlan;
+import com.reign.memorydb.query.QueryPlanner;
 import com.reign.memorydb.sequence.ISequenceDao;
 import com.reign.memorydb.sequence.Sequence;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -31,15 +36,37 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class MemoryTable<V extends AbstractDomain, K extends Serializable> {
 
     /**
-     * 主表
+     * 行锁分段数
      */
-    private Map<String, V> mainTable = new HashMap<>();
+    private static final int STRIPE_COUNT = 64;
+
+    /**
+     * 主表，读操作不加锁；写操作在主键对应的行锁内进行，保证与索引的修改顺序一致。
+     * 主键为int/long时使用longTable，主键值直接作为long key，不为每行和每次查找生成字符串key
+     */
+    private ConcurrentHashMap<String, V> mainTable;
+    private ConcurrentLongHashMap<V> longTable;
+
+    /**
+     * 行锁，只有写操作使用
+     */
+    private final StripedReadWriteLockSync rowLocks = new StripedReadWriteLockSync(STRIPE_COUNT);
 
 
     /**
      * 索引表
      */
     private Map<String, IndexManager<V>> indexTable = new HashMap<>();
+
+    /**
+     * 需要在索引写锁内修改的索引
+     */
+    private List<IndexManager<V>> lockedIndexes = new ArrayList<>();
+
+    /**
+     * 支持并发读写的索引，修改时不持有索引锁
+     */
+    private List<IndexManager<V>> lockFreeIndexes = new ArrayList<>();
     /**
      * 存储需要清理的key值
      */
@@ -49,8 +76,9 @@ public class MemoryTable<V extends AbstractDomain, K extends Serializable> {
     private JdbcEntity entity;
     private IBaseDao<V, K> dao;
     private ISequenceDao sequenceDao;
-    private Lock readLock;
-    private Lock writeLock;
+    //索引锁，与行锁分开，只在修改或读取索引时持有
+    private Lock indexReadLock;
+    private Lock indexWriteLock;
     private AtomicInteger id;
     private boolean autoId;
     private JdbcField idField;
@@ -69,6 +97,13 @@ public class MemoryTable<V extends AbstractDomain, K extends Serializable> {
         this.entity = entity;
         //建立索引
         IndexManagerFactory.initIndex(entity.getEntityClass(), this, entity, indexTable);
+        for (IndexManager<V> index : indexTable.values()) {
+            if (index.lockFree()) {
+                lockFreeIndexes.add(index);
+            } else {
+                lockedIndexes.add(index);
+            }
+        }
 
         //检验DB结构
         doTableValidation();
@@ -85,9 +120,9 @@ public class MemoryTable<V extends AbstractDomain, K extends Serializable> {
         }
 
         this.order = new AtomicInteger(1);
-        ReadWriteLock lock = new ReentrantReadWriteLock(false);
-        this.readLock = lock.readLock();
-        this.writeLock = lock.writeLock();
+        ReadWriteLock indexLock = new ReentrantReadWriteLock(false);
+        this.indexReadLock = indexLock.readLock();
+        this.indexWriteLock = indexLock.writeLock();
     }
 
     /**
@@ -98,6 +133,11 @@ public class MemoryTable<V extends AbstractDomain, K extends Serializable> {
             throw new RuntimeException("memory table not support complex primary key");
         }
         this.idField = entity.getIdFields()[0];
+        if (entity.getId().isPrimitiveKey()) {
+            this.longTable = new ConcurrentLongHashMap<>();
+        } else {
+            this.mainTable = new ConcurrentHashMap<>();
+        }
 
         //从db中载入最大主键
         AutoId autoId = Lang.getAnnotation(entity.getEntityClass(),AutoId.class);
@@ -180,17 +220,293 @@ public class MemoryTable<V extends AbstractDomain, K extends Serializable> {
 
     }
 
+    /**
+     * 根据主键key读取对象，不加锁
+     *
+     * @param idKey
+     * @return
+     */
     public <V extends JdbcModel> V readByIdKey(String idKey) {
         if (null==idKey) return null;
+        JdbcModel v = null != longTable ? longTable.get(Long.parseLong(idKey)) : mainTable.get(idKey);
+        if (null!=v){
+
+        }
+        return (V) v;
+    }
+
+    /**
+     * 根据int/long主键读取对象，不加锁，不生成字符串key
+     *
+     * @param id
+     * @return
+     */
+    public V readById(long id) {
+        if (null == longTable) return mainTable.get(String.valueOf(id));
+        return longTable.get(id);
+    }
+
+    /**
+     * 主键为int/long时主表以long作为key
+     *
+     * @return
+     */
+    public boolean isPrimitiveKey() {
+        return null != longTable;
+    }
+
+    /**
+     * 插入或替换对象，返回原来的对象
+     *
+     * @param value
+     * @return
+     */
+    public V insert(V value) {
+        if (null != longTable) return write(entity.getId().getLongKeyByObject(value), value);
+        return write(entity.getId().getKeyValueByObject(value), value);
+    }
+
+    /**
+     * 更新对象，value需要是新的对象而不是原对象修改后的引用，否则索引无法比较新旧索引列
+     *
+     * @param value
+     * @return 原来的对象
+     */
+    public V update(V value) {
+        if (null != longTable) return write(entity.getId().getLongKeyByObject(value), value);
+        return write(entity.getId().getKeyValueByObject(value), value);
+    }
+
+    /**
+     * 删除对象
+     *
+     * @param idKey
+     * @return 被删除的对象
+     */
+    public V delete(String idKey) {
+        if (null != longTable) return write(Long.parseLong(idKey), null);
+        return write(idKey, null);
+    }
+
+    /**
+     * 根据int/long主键删除对象
+     *
+     * @param id
+     * @return 被删除的对象
+     */
+    public V delete(long id) {
+        if (null == longTable) return write(String.valueOf(id), null);
+        return write(id, null);
+    }
+
+    /**
+     * 在主键对应的行锁内修改主表，并在索引锁内同步修改索引；
+     * 同一行的写操作串行，保证索引按主表的修改顺序更新；不同行的写操作只在修改索引时互斥
+     *
+     * @param idKey
+     * @param value null表示删除
+     * @return 原来的对象
+     */
+    private V write(String idKey, V value) {
+        Lock lock = getRowLock(idKey).writeLock();
+        try {
+            lock.lock();
+            V old = null == value ? mainTable.remove(idKey) : mainTable.put(idKey, value);
+            updateIndex(old, value);
+            return old;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * int/long主键的写操作，与write(String, V)相同，主表以long作为key
+     *
+     * @param id
+     * @param value null表示删除
+     * @return 原来的对象
+     */
+    private V write(long id, V value) {
+        Lock lock = getRowLock(id).writeLock();
+        try {
+            lock.lock();
+            V old = null == value ? longTable.remove(id) : longTable.put(id, value);
+            updateIndex(old, value);
+            return old;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 同步修改索引，调用方需要持有行写锁；支持并发读写的索引直接修改，其他索引在索引写锁内修改
+     *
+     * @param old
+     * @param value
+     */
+    private void updateIndex(V old, V value) {
+        if (indexTable.isEmpty() || (null == old && null == value)) return;
+        for (IndexManager<V> index : lockFreeIndexes) {
+            updateIndex(index, old, value);
+        }
+        if (lockedIndexes.isEmpty()) return;
         try {
-            this.readLock.lock();
-            V v  = mainTable.get(idKey);
-            if (null!=v){
+            this.indexWriteLock.lock();
+            for (IndexManager<V> index : lockedIndexes) {
+                updateIndex(index, old, value);
+            }
+        } finally {
+            this.indexWriteLock.unlock();
+        }
+    }
 
+    private static <V extends AbstractDomain> void updateIndex(IndexManager<V> index, V old, V value) {
+        if (null == value) {
+            index.remove(old);
+        } else if (null == old) {
+            index.insert(value);
+        } else {
+            index.update(old, value);
+        }
+    }
+
+    /**
+     * 获取主键所在分段的行锁，调用方可以用于对同一行的复合操作加锁
+     *
+     * @param idKey
+     * @return
+     */
+    public ReadWriteLock getRowLock(String idKey) {
+        if (null != longTable) return getRowLock(Long.parseLong(idKey));
+        return rowLocks.getLockForKey(idKey);
+    }
+
+    /**
+     * 获取int/long主键所在分段的行锁，与getRowLock(String)对同一行返回同一把锁
+     *
+     * @param id
+     * @return
+     */
+    public ReadWriteLock getRowLock(long id) {
+        if (null == longTable) return rowLocks.getLockForKey(String.valueOf(id));
+        return rowLocks.getAllSyncs().get((int) (id ^ (id >>> 32)) & (STRIPE_COUNT - 1)).getReadWriteLock();
+    }
+
+    /**
+     * 索引读锁，索引管理器读取非线程安全的索引树时持有，与索引修改互斥
+     *
+     * @return
+     */
+    public Lock getIndexReadLock() {
+        return indexReadLock;
+    }
+
+    /**
+     * 删除记录的待清理行，DB恢复健康后由MemoryDBMonitor调用
+     */
+    public void flushDeleteOp() {
+        List<String> idKeys;
+        synchronized (clearKeyTable) {
+            if (clearKeyTable.isEmpty()) return;
+            idKeys = new ArrayList<>(clearKeyTable);
+            clearKeyTable.clear();
+        }
+        for (String idKey : idKeys) {
+            delete(idKey);
+        }
+    }
+
+    /**
+     * 表中的行数，并发修改时为近似值
+     *
+     * @return
+     */
+    public int size() {
+        return null != longTable ? longTable.size() : mainTable.size();
+    }
+
+    /**
+     * 按条件查询，由QueryPlanner根据索引的统计信息选择单个索引、两个索引求交集或者全表扫描
+     *
+     * @param query
+     * @return
+     */
+    public List<V> query(Query query) {
+        QueryPlan plan;
+        List<String> idKeys = new ArrayList<>();
+        try {
+            this.indexReadLock.lock();
+            plan = explain(query);
+            if (!plan.isScan()) {
+                for (Iterator<String> it = plan.idKeys(); it.hasNext(); ) {
+                    idKeys.add(it.next());
+                }
+            }
+        } finally {
+            this.indexReadLock.unlock();
+        }
+        List<V> resultList = new ArrayList<>();
+        if (plan.isScan()) {
+            //全表扫描，ConcurrentHashMap的遍历是弱一致的，不需要加锁；longTable逐段复制快照
+            for (V v : null != longTable ? longTable.values() : mainTable.values()) {
+                if (plan.match(v)) {
+                    resultList.add(v);
+                }
+            }
+            return resultList;
+        }
+        for (V v : readByIdKeys(idKeys.iterator())) {
+            if (plan.match(v)) {
+                resultList.add(v);
+            }
+        }
+        return resultList;
+    }
+
+    /**
+     * 生成查询计划但不执行
+     *
+     * @param query
+     * @return
+     */
+    public QueryPlan explain(Query query) {
+        return QueryPlanner.plan(query, entity, indexTable.values(), size());
+    }
+
+    /**
+     * 批量读取对象，忽略已经被删除的对象。
+     * 先在索引读锁内取出全部主键key，释放后再不加锁读取主表；调用方已经持有索引读锁时重入
+     *
+     * @param idKeys 主键key，可以是索引惰性返回的迭代器；int/long主键的表也可以直接传入Long
+     * @return
+     */
+    public List<V> readByIdKeys(Iterator<?> idKeys) {
+        List<Object> keyList = new ArrayList<>();
+        try {
+            this.indexReadLock.lock();
+            while (idKeys.hasNext()) {
+                keyList.add(idKeys.next());
+            }
+        } finally {
+            this.indexReadLock.unlock();
+        }
+        return readByIds(keyList);
+    }
+
+    /**
+     * 批量读取对象，忽略已经被删除的对象，不持有索引锁
+     *
+     * @param ids 主键key，int/long主键的表也可以是Long
+     * @return
+     */
+    public List<V> readByIds(Collection<?> ids) {
+        List<V> resultList = new ArrayList<>(ids.size());
+        for (Object idKey : ids) {
+            V v = idKey instanceof Number ? readById(((Number) idKey).longValue()) : this.<V>readByIdKey((String) idKey);
+            if (null != v) {
+                resultList.add(v);
             }
-            return v;
-        }finally {
-            this.readLock.unlock();
         }
+        return resultList;
     }
 }
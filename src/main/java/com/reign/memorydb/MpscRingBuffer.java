@@ -0,0 +1,159 @@
+package com.reign.memorydb;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * @ClassName: MpscRingBuffer
+ * @Description: 多生产者单消费者的无锁环形队列，槽位在创建时全部分配并重复使用。
+ * 生产者：next(timeoutNanos)或tryNext()原子递增领取序号，向get(序号)返回的槽位写入数据后publish(序号)；
+ * 消费者：drain()按序号顺序处理已发布的槽位，处理完成后槽位才能被生产者再次领取。
+ * 每个槽位记录发布时的圈数，消费者据此判断槽位是否已发布，生产者之间不需要按顺序发布
+ * @Author: wuwx
+ * @Date: 2021-04-19 15:10
+ **/
+public final class MpscRingBuffer<E> {
+
+    //槽位
+    private final E[] slots;
+
+    //容量-1
+    private final int mask;
+
+    //序号右移位数，得到圈数
+    private final int shift;
+
+    //每个槽位已发布的圈数
+    private final AtomicIntegerArray available;
+
+    //下一个被领取的序号，生产者共享
+    private final PaddedSequence claim = new PaddedSequence(0);
+
+    //下一个被消费的序号，只有消费者写
+    private final PaddedSequence head = new PaddedSequence(0);
+
+    /**
+     * @param capacity 容量，必须是2的幂
+     * @param factory  槽位工厂
+     */
+    public MpscRingBuffer(int capacity, Supplier<E> factory) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("ring buffer capacity must be a power of two: " + capacity);
+        }
+        @SuppressWarnings("unchecked")
+        E[] slots = (E[]) new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = factory.get();
+        }
+        this.slots = slots;
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.available = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            available.set(i, -1);
+        }
+    }
+
+    /**
+     * 领取一个序号，队列满时最多等待timeoutNanos
+     *
+     * @param timeoutNanos
+     * @return 超时返回-1
+     */
+    public long next(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (int spins = 0; ; spins++) {
+            long sequence = tryNext();
+            if (sequence >= 0) return sequence;
+            if (System.nanoTime() - deadline >= 0) return -1;
+            if (spins < 100) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(1000);
+            }
+        }
+    }
+
+    /**
+     * 尝试领取一个序号，队列满时不等待
+     *
+     * @return 队列满时返回-1
+     */
+    public long tryNext() {
+        for (; ; ) {
+            long sequence = claim.get();
+            if (sequence - slots.length >= head.get()) return -1;
+            if (claim.compareAndSet(sequence, sequence + 1)) return sequence;
+        }
+    }
+
+    /**
+     * 领取序号之后获取对应的槽位
+     *
+     * @param sequence
+     * @return
+     */
+    public E get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * 发布槽位，领取的序号必须发布，否则消费者会停在该序号
+     *
+     * @param sequence
+     */
+    public void publish(long sequence) {
+        available.lazySet((int) sequence & mask, (int) (sequence >>> shift));
+    }
+
+    /**
+     * 按顺序处理所有已发布的槽位，只能由一个消费者线程调用
+     *
+     * @param handler 处理槽位，返回后槽位会被生产者重用，需要的数据要复制出去
+     * @return 处理的槽位数
+     */
+    public int drain(Consumer<E> handler) {
+        long sequence = head.get();
+        int count = 0;
+        for (; ; ) {
+            int index = (int) sequence & mask;
+            if (available.get(index) != (int) (sequence >>> shift)) break;
+            handler.accept(slots[index]);
+            sequence++;
+            count++;
+            head.lazySet(sequence);
+        }
+        return count;
+    }
+
+    /**
+     * 已领取未消费的槽位数，包括正在写入还未发布的
+     *
+     * @return
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(slots.length, claim.get() - head.get()));
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * 在值之后填充的序号，避免生产者领取序号与消费者推进序号时的伪共享
+     */
+    private static final class PaddedSequence extends AtomicLong {
+
+        private static final long serialVersionUID = 1L;
+
+        //填充
+        long p1, p2, p3, p4, p5, p6, p7;
+
+        PaddedSequence(long initialValue) {
+            super(initialValue);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.reign.memorydb;
 
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @ClassName: MultiBPlusTree
- * @Description: 非唯一索引
+ * @Description: 非唯一索引。value为int/long主键时每个key下的主键存放为PostingList，不装箱
  * @Author: wuwx
  * @Date: 2020-10-14 17:29
  **/
@@ -13,44 +15,97 @@ public class MultiBPlusTree<K extends Comparable<K>, V> {
     //默认集合大小
     private static final int DEFAUL_VALUES_PER_KEY = 3;
 
+    //value集合超过该大小时建立value->位置的哈希索引
+    private static final int HASH_THRESHOLD = 16;
+
     //真正存储数据的BPlusTree
-    private BPlusTree<K, Collection<V>> innerTree;
+    private BPlusTree<K, Postings<V>> innerTree;
+
+    //不同key的个数
+    private int keyCount;
+
+    //value的总个数
+    private int size;
+
+    //value是否为int/long主键
+    private final boolean longValues;
 
     public MultiBPlusTree() {
         innerTree = new BPlusTree<>();
+        longValues = false;
+    }
+
+    public MultiBPlusTree(int m) {
+        this(m, false);
+    }
+
+    /**
+     * @param m
+     * @param longValues 为true时value必须是int/long主键（Number），每个key下的主键存放为PostingList
+     */
+    public MultiBPlusTree(int m, boolean longValues) {
+        innerTree = new BPlusTree<>(m);
+        this.longValues = longValues;
     }
 
     /**
-     * 插入数据
+     * 插入数据，同一key下已经存在的value不重复插入
      *
      * @param key
      * @param value
      */
     public void insert(K key, V value) {
-        List<V> collection = (List<V>) innerTree.find(key);
+        Postings<V> collection = innerTree.find(key);
         if (null == collection) {
-            collection = new ArrayList<>(DEFAUL_VALUES_PER_KEY);
+            collection = newPostings();
             innerTree.insert(key, collection);
+            keyCount++;
+        }
+        if (collection.add(value)) {
+            size++;
         }
-        collection.add(value);
     }
 
 
+    @SuppressWarnings("unchecked")
+    private Postings<V> newPostings() {
+        return longValues ? (Postings<V>) new LongPostings() : new ObjectPostings<V>();
+    }
+
     public Collection<V> find(K key) {
-        return innerTree.find(key);
+        Postings<V> collection = innerTree.find(key);
+        return null == collection ? null : collection.values();
     }
 
 
     public List<V> find(K key, Comparator<K> comparator) {
-        List<Collection<V>> result = innerTree.find(key, comparator);
+        List<Postings<V>> result = innerTree.find(key, comparator);
         List<V> resultList = new ArrayList<>(result.size() * DEFAUL_VALUES_PER_KEY);
-        for (Collection<V> collection : result) {
-            resultList.addAll(collection);
+        for (Postings<V> collection : result) {
+            resultList.addAll(collection.values());
         }
         return resultList;
 
     }
 
+    /**
+     * 合并[start, end)范围内所有key的主键，start或end为null表示不限制；
+     * 只用于int/long主键，不生成中间的value列表
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    public PostingList unionRange(K start, K end) {
+        if (!longValues) throw new IllegalStateException("values are not int/long ids");
+        PostingList result = new PostingList();
+        TreeCursor<K, Postings<V>> cursor = innerTree.cursor();
+        for (boolean valid = null == start ? cursor.first() : cursor.seek(start); valid && (null == end || end.compareTo(cursor.key()) > 0); valid = cursor.next()) {
+            result.addAll(((LongPostings) cursor.value()).ids);
+        }
+        return result;
+    }
+
     /**
      * 范围查找
      *
@@ -59,17 +114,84 @@ public class MultiBPlusTree<K extends Comparable<K>, V> {
      * @return
      */
     public List<V> rangeFind(K start, K end) {
-        List<Collection<V>> result = innerTree.rangeFind(start, end);
-        List<V> resultList = new ArrayList<>(result.size() * DEFAUL_VALUES_PER_KEY);
-        for (Collection<V> collection : result) {
-            resultList.addAll(collection);
+        if (start.compareTo(end) > 0) throw new RuntimeException("starter cannot greater than end");
+        List<V> resultList = new ArrayList<>();
+        TreeCursor<K, V> cursor = cursor();
+        for (boolean valid = cursor.seek(start); valid && end.compareTo(cursor.key()) >= 0; valid = cursor.next()) {
+            resultList.add(cursor.value());
         }
         return resultList;
     }
 
+    /**
+     * 获取游标，逐个遍历每个key下的所有value
+     *
+     * @return
+     */
+    public TreeCursor<K, V> cursor() {
+        return new Cursor(innerTree.cursor());
+    }
+
+    /**
+     * 升序遍历[start, end]范围内的value，start或end为null表示不限制
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    public Stream<V> stream(K start, K end) {
+        TreeCursor<K, V> cursor = cursor();
+        if (null == start) {
+            cursor.first();
+        } else {
+            cursor.seek(start);
+        }
+        return StreamSupport.stream(new CursorSpliterator<>(cursor, end), false);
+    }
+
 
     public Collection<V> remove(K key) {
-        return innerTree.remove(key);
+        Postings<V> collection = innerTree.remove(key);
+        if (null == collection) return null;
+        keyCount--;
+        size -= collection.size();
+        return collection.values();
+    }
+
+    /**
+     * 从key对应的value集合中删除单个value，集合为空时删除key；集合较大时按哈希定位，O(1)
+     *
+     * @param key
+     * @param value
+     * @return value原来存在时返回true
+     */
+    public boolean remove(K key, V value) {
+        Postings<V> collection = innerTree.find(key);
+        if (null == collection || !collection.remove(value)) return false;
+        size--;
+        if (collection.isEmpty()) {
+            innerTree.remove(key);
+            keyCount--;
+        }
+        return true;
+    }
+
+    /**
+     * 不同key的个数
+     *
+     * @return
+     */
+    public int keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * value的总个数
+     *
+     * @return
+     */
+    public int size() {
+        return size;
     }
 
     public int getHeight() {
@@ -77,6 +199,247 @@ public class MultiBPlusTree<K extends Comparable<K>, V> {
     }
 
 
+    /**
+     * 非唯一索引游标，在内部树游标的基础上遍历每个key对应的value集合
+     */
+    private class Cursor implements TreeCursor<K, V> {
+
+        //内部树游标
+        private final TreeCursor<K, Postings<V>> inner;
+
+        //当前key对应的value集合
+        private List<V> values;
+
+        //当前value集合中的位置
+        private int index;
+
+        Cursor(TreeCursor<K, Postings<V>> inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public boolean seek(K key) {
+            inner.seek(key);
+            return toFirstValue();
+        }
+
+        @Override
+        public boolean first() {
+            inner.first();
+            return toFirstValue();
+        }
+
+        @Override
+        public boolean last() {
+            inner.last();
+            return toLastValue();
+        }
+
+        @Override
+        public boolean next() {
+            if (!valid()) return false;
+            if (++index < values.size()) return true;
+            inner.next();
+            return toFirstValue();
+        }
+
+        @Override
+        public boolean previous() {
+            if (!valid()) return false;
+            if (--index >= 0) return true;
+            inner.previous();
+            return toLastValue();
+        }
+
+        /**
+         * 从内部游标当前位置向后找到第一个非空集合，定位到集合头部
+         *
+         * @return
+         */
+        private boolean toFirstValue() {
+            for (boolean valid = inner.valid(); valid; valid = inner.next()) {
+                values = inner.value().values();
+                if (!values.isEmpty()) {
+                    index = 0;
+                    return true;
+                }
+            }
+            values = null;
+            return false;
+        }
+
+        /**
+         * 从内部游标当前位置向前找到第一个非空集合，定位到集合尾部
+         *
+         * @return
+         */
+        private boolean toLastValue() {
+            for (boolean valid = inner.valid(); valid; valid = inner.previous()) {
+                values = inner.value().values();
+                if (!values.isEmpty()) {
+                    index = values.size() - 1;
+                    return true;
+                }
+            }
+            values = null;
+            return false;
+        }
+
+        @Override
+        public boolean valid() {
+            return null != values && index >= 0 && index < values.size();
+        }
+
+        @Override
+        public K key() {
+            return inner.key();
+        }
+
+        @Override
+        public V value() {
+            return values.get(index);
+        }
+    }
+
+    /**
+     * 一个key下的value集合，value不重复
+     */
+    private abstract static class Postings<V> {
+
+        /**
+         * 添加value，已经存在时不添加
+         *
+         * @param value
+         * @return 原来不存在时返回true
+         */
+        abstract boolean add(V value);
+
+        /**
+         * 删除value
+         *
+         * @param value
+         * @return 原来存在时返回true
+         */
+        abstract boolean remove(Object value);
+
+        abstract int size();
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * 按位置随机访问的value列表，供查找结果和游标遍历使用，集合修改后不再对应
+         *
+         * @return
+         */
+        abstract List<V> values();
+    }
+
+    /**
+     * 任意类型value的集合，按位置存放。
+     * value个数超过HASH_THRESHOLD时建立value->位置的哈希索引，删除时把最后一个value移到空位，不保持插入顺序
+     */
+    private static final class ObjectPostings<V> extends Postings<V> {
+
+        //value
+        private final ArrayList<V> values = new ArrayList<>(DEFAUL_VALUES_PER_KEY);
+
+        //value->在values中的位置，个数较少时为null，顺序查找
+        private HashMap<V, Integer> positions;
+
+        @Override
+        int size() {
+            return values.size();
+        }
+
+        @Override
+        List<V> values() {
+            return Collections.unmodifiableList(values);
+        }
+
+        /**
+         * 添加value，已经存在时不添加，避免哈希索引中的位置被覆盖
+         *
+         * @param value
+         * @return 原来不存在时返回true
+         */
+        @Override
+        boolean add(V value) {
+            if (null != positions ? positions.containsKey(value) : values.contains(value)) return false;
+            values.add(value);
+            if (null != positions) {
+                positions.put(value, values.size() - 1);
+            } else if (values.size() > HASH_THRESHOLD) {
+                positions = new HashMap<>(values.size() * 2);
+                for (int i = 0; i < values.size(); i++) {
+                    positions.put(values.get(i), i);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean remove(Object value) {
+            int index;
+            if (null != positions) {
+                Integer position = positions.remove(value);
+                index = null == position ? -1 : position;
+            } else {
+                index = values.indexOf(value);
+            }
+            if (index < 0) return false;
+            V last = values.remove(values.size() - 1);
+            if (index < values.size()) {
+                values.set(index, last);
+                if (null != positions) {
+                    positions.put(last, index);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * int/long主键的集合，存放为PostingList，按位置访问时导出为有序数组
+     */
+    private static final class LongPostings extends Postings<Object> {
+
+        //主键
+        private final PostingList ids = new PostingList();
+
+        @Override
+        boolean add(Object value) {
+            return ids.add(((Number) value).longValue());
+        }
+
+        @Override
+        boolean remove(Object value) {
+            return value instanceof Number && ids.remove(((Number) value).longValue());
+        }
+
+        @Override
+        int size() {
+            return ids.size();
+        }
+
+        @Override
+        List<Object> values() {
+            final long[] array = ids.toArray();
+            return new AbstractList<Object>() {
+                @Override
+                public Object get(int index) {
+                    return array[index];
+                }
+
+                @Override
+                public int size() {
+                    return array.length;
+                }
+            };
+        }
+    }
+
     public static void main(String[] args) {
         MultiBPlusTree<Integer, String> myTree = new MultiBPlusTree<>();
         int max = 1000000;
@@ -0,0 +1,262 @@
+package com.reign.memorydb;
+
+import com.reign.jdbc.Param;
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcField;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @ClassName: MultiRowSqlBuilder
+ * @Description: 多行SQL生成器，把同一模板的多条SQL合并为一条：
+ * insert合并为INSERT ... VALUES (...),(...)；开启upsert时实体整行update合并为INSERT ... VALUES (...),(...) ON DUPLICATE KEY UPDATE，
+ * upsert的列取自update模板本身。生成器按sqlIdentify缓存，参数直接按行拼接
+ * @Author: wuwx
+ * @Date: 2021-04-19 10:30
+ **/
+final class MultiRowSqlBuilder {
+
+    //不能合并的模板
+    private static final MultiRowSqlBuilder NONE = new MultiRowSqlBuilder(null, null, null, 0);
+
+    //sqlIdentify->生成器
+    private static final Map<String, MultiRowSqlBuilder> cacheMap = new ConcurrentHashMap<>();
+
+    //整行更新模板：UPDATE table SET ... WHERE ...
+    private static final Pattern UPDATE_PATTERN = Pattern.compile("^\\s*UPDATE\\s+(\\S+)\\s+SET\\s+(.+?)\\s+WHERE\\s+(.+?)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    //单个列等于单个占位符：col = ?
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^\\s*([`\\w.]+)\\s*=\\s*\\?\\s*$");
+
+    //WHERE中的AND
+    private static final Pattern AND_PATTERN = Pattern.compile("\\s+AND\\s+", Pattern.CASE_INSENSITIVE);
+
+    //VALUES之前的部分，包含VALUES
+    private final String head;
+
+    //一行的占位符，(?,?,...)
+    private final String tuple;
+
+    //最后一行之后的部分
+    private final String tail;
+
+    //每行参数个数
+    private final int paramCount;
+
+    private MultiRowSqlBuilder(String head, String tuple, String tail, int paramCount) {
+        this.head = head;
+        this.tuple = tuple;
+        this.tail = tail;
+        this.paramCount = paramCount;
+    }
+
+    /**
+     * 获取SQL对应的多行生成器
+     *
+     * @param entry
+     * @param upsert 是否把整行update合并为upsert
+     * @return 不能合并时返回null
+     */
+    static MultiRowSqlBuilder of(SQLEntry entry, boolean upsert) {
+        if (null == entry.idKey || null == entry.params || null == entry.sqlIdentify) return null;
+        if (AsyncOp.UPDATE == entry.op && !upsert) return null;
+        MultiRowSqlBuilder builder = cacheMap.get(entry.sqlIdentify);
+        if (null == builder) {
+            builder = create(entry);
+            if (null == builder) return null;
+            cacheMap.put(entry.sqlIdentify, builder);
+        }
+        return NONE == builder ? null : builder;
+    }
+
+    private static MultiRowSqlBuilder create(SQLEntry entry) {
+        if (AsyncOp.INSERT == entry.op) {
+            return parseInsert(entry.sqlIdentify);
+        }
+        String updateSQL = entry.entity.getUpdateSQL();
+        //溢写日志读回的实体只有表名，无法判断是否为整行更新，不缓存结果
+        if (AsyncOp.UPDATE == entry.op && null == updateSQL) return null;
+        if (AsyncOp.UPDATE == entry.op && updateSQL.trim().equals(entry.sqlIdentify)) {
+            return parseUpdate(entry.sqlIdentify, entry.entity);
+        }
+        return NONE;
+    }
+
+    /**
+     * 解析insert模板，VALUES之后的第一个括号为一行
+     *
+     * @param sql
+     * @return
+     */
+    private static MultiRowSqlBuilder parseInsert(String sql) {
+        int values = lastIndexOfIgnoreCase(sql, "VALUES");
+        if (values < 0) return NONE;
+        int start = sql.indexOf('(', values);
+        if (start < 0) return NONE;
+        int depth = 0;
+        int paramCount = 0;
+        for (int i = start; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                paramCount++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                //参数只能出现在VALUES的括号内，否则每行参数个数与模板参数个数不同
+                if (sql.indexOf('?') < start || sql.indexOf('?', i) >= 0) return NONE;
+                return new MultiRowSqlBuilder(sql.substring(0, start), sql.substring(start, i + 1), sql.substring(i + 1), paramCount);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * 忽略大小写查找最后一次出现的位置，逐个位置比较，不依赖默认Locale，也不改变字符串长度
+     *
+     * @param sql
+     * @param word
+     * @return 没有时返回-1
+     */
+    private static int lastIndexOfIgnoreCase(String sql, String word) {
+        for (int i = sql.length() - word.length(); i >= 0; i--) {
+            if (sql.regionMatches(true, i, word, 0, word.length())) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 解析整行更新模板UPDATE table SET a=?,b=? WHERE id=?，生成对应的upsert。
+     * 列和参数的顺序取自模板本身：先是SET中的列，再是WHERE中的列；
+     * SET中有不是单个占位符的值，或者WHERE不是全部主键列的等值条件时不能改写
+     *
+     * @param sql
+     * @param entity
+     * @return
+     */
+    private static MultiRowSqlBuilder parseUpdate(String sql, JdbcEntity entity) {
+        Matcher matcher = UPDATE_PATTERN.matcher(sql);
+        if (!matcher.matches()) return NONE;
+        String[] sets = matcher.group(2).split(",");
+        String[] conditions = AND_PATTERN.split(matcher.group(3));
+        JdbcField[] idFields = entity.getIdFields();
+        if (null == idFields || conditions.length != idFields.length) return NONE;
+
+        StringBuilder columns = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        for (int i = 0; i < sets.length; i++) {
+            String column = columnOf(sets[i]);
+            if (null == column) return NONE;
+            if (i > 0) {
+                columns.append(',');
+                updates.append(',');
+            }
+            columns.append(column);
+            updates.append(column).append("=VALUES(").append(column).append(')');
+        }
+        for (String condition : conditions) {
+            String column = columnOf(condition);
+            if (null == column || !isIdColumn(column, idFields)) return NONE;
+            columns.append(',').append(column);
+        }
+        int paramCount = sets.length + conditions.length;
+        StringBuilder tuple = new StringBuilder(paramCount * 2 + 1).append('(');
+        for (int i = 0; i < paramCount; i++) {
+            tuple.append(i == 0 ? "?" : ",?");
+        }
+        tuple.append(')');
+        return new MultiRowSqlBuilder("INSERT INTO " + matcher.group(1) + " (" + columns + ") VALUES ",
+                tuple.toString(), " ON DUPLICATE KEY UPDATE " + updates, paramCount);
+    }
+
+    /**
+     * 解析col = ?
+     *
+     * @param assignment
+     * @return 不是单个列等于单个占位符时返回null
+     */
+    private static String columnOf(String assignment) {
+        Matcher matcher = ASSIGN_PATTERN.matcher(assignment);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 是否为主键列，忽略表名前缀、反引号和大小写
+     *
+     * @param column
+     * @param idFields
+     * @return
+     */
+    private static boolean isIdColumn(String column, JdbcField[] idFields) {
+        String name = column.substring(column.lastIndexOf('.') + 1).replace("`", "");
+        for (JdbcField field : idFields) {
+            if (name.equalsIgnoreCase(field.columnName.replace("`", ""))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 生成rows行的SQL
+     *
+     * @param rows
+     * @return
+     */
+    String sql(int rows) {
+        StringBuilder builder = new StringBuilder(length(rows));
+        builder.append(head).append(tuple);
+        for (int i = 1; i < rows; i++) {
+            builder.append(',').append(tuple);
+        }
+        return builder.append(tail).toString();
+    }
+
+    /**
+     * rows行的SQL模板长度
+     *
+     * @param rows
+     * @return
+     */
+    int length(int rows) {
+        return head.length() + tail.length() + rows * rowLength() - 1;
+    }
+
+    /**
+     * 每增加一行SQL模板增加的长度
+     *
+     * @return
+     */
+    int rowLength() {
+        return tuple.length() + 1;
+    }
+
+    int getParamCount() {
+        return paramCount;
+    }
+
+    /**
+     * 估算一行参数在SQL包中占用的字节数，字符串按utf8最坏情况计算
+     *
+     * @param params
+     * @return
+     */
+    static int estimateSize(List<Param> params) {
+        int size = 0;
+        for (Param param : params) {
+            Object value = null == param ? null : param.obj;
+            if (null == value) {
+                size += 4;
+            } else if (value instanceof CharSequence) {
+                size += ((CharSequence) value).length() * 3 + 2;
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length * 2 + 3;
+            } else {
+                size += 24;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,648 @@
+package com.reign.memorydb;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName: OffHeapBPlusTree
+ * @Description: 节点存放在堆外的唯一索引树，key和value通过定长编解码器写入堆外slab，
+ * 孩子节点以及叶子链表使用int编号寻址，索引维护过程中不产生堆上的节点对象
+ * <p>
+ * 节点布局：[isLeaf:4][size:4][next:4][previous:4][keys:M*keyWidth][values:M*valueWidth | pointers:M*4]
+ * 内部节点中keys[i]为pointers[i]子树的最小key
+ * @Author: wuwx
+ * @Date: 2021-04-09 10:30
+ **/
+public class OffHeapBPlusTree<T extends Comparable<T>, V> implements IndexTree<T, V> {
+
+    /**
+     * 默认阶数，64阶
+     **/
+    private static final int DEFAULT_M = BPlusTree.DEFAULT_M;
+
+    //节点头各字段偏移
+    private static final int OFFSET_LEAF = 0;
+    private static final int OFFSET_SIZE = 4;
+    private static final int OFFSET_NEXT = 8;
+    private static final int OFFSET_PREVIOUS = 12;
+    private static final int HEADER_SIZE = 16;
+
+    //孩子指针宽度
+    private static final int POINTER_WIDTH = 4;
+
+    //M的大小，偶数个
+    private final int M;
+
+    //key编解码器
+    private final KeyCodec<T> keyCodec;
+
+    //value编解码器
+    private final KeyCodec<V> valueCodec;
+
+    //key宽度
+    private final int keyWidth;
+
+    //value宽度
+    private final int valueWidth;
+
+    //values或者pointers区域的起始偏移
+    private final int slotOffset;
+
+    //堆外节点存储
+    private final OffHeapNodeStore store;
+
+    //叶子节点的头结点
+    private int head;
+
+    private int root;
+
+    public OffHeapBPlusTree(KeyCodec<T> keyCodec, KeyCodec<V> valueCodec) {
+        this(DEFAULT_M, keyCodec, valueCodec);
+    }
+
+    public OffHeapBPlusTree(int m, KeyCodec<T> keyCodec, KeyCodec<V> valueCodec) {
+        if (m < 4) throw new IllegalArgumentException("m must not be less than 4");
+        this.M = m % 2 == 0 ? m : m - 1;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.keyWidth = keyCodec.width();
+        this.valueWidth = valueCodec.width();
+        this.slotOffset = HEADER_SIZE + M * keyWidth;
+        this.store = new OffHeapNodeStore(slotOffset + M * Math.max(valueWidth, POINTER_WIDTH));
+        //初始时根节点是一个叶子节点
+        this.root = newNode(true);
+        this.head = this.root;
+    }
+
+    public void print() {
+        System.out.println("height" + getHeight());
+        StringBuilder sb = new StringBuilder();
+        print(this.root, sb, 1);
+        System.out.println(sb.toString());
+    }
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     */
+    @Override
+    public void insert(T key, V value) {
+        if (key == null) throw new NullPointerException("must not be null for key");
+        int right = insert(this.root, key, value);
+        if (right != OffHeapNodeStore.NIL) {
+            //根节点分裂，树长高一层
+            int newRoot = newNode(false);
+            copyKey(this.root, 0, newRoot, 0);
+            setPointer(newRoot, 0, this.root);
+            copyKey(right, 0, newRoot, 1);
+            setPointer(newRoot, 1, right);
+            setSize(newRoot, 2);
+            this.root = newRoot;
+        }
+    }
+
+    /**
+     * 依据key查找
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public V find(T key) {
+        int leaf = findLeaf(key);
+        int index = indexOf(leaf, key);
+        return index >= 0 ? readValue(leaf, index) : null;
+    }
+
+    /**
+     * 范围查找，包含start和end
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    @Override
+    public List<V> rangeFind(T start, T end) {
+        if (start.compareTo(end) > 0) throw new RuntimeException("starter cannot greater than end");
+        return rangeFind(start, true, end, true);
+    }
+
+    /**
+     * 范围查找，可指定边界是否包含，start或end为null表示不限制
+     *
+     * @param start
+     * @param startInclusive
+     * @param end
+     * @param endInclusive
+     * @return
+     */
+    @Override
+    public List<V> rangeFind(T start, boolean startInclusive, T end, boolean endInclusive) {
+        int node = null == start ? head : findLeaf(start);
+        int i = null == start ? 0 : startInclusive ? lowerBound(node, start) : upperBound(node, start);
+        List<V> resultList = new ArrayList<>();
+        while (node != OffHeapNodeStore.NIL) {
+            int size = size(node);
+            for (; i < size; i++) {
+                if (null != end && (endInclusive ? compareKey(node, i, end) > 0 : compareKey(node, i, end) >= 0)) {
+                    return resultList;
+                }
+                resultList.add(readValue(node, i));
+            }
+            node = next(node);
+            i = 0;
+        }
+        return resultList;
+    }
+
+    /**
+     * 根据自定义比较器比较，全表扫描
+     *
+     * @param matcher
+     * @return
+     */
+    @Override
+    public List<V> findAll(Matcher<V> matcher) {
+        int node = head;
+        List<V> resultList = new ArrayList<>();
+        while (node != OffHeapNodeStore.NIL) {
+            int size = size(node);
+            for (int i = 0; i < size; i++) {
+                V value = readValue(node, i);
+                if (matcher.match(value)) {
+                    resultList.add(value);
+                }
+            }
+            node = next(node);
+        }
+        return resultList;
+    }
+
+    /**
+     * 移除指定元素
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public V remove(T key) {
+        V v = remove(this.root, key);
+        //根节点只剩一个孩子，树降低一层
+        if (!isLeaf(this.root) && size(this.root) == 1) {
+            int oldRoot = this.root;
+            this.root = pointer(oldRoot, 0);
+            store.free(oldRoot);
+        }
+        return v;
+    }
+
+    /**
+     * 获取树高
+     *
+     * @return
+     */
+    @Override
+    public int getHeight() {
+        int height = 1;
+        int node = this.root;
+        while (!isLeaf(node)) {
+            height++;
+            node = pointer(node, 0);
+        }
+        return height;
+    }
+
+    /**
+     * 已分配的堆外内存大小，字节
+     *
+     * @return
+     */
+    public long getOffHeapBytes() {
+        return store.capacity();
+    }
+
+    /**
+     * 查找key所在的叶子节点
+     *
+     * @param key
+     * @return
+     */
+    private int findLeaf(T key) {
+        int node = this.root;
+        while (!isLeaf(node)) {
+            node = pointer(node, childIndex(node, key));
+        }
+        return node;
+    }
+
+    /**
+     * 插入数据
+     *
+     * @param node
+     * @param key
+     * @param value
+     * @return 发生分裂时返回分裂出的右节点，否则返回NIL
+     */
+    private int insert(int node, T key, V value) {
+        if (isLeaf(node)) {
+            return insertIntoLeaf(node, key, value);
+        }
+        int i = childIndex(node, key);
+        if (compareKey(node, 0, key) > 0) {
+            //最左侧路径上维护最小key
+            writeKey(node, 0, key);
+        }
+        int right = insert(pointer(node, i), key, value);
+        if (right == OffHeapNodeStore.NIL) return OffHeapNodeStore.NIL;
+        return insertPointer(node, i + 1, right, 0, right);
+    }
+
+    /**
+     * 叶子节点插入数据
+     *
+     * @param node
+     * @param key
+     * @param value
+     * @return 发生分裂时返回分裂出的右节点，否则返回NIL
+     */
+    private int insertIntoLeaf(int node, T key, V value) {
+        int size = size(node);
+        int i = lowerBound(node, key);
+        if (i < size && compareKey(node, i, key) == 0) {
+            //如果插入的key已经存在，则覆盖值
+            writeValue(node, i, value);
+            return OffHeapNodeStore.NIL;
+        }
+        if (size < M) {
+            insertIntoLeafAt(node, i, key, value);
+            return OffHeapNodeStore.NIL;
+        }
+
+        //已满，分裂
+        int m = size / 2;
+        int right = newNode(true);
+        moveEntries(node, m, right, 0, size - m, valueWidth);
+        setSize(right, size - m);
+        setSize(node, m);
+
+        //设置链接
+        int next = next(node);
+        setNext(right, next);
+        if (next != OffHeapNodeStore.NIL) {
+            setPrevious(next, right);
+        }
+        setPrevious(right, node);
+        setNext(node, right);
+
+        if (i > m) {
+            insertIntoLeafAt(right, i - m, key, value);
+        } else {
+            insertIntoLeafAt(node, i, key, value);
+        }
+        return right;
+    }
+
+    /**
+     * 叶子节点在指定位置插入
+     *
+     * @param node
+     * @param i
+     * @param key
+     * @param value
+     */
+    private void insertIntoLeafAt(int node, int i, T key, V value) {
+        int size = size(node);
+        moveEntries(node, i, node, i + 1, size - i, valueWidth);
+        writeKey(node, i, key);
+        writeValue(node, i, value);
+        setSize(node, size + 1);
+    }
+
+    /**
+     * 内部节点在指定位置插入指针，已满时分裂
+     *
+     * @param node
+     * @param index
+     * @param keyNode  key所在节点
+     * @param keyIndex key在keyNode中的位置
+     * @param pointer
+     * @return 发生分裂时返回分裂出的右节点，否则返回NIL
+     */
+    private int insertPointer(int node, int index, int keyNode, int keyIndex, int pointer) {
+        int size = size(node);
+        if (size < M) {
+            moveEntries(node, index, node, index + 1, size - index, POINTER_WIDTH);
+            copyKey(keyNode, keyIndex, node, index);
+            setPointer(node, index, pointer);
+            setSize(node, size + 1);
+            return OffHeapNodeStore.NIL;
+        }
+
+        //已满，需要分裂
+        int m = size / 2;
+        int right = newNode(false);
+        moveEntries(node, m, right, 0, size - m, POINTER_WIDTH);
+        setSize(right, size - m);
+        setSize(node, m);
+
+        if (index > m) {
+            insertPointer(right, index - m, keyNode, keyIndex, pointer);
+        } else {
+            insertPointer(node, index, keyNode, keyIndex, pointer);
+        }
+        return right;
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param node
+     * @param key
+     * @return
+     */
+    private V remove(int node, T key) {
+        if (isLeaf(node)) {
+            int index = indexOf(node, key);
+            if (index == -1) return null;
+            V value = readValue(node, index);
+            removeEntry(node, index, valueWidth);
+            return value;
+        }
+        int i = childIndex(node, key);
+        int child = pointer(node, i);
+        V value = remove(child, key);
+        if (value != null && size(child) < M / 2) {
+            rebalance(node, i);
+        }
+        return value;
+    }
+
+    /**
+     * 孩子节点少于m/2个元素，向兄弟节点借或者与兄弟节点合并
+     *
+     * @param node
+     * @param index
+     */
+    private void rebalance(int node, int index) {
+        int m = M / 2;
+        int size = size(node);
+        int child = pointer(node, index);
+        int previous = index > 0 ? pointer(node, index - 1) : OffHeapNodeStore.NIL;
+        int next = index + 1 < size ? pointer(node, index + 1) : OffHeapNodeStore.NIL;
+        boolean leaf = isLeaf(child);
+        int slotWidth = leaf ? valueWidth : POINTER_WIDTH;
+
+        if (previous != OffHeapNodeStore.NIL && size(previous) > m) {
+            //从前节点尾部借
+            int last = size(previous) - 1;
+            moveEntries(child, 0, child, 1, size(child), slotWidth);
+            moveEntries(previous, last, child, 0, 1, slotWidth);
+            setSize(child, size(child) + 1);
+            setSize(previous, last);
+            copyKey(child, 0, node, index);
+        } else if (next != OffHeapNodeStore.NIL && size(next) > m) {
+            //从后节点头部借
+            moveEntries(next, 0, child, size(child), 1, slotWidth);
+            setSize(child, size(child) + 1);
+            removeEntry(next, 0, slotWidth);
+            copyKey(next, 0, node, index + 1);
+        } else if (previous != OffHeapNodeStore.NIL) {
+            //同前面节点合并
+            merge(previous, child, slotWidth);
+            removeEntry(node, index, POINTER_WIDTH);
+        } else if (next != OffHeapNodeStore.NIL) {
+            //同后面节点合并
+            merge(child, next, slotWidth);
+            removeEntry(node, index + 1, POINTER_WIDTH);
+        }
+    }
+
+    /**
+     * 合并右侧节点并释放右侧节点，叶子节点同时修正链接
+     *
+     * @param left
+     * @param right
+     * @param slotWidth
+     */
+    private void merge(int left, int right, int slotWidth) {
+        int leftSize = size(left);
+        int rightSize = size(right);
+        moveEntries(right, 0, left, leftSize, rightSize, slotWidth);
+        setSize(left, leftSize + rightSize);
+        if (isLeaf(left)) {
+            int next = next(right);
+            setNext(left, next);
+            if (next != OffHeapNodeStore.NIL) {
+                setPrevious(next, left);
+            }
+        }
+        store.free(right);
+    }
+
+    /**
+     * 删除指定位置的key以及value或指针
+     *
+     * @param node
+     * @param index
+     * @param slotWidth
+     */
+    private void removeEntry(int node, int index, int slotWidth) {
+        int size = size(node);
+        moveEntries(node, index + 1, node, index, size - index - 1, slotWidth);
+        setSize(node, size - 1);
+    }
+
+    /**
+     * 批量移动key以及对应的value或指针
+     *
+     * @param src
+     * @param srcIndex
+     * @param dst
+     * @param dstIndex
+     * @param count
+     * @param slotWidth
+     */
+    private void moveEntries(int src, int srcIndex, int dst, int dstIndex, int count, int slotWidth) {
+        store.copy(src, keyPosition(srcIndex), dst, keyPosition(dstIndex), count * keyWidth);
+        store.copy(src, slotOffset + srcIndex * slotWidth, dst, slotOffset + dstIndex * slotWidth, count * slotWidth);
+    }
+
+    /**
+     * 获取key所在的孩子位置
+     *
+     * @param node
+     * @param key
+     * @return
+     */
+    private int childIndex(int node, T key) {
+        int i = upperBound(node, key) - 1;
+        return i < 0 ? 0 : i;
+    }
+
+    /**
+     * 精确查找key的位置
+     *
+     * @param node
+     * @param key
+     * @return 未找到返回-1
+     */
+    private int indexOf(int node, T key) {
+        int i = lowerBound(node, key);
+        return i < size(node) && compareKey(node, i, key) == 0 ? i : -1;
+    }
+
+    /**
+     * 二分查找第一个大于等于key的位置
+     *
+     * @param node
+     * @param key
+     * @return
+     */
+    private int lowerBound(int node, T key) {
+        int low = 0;
+        int high = size(node);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(node, middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 二分查找第一个大于key的位置
+     *
+     * @param node
+     * @param key
+     * @return
+     */
+    private int upperBound(int node, T key) {
+        int low = 0;
+        int high = size(node);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(node, middle, key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 分配新节点
+     *
+     * @param leaf
+     * @return
+     */
+    private int newNode(boolean leaf) {
+        int node = store.allocate();
+        ByteBuffer buffer = store.buffer(node);
+        int offset = store.offset(node);
+        buffer.putInt(offset + OFFSET_LEAF, leaf ? 1 : 0);
+        buffer.putInt(offset + OFFSET_NEXT, OffHeapNodeStore.NIL);
+        buffer.putInt(offset + OFFSET_PREVIOUS, OffHeapNodeStore.NIL);
+        return node;
+    }
+
+    private boolean isLeaf(int node) {
+        return store.buffer(node).getInt(store.offset(node) + OFFSET_LEAF) == 1;
+    }
+
+    private int size(int node) {
+        return store.buffer(node).getInt(store.offset(node) + OFFSET_SIZE);
+    }
+
+    private void setSize(int node, int size) {
+        store.buffer(node).putInt(store.offset(node) + OFFSET_SIZE, size);
+    }
+
+    private int next(int node) {
+        return store.buffer(node).getInt(store.offset(node) + OFFSET_NEXT);
+    }
+
+    private void setNext(int node, int next) {
+        store.buffer(node).putInt(store.offset(node) + OFFSET_NEXT, next);
+    }
+
+    private void setPrevious(int node, int previous) {
+        store.buffer(node).putInt(store.offset(node) + OFFSET_PREVIOUS, previous);
+    }
+
+    private int keyPosition(int i) {
+        return HEADER_SIZE + i * keyWidth;
+    }
+
+    private int compareKey(int node, int i, T key) {
+        return keyCodec.compare(store.buffer(node), store.offset(node) + keyPosition(i), key);
+    }
+
+    private T readKey(int node, int i) {
+        return keyCodec.read(store.buffer(node), store.offset(node) + keyPosition(i));
+    }
+
+    private void writeKey(int node, int i, T key) {
+        keyCodec.write(store.buffer(node), store.offset(node) + keyPosition(i), key);
+    }
+
+    private void copyKey(int src, int srcIndex, int dst, int dstIndex) {
+        store.copy(src, keyPosition(srcIndex), dst, keyPosition(dstIndex), keyWidth);
+    }
+
+    private V readValue(int node, int i) {
+        return valueCodec.read(store.buffer(node), store.offset(node) + slotOffset + i * valueWidth);
+    }
+
+    private void writeValue(int node, int i, V value) {
+        valueCodec.write(store.buffer(node), store.offset(node) + slotOffset + i * valueWidth, value);
+    }
+
+    private int pointer(int node, int i) {
+        return store.buffer(node).getInt(store.offset(node) + slotOffset + i * POINTER_WIDTH);
+    }
+
+    private void setPointer(int node, int i, int pointer) {
+        store.buffer(node).putInt(store.offset(node) + slotOffset + i * POINTER_WIDTH, pointer);
+    }
+
+    /**
+     * 打印节点
+     *
+     * @param node
+     * @param sb
+     * @param height
+     */
+    private void print(int node, StringBuilder sb, int height) {
+        int size = size(node);
+        if (isLeaf(node)) {
+            sb.append("L").append(height).append("(");
+            for (int i = 0; i < size; i++) {
+                sb.append(readKey(node, i)).append(",").append(readValue(node, i)).append("_");
+            }
+            if (size > 0) {
+                sb.deleteCharAt(sb.length() - 1);
+            }
+            sb.append(") ");
+            return;
+        }
+        sb.append("T").append(height).append("(");
+        for (int i = 0; i < size; i++) {
+            sb.append(readKey(node, i)).append(" ");
+        }
+        sb.append(") ");
+        StringBuilder innerBuilder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            print(pointer(node, i), innerBuilder, height + 1);
+        }
+        innerBuilder.append("\n");
+        sb.append("\n").append(innerBuilder.toString());
+    }
+}
@@ -0,0 +1,146 @@
+package com.reign.memorydb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName: OffHeapNodeStore
+ * @Description: 堆外节点存储，按固定大小的节点切分堆外slab，节点使用int编号寻址，释放的节点放入空闲列表复用
+ * @Author: wuwx
+ * @Date: 2021-04-09 10:05
+ **/
+class OffHeapNodeStore {
+
+    /**
+     * 单个slab的默认大小，1M
+     **/
+    static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    //空节点编号
+    static final int NIL = -1;
+
+    //节点大小，字节
+    private final int nodeSize;
+
+    //每个slab容纳的节点数
+    private final int nodesPerSlab;
+
+    //堆外slab
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    //下一个未使用过的节点编号
+    private int nextNode;
+
+    //空闲节点栈
+    private int[] freeNodes = new int[16];
+
+    //空闲节点数量
+    private int freeSize;
+
+    //节点间拷贝使用的临时数组
+    private final byte[] scratch;
+
+    OffHeapNodeStore(int nodeSize) {
+        this(nodeSize, DEFAULT_SLAB_SIZE);
+    }
+
+    OffHeapNodeStore(int nodeSize, int slabSize) {
+        this.nodeSize = nodeSize;
+        this.nodesPerSlab = Math.max(1, slabSize / nodeSize);
+        this.scratch = new byte[nodeSize];
+    }
+
+    /**
+     * 分配一个节点，内容清零
+     *
+     * @return 节点编号
+     */
+    int allocate() {
+        int node;
+        if (freeSize > 0) {
+            node = freeNodes[--freeSize];
+        } else {
+            node = nextNode++;
+            if (node / nodesPerSlab >= slabs.size()) {
+                slabs.add(ByteBuffer.allocateDirect(nodesPerSlab * nodeSize));
+            }
+        }
+        ByteBuffer buffer = buffer(node);
+        int offset = offset(node);
+        Arrays.fill(scratch, (byte) 0);
+        buffer.position(offset);
+        buffer.put(scratch, 0, nodeSize);
+        return node;
+    }
+
+    /**
+     * 释放节点
+     *
+     * @param node
+     */
+    void free(int node) {
+        if (freeSize == freeNodes.length) {
+            freeNodes = Arrays.copyOf(freeNodes, freeSize << 1);
+        }
+        freeNodes[freeSize++] = node;
+    }
+
+    /**
+     * 节点所在的slab
+     *
+     * @param node
+     * @return
+     */
+    ByteBuffer buffer(int node) {
+        return slabs.get(node / nodesPerSlab);
+    }
+
+    /**
+     * 节点在slab中的起始位置
+     *
+     * @param node
+     * @return
+     */
+    int offset(int node) {
+        return (node % nodesPerSlab) * nodeSize;
+    }
+
+    /**
+     * 节点之间拷贝数据，源与目标区域可以重叠
+     *
+     * @param srcNode
+     * @param srcPos  相对源节点起始位置的偏移
+     * @param dstNode
+     * @param dstPos  相对目标节点起始位置的偏移
+     * @param length
+     */
+    void copy(int srcNode, int srcPos, int dstNode, int dstPos, int length) {
+        if (length <= 0) return;
+        ByteBuffer src = buffer(srcNode);
+        src.position(offset(srcNode) + srcPos);
+        src.get(scratch, 0, length);
+        ByteBuffer dst = buffer(dstNode);
+        dst.position(offset(dstNode) + dstPos);
+        dst.put(scratch, 0, length);
+    }
+
+    /**
+     * 已分配的堆外内存大小
+     *
+     * @return
+     */
+    long capacity() {
+        return (long) slabs.size() * nodesPerSlab * nodeSize;
+    }
+
+    /**
+     * 释放所有slab，由GC回收堆外内存
+     */
+    void clear() {
+        slabs.clear();
+        nextNode = 0;
+        freeSize = 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.reign.memorydb;
+
+/**
+ * @ClassName: OverflowPolicy
+ * @Description: 异步SQL队列满时的处理策略
+ * @Author: wuwx
+ * @Date: 2021-04-20 10:15
+ **/
+public enum OverflowPolicy {
+
+    //阻塞：执行队列满时停止接收新的SQL，接收队列满后业务线程最多等待blockTimeout，超时抛出异常
+    BLOCK,
+
+    //溢写：执行队列满时按顺序写入本地溢写日志，执行队列有空闲时再按顺序读回执行
+    SPILL,
+
+    //丢弃：执行队列满时丢弃@SyncDBConfig(lowPriority = true)的表的SQL，其他表按BLOCK处理
+    SHED
+
+}
@@ -0,0 +1,781 @@
+package com.reign.memorydb;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * @ClassName: PostingList
+ * @Description: 非唯一索引的倒排列表，存放有序且不重复的int/long主键，int主键扩展为long存放。
+ * <p>
+ * 元素较少时使用有序long数组；超过ARRAY_THRESHOLD后转换为roaring风格的压缩位图：
+ * 按低16位以外的高位分桶，每个桶内元素不超过4096个时使用有序char数组，否则使用65536位的位图。
+ * 提供并集、交集运算，组合多个索引条件时不需要生成中间的对象列表。非线程安全
+ * @Author: wuwx
+ * @Date: 2021-04-10 14:10
+ **/
+public final class PostingList implements Iterable<Long> {
+
+    /**
+     * 数组形式最多容纳的元素数量，超过后转换为压缩位图
+     **/
+    public static final int ARRAY_THRESHOLD = 1024;
+
+    //桶内使用数组存储的最大元素数量
+    private static final int CONTAINER_ARRAY_MAX = 4096;
+
+    //数组形式的有序元素，为null表示使用位图形式
+    private long[] ids;
+
+    //元素数量
+    private int size;
+
+    //位图形式下各个桶的高位，有序
+    private long[] highs;
+
+    //位图形式下各个桶
+    private Container[] containers;
+
+    //桶的数量
+    private int containerCount;
+
+    public PostingList() {
+        this.ids = new long[4];
+    }
+
+    /**
+     * 由一组id创建
+     *
+     * @param values
+     * @return
+     */
+    public static PostingList of(long... values) {
+        PostingList list = new PostingList();
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * 添加id
+     *
+     * @param id
+     * @return 原来不存在时返回true
+     */
+    public boolean add(long id) {
+        if (null != ids) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) return false;
+            if (size < ARRAY_THRESHOLD) {
+                i = -i - 1;
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.min(ARRAY_THRESHOLD, size << 1));
+                }
+                System.arraycopy(ids, i, ids, i + 1, size - i);
+                ids[i] = id;
+                size++;
+                return true;
+            }
+            //超过阈值，转换为位图
+            toBitmap();
+        }
+        long high = high(id);
+        int i = containerIndex(high);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, high, new ArrayContainer());
+        }
+        Container container = containers[i];
+        int cardinality = container.cardinality;
+        containers[i] = container.add((char) id);
+        if (containers[i].cardinality == cardinality) return false;
+        size++;
+        return true;
+    }
+
+    /**
+     * 删除id
+     *
+     * @param id
+     * @return 原来存在时返回true
+     */
+    public boolean remove(long id) {
+        if (null != ids) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0) return false;
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            size--;
+            return true;
+        }
+        int i = containerIndex(high(id));
+        if (i < 0) return false;
+        Container container = containers[i];
+        int cardinality = container.cardinality;
+        container = container.remove((char) id);
+        if (container.cardinality == cardinality) return false;
+        size--;
+        if (container.cardinality == 0) {
+            System.arraycopy(highs, i + 1, highs, i, containerCount - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, containerCount - i - 1);
+            containers[--containerCount] = null;
+        } else {
+            containers[i] = container;
+        }
+        if (size <= ARRAY_THRESHOLD / 2) {
+            //元素减少到阈值的一半，转换回数组，避免在阈值附近反复转换
+            this.ids = toArray();
+            this.highs = null;
+            this.containers = null;
+            this.containerCount = 0;
+        }
+        return true;
+    }
+
+    /**
+     * 是否包含id
+     *
+     * @param id
+     * @return
+     */
+    public boolean contains(long id) {
+        if (null != ids) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+        int i = containerIndex(high(id));
+        return i >= 0 && containers[i].contains((char) id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 是否已转换为压缩位图
+     *
+     * @return
+     */
+    public boolean isCompressed() {
+        return null == ids;
+    }
+
+    /**
+     * 按升序导出所有id
+     *
+     * @return
+     */
+    public long[] toArray() {
+        if (null != ids) {
+            return Arrays.copyOf(ids, size);
+        }
+        long[] result = new long[size];
+        int pos = 0;
+        for (PrimitiveIterator.OfLong it = iterator(); it.hasNext(); ) {
+            result[pos++] = it.nextLong();
+        }
+        return result;
+    }
+
+    /**
+     * 按升序遍历id，遍历期间不能修改
+     *
+     * @return
+     */
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        if (null != ids) {
+            return new PrimitiveIterator.OfLong() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < size;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (index >= size) throw new NoSuchElementException();
+                    return ids[index++];
+                }
+            };
+        }
+        return new PrimitiveIterator.OfLong() {
+            private int index;
+            private PrimitiveIterator.OfInt current = containerCount > 0 ? containers[0].iterator() : null;
+
+            @Override
+            public boolean hasNext() {
+                while (null != current) {
+                    if (current.hasNext()) return true;
+                    current = ++index < containerCount ? containers[index].iterator() : null;
+                }
+                return false;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return highs[index] << 16 | current.nextInt();
+            }
+        };
+    }
+
+    /**
+     * 将other中的元素合并到当前列表
+     *
+     * @param other
+     */
+    public void addAll(PostingList other) {
+        if (null == other || other.isEmpty()) return;
+        if (null == this.ids && null == other.ids) {
+            PostingList union = union(this, other);
+            this.highs = union.highs;
+            this.containers = union.containers;
+            this.containerCount = union.containerCount;
+            this.size = union.size;
+            return;
+        }
+        for (PrimitiveIterator.OfLong it = other.iterator(); it.hasNext(); ) {
+            add(it.nextLong());
+        }
+    }
+
+    /**
+     * 并集，结果为新的列表
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public static PostingList union(PostingList a, PostingList b) {
+        if (null != a.ids && null != b.ids) {
+            //两个有序数组归并
+            long[] merged = new long[a.size + b.size];
+            int i = 0, j = 0, n = 0;
+            while (i < a.size && j < b.size) {
+                long x = a.ids[i], y = b.ids[j];
+                if (x < y) {
+                    merged[n++] = x;
+                    i++;
+                } else if (x > y) {
+                    merged[n++] = y;
+                    j++;
+                } else {
+                    merged[n++] = x;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < a.size) merged[n++] = a.ids[i++];
+            while (j < b.size) merged[n++] = b.ids[j++];
+            return fromSorted(merged, n);
+        }
+        if (null != a.ids || null != b.ids) {
+            //数组与位图，复制位图后逐个添加
+            PostingList bitmap = null == a.ids ? a : b;
+            PostingList array = null == a.ids ? b : a;
+            PostingList result = bitmap.copy();
+            for (int k = 0; k < array.size; k++) {
+                result.add(array.ids[k]);
+            }
+            return result;
+        }
+        //两个位图按桶合并
+        PostingList result = newBitmap(a.containerCount + b.containerCount);
+        int i = 0, j = 0;
+        while (i < a.containerCount && j < b.containerCount) {
+            if (a.highs[i] < b.highs[j]) {
+                result.appendContainer(a.highs[i], a.containers[i++].copy());
+            } else if (a.highs[i] > b.highs[j]) {
+                result.appendContainer(b.highs[j], b.containers[j++].copy());
+            } else {
+                result.appendContainer(a.highs[i], a.containers[i++].or(b.containers[j++]));
+            }
+        }
+        while (i < a.containerCount) result.appendContainer(a.highs[i], a.containers[i++].copy());
+        while (j < b.containerCount) result.appendContainer(b.highs[j], b.containers[j++].copy());
+        return result;
+    }
+
+    /**
+     * 交集，结果为新的列表
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public static PostingList intersection(PostingList a, PostingList b) {
+        if (null != a.ids || null != b.ids) {
+            //至少一个是数组，遍历较小的数组在另一个中查找
+            PostingList small = null != a.ids && (null == b.ids || a.size <= b.size) ? a : b;
+            PostingList other = small == a ? b : a;
+            long[] matched = new long[small.size];
+            int n = 0;
+            for (int k = 0; k < small.size; k++) {
+                if (other.contains(small.ids[k])) {
+                    matched[n++] = small.ids[k];
+                }
+            }
+            return fromSorted(matched, n);
+        }
+        //两个位图按桶求交
+        PostingList result = newBitmap(Math.min(a.containerCount, b.containerCount));
+        int i = 0, j = 0;
+        while (i < a.containerCount && j < b.containerCount) {
+            if (a.highs[i] < b.highs[j]) {
+                i++;
+            } else if (a.highs[i] > b.highs[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality > 0) {
+                    result.appendContainer(a.highs[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        if (result.size <= ARRAY_THRESHOLD) {
+            result.ids = result.toArray();
+            result.highs = null;
+            result.containers = null;
+            result.containerCount = 0;
+        }
+        return result;
+    }
+
+    /**
+     * 多个列表求交集，从最小的列表开始
+     *
+     * @param lists
+     * @return
+     */
+    public static PostingList intersection(List<PostingList> lists) {
+        if (lists.isEmpty()) return new PostingList();
+        PostingList[] sorted = lists.toArray(new PostingList[0]);
+        Arrays.sort(sorted, (x, y) -> Integer.compare(x.size, y.size));
+        PostingList result = sorted[0].copy();
+        for (int i = 1; i < sorted.length && !result.isEmpty(); i++) {
+            result = intersection(result, sorted[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 深拷贝
+     *
+     * @return
+     */
+    public PostingList copy() {
+        PostingList list = new PostingList();
+        list.size = this.size;
+        if (null != this.ids) {
+            list.ids = Arrays.copyOf(this.ids, Math.max(4, this.size));
+            return list;
+        }
+        list.ids = null;
+        list.highs = Arrays.copyOf(this.highs, this.highs.length);
+        list.containers = new Container[this.containers.length];
+        list.containerCount = this.containerCount;
+        for (int i = 0; i < containerCount; i++) {
+            list.containers[i] = this.containers[i].copy();
+        }
+        return list;
+    }
+
+    /**
+     * 由有序数组创建，元素过多时转换为位图
+     *
+     * @param sorted
+     * @param n
+     * @return
+     */
+    private static PostingList fromSorted(long[] sorted, int n) {
+        PostingList list = new PostingList();
+        if (n <= ARRAY_THRESHOLD) {
+            list.ids = n == 0 ? list.ids : Arrays.copyOf(sorted, n);
+            list.size = n;
+            return list;
+        }
+        for (int i = 0; i < n; i++) {
+            list.add(sorted[i]);
+        }
+        return list;
+    }
+
+    /**
+     * 创建空的位图形式列表
+     *
+     * @param capacity
+     * @return
+     */
+    private static PostingList newBitmap(int capacity) {
+        PostingList list = new PostingList();
+        list.ids = null;
+        list.highs = new long[Math.max(1, capacity)];
+        list.containers = new Container[Math.max(1, capacity)];
+        return list;
+    }
+
+    /**
+     * 由数组形式转换为位图形式
+     */
+    private void toBitmap() {
+        long[] values = this.ids;
+        int n = this.size;
+        this.ids = null;
+        this.highs = new long[4];
+        this.containers = new Container[4];
+        this.containerCount = 0;
+        this.size = 0;
+        for (int i = 0; i < n; i++) {
+            add(values[i]);
+        }
+    }
+
+    /**
+     * 低16位以外的高位作为桶的key，算术右移保持与id相同的有符号顺序
+     *
+     * @param id
+     * @return
+     */
+    private static long high(long id) {
+        return id >> 16;
+    }
+
+    /**
+     * 二分查找桶的位置
+     *
+     * @param high
+     * @return 未找到时返回-(插入位置)-1
+     */
+    private int containerIndex(long high) {
+        return Arrays.binarySearch(highs, 0, containerCount, high);
+    }
+
+    private void insertContainer(int i, long high, Container container) {
+        if (containerCount == highs.length) {
+            highs = Arrays.copyOf(highs, containerCount << 1);
+            containers = Arrays.copyOf(containers, containerCount << 1);
+        }
+        System.arraycopy(highs, i, highs, i + 1, containerCount - i);
+        System.arraycopy(containers, i, containers, i + 1, containerCount - i);
+        highs[i] = high;
+        containers[i] = container;
+        containerCount++;
+    }
+
+    private void appendContainer(long high, Container container) {
+        insertContainer(containerCount, high, container);
+        size += container.cardinality;
+    }
+
+    /**
+     * 桶，存放同一高16位下的低16位
+     */
+    private abstract static class Container {
+
+        //元素数量
+        int cardinality;
+
+        /**
+         * 添加元素
+         *
+         * @param low
+         * @return 添加后的桶，可能转换为另一种形式
+         */
+        abstract Container add(char low);
+
+        /**
+         * 删除元素
+         *
+         * @param low
+         * @return 删除后的桶，可能转换为另一种形式
+         */
+        abstract Container remove(char low);
+
+        abstract boolean contains(char low);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        abstract PrimitiveIterator.OfInt iterator();
+    }
+
+    /**
+     * 有序数组桶
+     */
+    private static final class ArrayContainer extends Container {
+
+        //有序的低16位
+        char[] content;
+
+        ArrayContainer() {
+            this.content = new char[4];
+        }
+
+        ArrayContainer(char[] content, int cardinality) {
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            int i = Arrays.binarySearch(content, 0, cardinality, low);
+            if (i >= 0) return this;
+            if (cardinality >= CONTAINER_ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            i = -i - 1;
+            if (cardinality == content.length) {
+                content = Arrays.copyOf(content, Math.min(CONTAINER_ARRAY_MAX, cardinality << 1));
+            }
+            System.arraycopy(content, i, content, i + 1, cardinality - i);
+            content[i] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int i = Arrays.binarySearch(content, 0, cardinality, low);
+            if (i < 0) return this;
+            System.arraycopy(content, i + 1, content, i, cardinality - i - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(content, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    char x = content[i], y = array.content[j];
+                    if (x < y) {
+                        i++;
+                    } else if (x > y) {
+                        j++;
+                    } else {
+                        result[n++] = x;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(content[i])) {
+                        result[n++] = content[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality && j < array.cardinality) {
+                char x = content[i], y = array.content[j];
+                if (x < y) {
+                    result[n++] = x;
+                    i++;
+                } else if (x > y) {
+                    result[n++] = y;
+                    j++;
+                } else {
+                    result[n++] = x;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < cardinality) result[n++] = content[i++];
+            while (j < array.cardinality) result[n++] = array.content[j++];
+            ArrayContainer union = new ArrayContainer(result, n);
+            return n > CONTAINER_ARRAY_MAX ? union.toBitmap() : union;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < cardinality;
+                }
+
+                @Override
+                public int nextInt() {
+                    return content[index++];
+                }
+            };
+        }
+
+        /**
+         * 转换为位图桶
+         *
+         * @return
+         */
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(content[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * 位图桶，1024个long共65536位
+     */
+    private static final class BitmapContainer extends Container {
+
+        //位图
+        final long[] words;
+
+        BitmapContainer() {
+            this.words = new long[1024];
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            long word = words[low >>> 6];
+            long bit = 1L << low;
+            if ((word & bit) == 0) {
+                words[low >>> 6] = word | bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long word = words[low >>> 6];
+            long bit = 1L << low;
+            if ((word & bit) == 0) return this;
+            words[low >>> 6] = word & ~bit;
+            cardinality--;
+            return cardinality <= CONTAINER_ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                result[i] = words[i] & otherWords[i];
+                n += Long.bitCount(result[i]);
+            }
+            BitmapContainer bitmap = new BitmapContainer(result, n);
+            return n <= CONTAINER_ARRAY_MAX ? bitmap.toArray() : bitmap;
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = Arrays.copyOf(words, 1024);
+            if (other instanceof ArrayContainer) {
+                BitmapContainer bitmap = new BitmapContainer(result, cardinality);
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    bitmap.add(array.content[i]);
+                }
+                return bitmap;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                result[i] |= otherWords[i];
+                n += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, n);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(Arrays.copyOf(words, 1024), cardinality);
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+                private int index;
+                private long word = words[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (word == 0) {
+                        if (++index >= 1024) return false;
+                        word = words[index];
+                    }
+                    return true;
+                }
+
+                @Override
+                public int nextInt() {
+                    hasNext();
+                    int low = index << 6 | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    return low;
+                }
+            };
+        }
+
+        /**
+         * 转换为数组桶
+         *
+         * @return
+         */
+        ArrayContainer toArray() {
+            char[] content = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    content[n++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(content, n);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.reign.memorydb;
 
+import com.reign.jdbc.Param;
 import com.reign.jdbc.orm.JdbcEntity;
 
+import java.util.List;
+
 /**
  * @ClassName: SQLEntry
  * @Description: sql实体
@@ -19,10 +22,13 @@ public class SQLEntry {
     //主键
     public String idKey;
 
-    //sql识别
+    //sql识别，带?占位符的SQL模板，执行时相同模板的SQL使用同一个PreparedStatement批量执行
     public String sqlIdentify;
 
-    //SQL语句
+    //SQL参数，与sqlIdentify中的占位符一一对应
+    public List<Param> params;
+
+    //SQL语句，填充参数后的SQL，只在打印日志时生成
     public String sql;
 
     //存活时间
@@ -33,4 +39,13 @@ public class SQLEntry {
     //父亲节点，必须要执行的，目前就是insert语句
     public SQLEntry parent;
 
+    //已被合并取消，不再执行，目前就是insert之后又delete
+    public boolean cancelled;
+
+    //待生成SQL的对象，只在接收队列的槽位中使用，由消费线程生成SQL
+    public Object value;
+
+    //更新前的对象，只在接收队列的槽位中使用
+    public Object oldValue;
+
 }
@@ -1,13 +1,21 @@
 package com.reign.memorydb;
 
+import com.reign.jdbc.Param;
+import com.reign.jdbc.SqlBuilder;
+import com.reign.jdbc.async.SqlFormatter;
 import com.reign.log.Logger;
 
-import javax.naming.CommunicationException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -25,20 +33,38 @@ public class SqlExecutor {
     //测试SQL
     private static final String TEST_SQL = "select 1";
 
+    //每个连接缓存的PreparedStatement数量上限
+    private static final int STMT_CACHE_SIZE = 64;
+
+    //一条PreparedStatement的参数个数上限
+    private static final int MAX_PARAM_COUNT = 65535;
+
     //batchSize
     private final int batchSize;
 
+    //是否把同一模板的insert合并为多行SQL
+    private final boolean multiRow;
+
+    //多行模式下是否把整行update合并为upsert
+    private final boolean multiRowUpsert;
+
+    //多行SQL的大小上限，字节
+    private final int maxPacketSize;
+
     private final AsyncDBExecutor executor;
 
-    //SQL队列
+    //SQL队列，有界，满时由AsyncDBExecutor按溢出策略处理
     private final BlockingQueue<SQLEntry> sqlQueue;
 
-    //重试列表
+    //重试列表，只保存一次flush取出的SQL，不会超过队列容量
     private final List<SQLEntry> retryList;
 
     //连接器
     private Connection conn;
 
+    //当前连接的PreparedStatement缓存，sqlIdentify->statement，超过上限时关闭最久未使用的
+    private final Map<String, PreparedStatement> stmtCache;
+
     //连接创建时间
     private long createTime;
 
@@ -55,23 +81,39 @@ public class SqlExecutor {
 
 
     public SqlExecutor(AsyncDBExecutor executor, int batchSize, long connCheckInterval) {
+        this(executor, batchSize, connCheckInterval, false, false, 0, Integer.MAX_VALUE);
+    }
+
+    public SqlExecutor(AsyncDBExecutor executor, int batchSize, long connCheckInterval, boolean multiRow, boolean multiRowUpsert, int maxPacketSize, int maxQueueSize) {
         super();
         this.connCheckInterval = connCheckInterval;
         this.batchSize = batchSize;
+        this.multiRow = multiRow;
+        this.multiRowUpsert = multiRowUpsert;
+        this.maxPacketSize = maxPacketSize;
         this.executor = executor;
-        this.sqlQueue = new LinkedBlockingQueue<>();
+        this.sqlQueue = new LinkedBlockingQueue<>(maxQueueSize);
         this.retryList = new ArrayList<>();
         this.flushFlag = new AtomicInteger(0);
+        this.stmtCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STMT_CACHE_SIZE) return false;
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
         this.log = AsyncDBExecutor.log;
     }
 
     /**
-     * 添加SQL
+     * 添加SQL，队列满时不等待
      *
      * @param sqlEntry
+     * @return 队列满时返回false
      */
-    public void addSQLEntry(SQLEntry sqlEntry) {
-        sqlQueue.add(sqlEntry);
+    public boolean offerSQLEntry(SQLEntry sqlEntry) {
+        return sqlQueue.offer(sqlEntry);
     }
 
     /**
@@ -121,7 +163,8 @@ public class SqlExecutor {
     }
 
     /**
-     * 批量执行SQL
+     * 批量执行SQL。按sqlIdentify分组，每组使用一个PreparedStatement绑定参数批量执行；
+     * 同一行的SQL出现在不同的分组时，先执行之前的分组，保证同一行的SQL按加入顺序执行
      *
      * @param sqlList
      * @param batchSize
@@ -133,111 +176,364 @@ public class SqlExecutor {
             retryBatch(sqlList);
             return;
         }
-        Statement stmt = null;
-        try {
-            //创建statement
-            try {
-                stmt = conn.createStatement();
-            } catch (Throwable e) {
-                System.out.println("async db error" + e);
-            }
-            //无法执行，打印日志
-            if (stmt == null) {
-                retryBatch(sqlList);
+
+        List<List<SQLEntry>> runs = groupBySqlIdentify(sqlList);
+        for (int i = 0; i < runs.size(); i++) {
+            if (!executeRun(runs.get(i), batchSize)) {
+                //连接断开，剩余的SQL全部重试
+                List<SQLEntry> restList = new ArrayList<>();
+                for (int j = i; j < runs.size(); j++) {
+                    restList.addAll(runs.get(j));
+                }
+                retryBatch(restList);
                 return;
             }
+        }
+    }
 
-            //执行批量执行
-            List<SQLEntry> subList = new ArrayList<>(batchSize + 2);
-            //batch计数器
-            int size = 0;
-            for (SQLEntry entry : sqlList) {
-                //添加父节点
-                if (null != entry.parent && addBatch(stmt, entry.parent)) {
-                    subList.add(entry.parent);
-                    size++;
-                }
-                //添加自身
-                if (addBatch(stmt, entry)) {
-                    subList.add(entry);
-                    size++;
-                }
-                if (size >= batchSize) {
-                    doBatchExecute(stmt, subList, size);
-                    size = 0;
-                    subList.clear();
-                }
+    /**
+     * 把SQL划分为若干轮，每轮内按sqlIdentify分组，返回按执行顺序排列的分组。
+     * 同一行(表, 主键)已经在本轮的其他分组中，或者没有主键的SQL前面有其他分组时，开始新的一轮
+     *
+     * @param sqlList
+     * @return
+     */
+    private List<List<SQLEntry>> groupBySqlIdentify(List<SQLEntry> sqlList) {
+        List<List<SQLEntry>> runs = new ArrayList<>();
+        Map<String, List<SQLEntry>> groups = new LinkedHashMap<>();
+        //本轮中每一行所在的分组
+        Map<String, String> rowGroups = new HashMap<>();
+        for (SQLEntry entry : sqlList) {
+            //父节点与自身是同一行，先于自身执行
+            if (null != entry.parent) {
+                addToGroup(runs, groups, rowGroups, entry.parent, entry.idKey);
             }
+            addToGroup(runs, groups, rowGroups, entry, entry.idKey);
+        }
+        runs.addAll(groups.values());
+        return runs;
+    }
+
+    private void addToGroup(List<List<SQLEntry>> runs, Map<String, List<SQLEntry>> groups, Map<String, String> rowGroups, SQLEntry entry, String idKey) {
+        String rowKey = null == idKey ? null : entry.entity.getTableName() + "." + idKey;
+        List<SQLEntry> group = groups.get(entry.sqlIdentify);
+        boolean newRound;
+        if (null == rowKey) {
+            //没有主键的SQL无法判断影响的行，只能与前面同一模板的SQL合并
+            newRound = !groups.isEmpty() && (null == group || groups.size() > 1);
+        } else {
+            String lastGroup = rowGroups.get(rowKey);
+            newRound = null != lastGroup && !lastGroup.equals(entry.sqlIdentify);
+        }
+        if (newRound) {
+            runs.addAll(groups.values());
+            groups.clear();
+            rowGroups.clear();
+            group = null;
+        }
+        if (null == group) {
+            group = new ArrayList<>();
+            groups.put(entry.sqlIdentify, group);
+        }
+        group.add(entry);
+        if (null != rowKey) {
+            rowGroups.put(rowKey, entry.sqlIdentify);
+        }
+    }
 
-            if (size > 0) {
-                doBatchExecute(stmt, sqlList, size);
+    /**
+     * 执行同一模板的一组SQL，开启多行模式且可以合并时按包大小合并为多行SQL，否则批量执行
+     *
+     * @param run
+     * @param batchSize
+     * @return false表示连接不可用，这一组及之后的SQL需要重试
+     */
+    private boolean executeRun(List<SQLEntry> run, int batchSize) {
+        if (multiRow && run.size() > 1) {
+            MultiRowSqlBuilder builder = MultiRowSqlBuilder.of(run.get(0), multiRowUpsert);
+            if (null != builder && sameShape(run, builder)) {
+                return executeMultiRow(run, builder, batchSize);
+            }
+        }
+        return executeBatchRun(run, batchSize);
+    }
+
+    private static boolean sameShape(List<SQLEntry> run, MultiRowSqlBuilder builder) {
+        for (SQLEntry entry : run) {
+            if (null == entry.params || entry.params.size() != builder.getParamCount()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按包大小把一组SQL合并为多行SQL执行，每条多行SQL单独提交
+     *
+     * @param run
+     * @param builder
+     * @param batchSize
+     * @return false表示连接不可用，未执行的SQL需要重试
+     */
+    private boolean executeMultiRow(List<SQLEntry> run, MultiRowSqlBuilder builder, int batchSize) {
+        int maxRows = Math.max(1, MAX_PARAM_COUNT / Math.max(1, builder.getParamCount()));
+        int start = 0;
+        while (start < run.size()) {
+            //按包大小和参数个数确定本次合并的行数，至少一行
+            int end = start;
+            int size = builder.length(1) - builder.rowLength();
+            while (end < run.size() && end - start < maxRows) {
+                int rowSize = builder.rowLength() + MultiRowSqlBuilder.estimateSize(run.get(end).params);
+                if (end > start && size + rowSize > maxPacketSize) break;
+                size += rowSize;
+                end++;
+            }
+            List<SQLEntry> rows = new ArrayList<>(run.subList(start, end));
+            if (!doMultiRowExecute(builder, rows, batchSize)) {
+                //退回逐条批量执行时rows中只剩下未提交的SQL，之前的都已经提交，不能重试
+                run.subList(0, end - rows.size()).clear();
+                return false;
             }
+            start = end;
+        }
+        return true;
+    }
 
+    /**
+     * 执行一条多行SQL，失败时回滚并退回逐条批量执行，定位出错的行
+     *
+     * @param builder
+     * @param rows
+     * @param batchSize
+     * @return false表示连接不可用，rows中只保留未提交的SQL
+     */
+    private boolean doMultiRowExecute(MultiRowSqlBuilder builder, List<SQLEntry> rows, int batchSize) {
+        if (rows.size() == 1) return executeBatchRun(rows, batchSize);
+        List<Param> params = new ArrayList<>(rows.size() * builder.getParamCount());
+        for (SQLEntry entry : rows) {
+            params.addAll(entry.params);
+        }
+        //行数随包大小变化，多行SQL不进入缓存
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = conn.prepareStatement(builder.sql(rows.size()));
+            SqlBuilder.buildParameters(pstmt, params);
+            conn.setAutoCommit(false);
+            pstmt.executeUpdate();
+            conn.commit();
+            //db标识恢复了
+            batchRecover();
+            return true;
+        } catch (Exception e) {
+            //发生连接性异常，直接重试
+            if (isConnectionError(e)) {
+                return false;
+            }
+            System.out.println("async db multi row error,rows:" + rows.size() + "error:" + e);
+            try {
+                conn.rollback();
+            } catch (Throwable t) {
+                System.out.println("async db error" + t);
+            }
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException el) {
+                //忽略
+            }
+            return executeBatchRun(rows, batchSize);
         } finally {
-            if (null != stmt) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    //忽略
+            if (null != pstmt) {
+                closeQuietly(pstmt);
+            }
+            try {
+                if (null != conn) {
+                    conn.setAutoCommit(true);
                 }
+            } catch (SQLException e) {
+                //直接忽略
+            }
+        }
+    }
 
+    /**
+     * 同一模板的一组SQL使用PreparedStatement批量执行，每batchSize条提交一次
+     *
+     * @param run
+     * @param batchSize
+     * @return false表示连接不可用，这一组及之后的SQL需要重试
+     */
+    private boolean executeBatchRun(List<SQLEntry> run, int batchSize) {
+        boolean cached = null != run.get(0).params;
+        PreparedStatement pstmt;
+        try {
+            pstmt = prepare(run.get(0));
+        } catch (Throwable e) {
+            //连接不可用，重试
+            if (isConnectionError(e)) {
+                System.out.println("async db prepare error" + e);
+                return false;
+            }
+            //SQL本身有错误，重试同样失败，打印后跳过这一组
+            for (SQLEntry entry : run) {
+                System.out.println("async db prepare error,sql:" + toSql(entry) + "error:" + e);
             }
+            return true;
         }
+        try {
+            return executeBatchRun(pstmt, run, batchSize);
+        } finally {
+            if (!cached) {
+                closeQuietly(pstmt);
+            }
+        }
+    }
+
+    private boolean executeBatchRun(PreparedStatement pstmt, List<SQLEntry> run, int batchSize) {
+        List<SQLEntry> subList = new ArrayList<>(batchSize + 2);
+        //当前batch中第一条SQL在run中的位置，失败时从这里开始重试
+        int batchStart = 0;
+        for (int i = 0; i < run.size(); i++) {
+            SQLEntry entry = run.get(i);
+            if (addBatch(pstmt, entry)) {
+                subList.add(entry);
+            }
+            if (subList.size() >= batchSize) {
+                if (!doBatchExecute(pstmt, subList)) {
+                    run.subList(0, batchStart).clear();
+                    return false;
+                }
+                subList.clear();
+                batchStart = i + 1;
+            }
+        }
+
+        if (subList.size() > 0 && !doBatchExecute(pstmt, subList)) {
+            run.subList(0, batchStart).clear();
+            return false;
+        }
+        return true;
     }
 
     /**
-     * 添加SQL到batch里面
+     * 从当前连接的缓存中获取PreparedStatement，不存在时创建。
+     * 没有参数列表的SQL是直接添加的完整SQL，各不相同，不进入缓存，由调用方关闭；
+     * 溢写日志读回的SQL带有参数，与未溢写的SQL共用缓存
      *
-     * @param stmt
      * @param entry
      * @return
+     * @throws SQLException
+     */
+    private PreparedStatement prepare(SQLEntry entry) throws SQLException {
+        String sqlIdentify = entry.sqlIdentify;
+        if (null == entry.params) return conn.prepareStatement(sqlIdentify);
+        PreparedStatement pstmt = stmtCache.get(sqlIdentify);
+        if (null == pstmt) {
+            pstmt = conn.prepareStatement(sqlIdentify);
+            stmtCache.put(sqlIdentify, pstmt);
+        }
+        return pstmt;
+    }
+
+    /**
+     * 关闭缓存的PreparedStatement，连接关闭或更换时调用
      */
-    private boolean addBatch(Statement stmt, SQLEntry entry) {
+    private void closeStatements() {
+        for (PreparedStatement pstmt : stmtCache.values()) {
+            closeQuietly(pstmt);
+        }
+        stmtCache.clear();
+    }
 
+    private static void closeQuietly(Statement stmt) {
         try {
-            stmt.addBatch(entry.sql);
-            return true;
+            stmt.close();
         } catch (SQLException e) {
-            System.out.println("async db error,sql:" + entry.sql + "error:" + e);
-            //顺序执行该条SQL
-            doSerialExecute(stmt, entry);
+            //忽略
+        }
+    }
+
+    /**
+     * 绑定参数后添加到batch里面
+     *
+     * @param pstmt
+     * @param entry
+     * @return
+     */
+    private boolean addBatch(PreparedStatement pstmt, SQLEntry entry) {
+
+        try {
+            bind(pstmt, entry);
+            pstmt.addBatch();
+            return true;
+        } catch (Exception e) {
+            //参数与模板不匹配，顺序执行同样会失败，只打印日志
+            System.out.println("async db error,sql:" + toSql(entry) + "error:" + e);
         }
         return false;
     }
 
+    /**
+     * 绑定SQL参数
+     *
+     * @param pstmt
+     * @param entry
+     * @throws SQLException
+     */
+    private static void bind(PreparedStatement pstmt, SQLEntry entry) throws SQLException {
+        if (null != entry.params && !entry.params.isEmpty()) {
+            SqlBuilder.buildParameters(pstmt, entry.params);
+        }
+    }
+
+    /**
+     * 填充参数后的SQL，只用于日志
+     *
+     * @param entry
+     * @return
+     */
+    private static String toSql(SQLEntry entry) {
+        if (null == entry.sql) {
+            entry.sql = null == entry.params ? entry.sqlIdentify : SqlFormatter.format(entry.sqlIdentify, entry.params);
+        }
+        return entry.sql;
+    }
+
     /**
      * batch处理
      *
-     * @param stmt
+     * @param pstmt
      * @param sqlList
-     * @param batchSize
+     * @return false表示发生连接性异常，需要重试这一批SQL
      */
-    private void doBatchExecute(Statement stmt, List<SQLEntry> sqlList, int batchSize) {
+    private boolean doBatchExecute(PreparedStatement pstmt, List<SQLEntry> sqlList) {
         try {
             //设置非自动提交
             conn.setAutoCommit(false);
-            int[] results = doBatchExecute(stmt, batchSize);
+            int[] results = doBatchExecute(pstmt);
             for (int i = 0; i < results.length; i++) {
                 SQLEntry value = sqlList.get(i);
                 if (results[i] >= 0 || results[i] == -2) {
                     //executor.dolLog(log, value, 2);
                 } else {
                     //executor.dolLog(log, value, 3);
-                    System.out.println("async db error,sql:[{}] ,batchResult:[{}]" + value.sql + results[i]);
+                    System.out.println("async db error,sql:[{}] ,batchResult:[{}]" + toSql(value) + results[i]);
                 }
             }
             //提交SQL
             conn.commit();
             //db标识恢复了
             batchRecover();
+            return true;
 
 
         } catch (Exception e) {
+            try {
+                pstmt.clearBatch();
+            } catch (Throwable t) {
+                //忽略
+            }
 
             //发生连接性异常，直接重试整个batch
-            if (e instanceof CommunicationException) {
-                retryBatch(sqlList);
-                return;
+            if (isConnectionError(e)) {
+                return false;
             }
 
             //发生其他异常，回滚事务
@@ -254,6 +550,7 @@ public class SqlExecutor {
                 //回滚了，使用顺序执行的方式
                 serialExecute(sqlList);
             }
+            return true;
 
         } finally {
 
@@ -268,6 +565,28 @@ public class SqlExecutor {
 
     }
 
+    /**
+     * 是否为连接性异常：SQLRecoverableException、SQLNonTransientConnectionException或SQLState为08开头的异常，
+     * 沿cause链查找
+     *
+     * @param e
+     * @return
+     */
+    private static boolean isConnectionError(Throwable e) {
+        for (Throwable t = e; null != t; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof SQLRecoverableException || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (null != state && state.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * batch操作恢复了
      */
@@ -293,6 +612,7 @@ public class SqlExecutor {
         }
 
         //设置连接不可用
+        closeStatements();
         if (null != conn) {
             try {
                 conn.close();
@@ -309,16 +629,15 @@ public class SqlExecutor {
     /**
      * 执行batch操作
      *
-     * @param stmt
-     * @param batchSize
+     * @param pstmt
      * @return -2表示执行成功，但是影响行数未知
      * -3表示执行失败，但是驱动在执行错误之后继续执行了后续的batch命令
      * 0 or >0 返回影响的行数
      */
-    private int[] doBatchExecute(Statement stmt, int batchSize) throws SQLException {
+    private int[] doBatchExecute(PreparedStatement pstmt) throws SQLException {
         int[] result = null;
-        result = stmt.executeBatch();
-        stmt.clearBatch();
+        result = pstmt.executeBatch();
+        pstmt.clearBatch();
         return result;
     }
 
@@ -333,6 +652,7 @@ public class SqlExecutor {
             return;
         }
         if (!testConnection()) {
+            closeStatements();
             try {
                 conn.close();
             } catch (SQLException e) {
@@ -385,33 +705,14 @@ public class SqlExecutor {
     private void serialExecute(List<SQLEntry> sqlList) {
         //检查连接
         checkConn();
-        Statement stmt = null;
-
-        try {
-            try {
-                stmt = conn.createStatement();
-            } catch (Throwable t) {
-                System.out.println("async db error" + t);
-            }
-            //无法执行，打印日志
-            if (stmt == null) {
-                retryBatch(sqlList);
-                return;
-            }
-            //执行SQL
-            for (SQLEntry value : sqlList) {
-                doSerialExecute(stmt, value);
-            }
-        } finally {
-            //关闭连接
-            if (null != stmt) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    //忽略
-                }
-            }
-
+        //无法执行，重试
+        if (null == conn) {
+            retryBatch(sqlList);
+            return;
+        }
+        //执行SQL
+        for (SQLEntry value : sqlList) {
+            doSerialExecute(value);
         }
 
     }
@@ -419,17 +720,23 @@ public class SqlExecutor {
     /**
      * 顺序执行SQL
      *
-     * @param stmt
      * @param entry
      */
-    private void doSerialExecute(Statement stmt, SQLEntry entry) {
+    private void doSerialExecute(SQLEntry entry) {
 
+        PreparedStatement pstmt = null;
         try {
-            stmt.executeUpdate(entry.sql);
+            pstmt = prepare(entry);
+            bind(pstmt, entry);
+            pstmt.executeUpdate();
         } catch (Exception e) {
             //将异常打印到日志里面
             // executor.doLog();
-            //System.out.println("async db error,sql:[{}]",log.getOriginThtowable(e),entry.sql);
+            System.out.println("async db error,sql:" + toSql(entry) + "error:" + e);
+        } finally {
+            if (null != pstmt && null == entry.params) {
+                closeQuietly(pstmt);
+            }
         }
 
     }
@@ -0,0 +1,477 @@
+package com.reign.memorydb;
+
+import com.reign.jdbc.Param;
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.JdbcEntity;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName: SqlJournal
+ * @Description: 异步SQL溢写日志，执行队列满时SQL按顺序追加到本地文件，执行队列有空闲时按顺序读回。
+ * 每行一条SQL：表名\t操作\t主键key\tSQL模板\t参数个数\t参数1\t参数2...，字段中的\\、\t、\n、\r转义。
+ * 参数记录为 参数类别:值类别:值，读回时还原为相同类别、相同Java类型的Param，与未溢写的SQL一样绑定执行；
+ * 参数个数为空表示没有参数列表，空的参数列表示null参数，byte[]、Blob按base64记录。
+ * 已读回的位置记录在.offset文件中，进程重启后从该位置继续读回；全部读回后删除文件。
+ * 只由持有AsyncDBExecutor.lock的消费线程访问
+ * @Author: wuwx
+ * @Date: 2021-04-20 11:05
+ **/
+final class SqlJournal {
+
+    //日志文件
+    private final File file;
+
+    //读回位置文件
+    private final File offsetFile;
+
+    //写入
+    private Writer writer;
+
+    //读取，位置在readOffset
+    private InputStream reader;
+
+    //已读回的字节数，下一行的起始位置
+    private long readOffset;
+
+    //读取中的行，写入端还没有写完一行时保留已读的部分
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(256);
+
+    //已读取未确认的SQL
+    private SQLEntry head;
+
+    //head所在行的字节数
+    private int headLength;
+
+    //未读回的SQL条数
+    private int size;
+
+    //表名->实体，读回的SQL只需要表名
+    private final Map<String, JdbcEntity> entityMap = new HashMap<>();
+
+    SqlJournal(File file) {
+        this.file = file;
+        this.offsetFile = new File(file.getPath() + ".offset");
+        recover();
+    }
+
+    /**
+     * 读取上次进程留下的日志，从记录的位置开始统计未读回的条数
+     */
+    private void recover() {
+        if (!file.exists()) {
+            offsetFile.delete();
+            return;
+        }
+        if (offsetFile.exists()) {
+            try (RandomAccessFile raf = new RandomAccessFile(offsetFile, "r")) {
+                readOffset = raf.length() >= 8 ? raf.readLong() : 0L;
+            } catch (IOException e) {
+                throw new RuntimeException("read sql journal offset error " + offsetFile, e);
+            }
+            if (readOffset < 0 || readOffset > file.length()) readOffset = 0;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            skipFully(in, readOffset);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') size++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("read sql journal error " + file, e);
+        }
+        if (size > 0) {
+            System.out.println("async db sql journal recovered " + size + " sql from " + file);
+        }
+    }
+
+    /**
+     * 追加一条SQL，父节点在前；参数无法记录时整条不写入
+     *
+     * @param entry
+     */
+    void append(SQLEntry entry) {
+        StringBuilder builder = new StringBuilder(entry.sqlIdentify.length() + 64);
+        int lines = format(builder, entry);
+        try {
+            if (null == writer) {
+                File dir = file.getAbsoluteFile().getParentFile();
+                if (null != dir && !dir.exists()) {
+                    dir.mkdirs();
+                }
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+            }
+            writer.write(builder.toString());
+            size += lines;
+            if (!entityMap.containsKey(entry.entity.getTableName())) {
+                entityMap.put(entry.entity.getTableName(), entry.entity);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("write sql journal error " + file, e);
+        }
+    }
+
+    /**
+     * 生成SQL及其父节点的日志行，父节点在前
+     *
+     * @param builder
+     * @param entry
+     * @return 行数
+     */
+    private static int format(StringBuilder builder, SQLEntry entry) {
+        int lines = null == entry.parent ? 0 : format(builder, entry.parent);
+        escape(builder, entry.entity.getTableName()).append('\t').append(entry.op.name()).append('\t');
+        escape(builder, null == entry.idKey ? "" : entry.idKey).append('\t');
+        escape(builder, entry.sqlIdentify).append('\t');
+        if (null != entry.params) {
+            builder.append(entry.params.size());
+            for (Param param : entry.params) {
+                builder.append('\t');
+                if (null != param) {
+                    escape(builder, encode(param));
+                }
+            }
+        }
+        builder.append('\n');
+        return lines + 1;
+    }
+
+    /**
+     * 下一条未读回的SQL，不移除
+     *
+     * @return 没有时返回null
+     */
+    SQLEntry peek() {
+        if (null != head || size <= 0) return head;
+        try {
+            if (null != writer) {
+                writer.flush();
+            }
+            if (null == reader) {
+                FileInputStream in = new FileInputStream(file);
+                skipFully(in, readOffset);
+                reader = new BufferedInputStream(in);
+            }
+            int b;
+            while ((b = reader.read()) != -1) {
+                if (b != '\n') {
+                    lineBuffer.write(b);
+                    continue;
+                }
+                headLength = lineBuffer.size() + 1;
+                String line = new String(lineBuffer.toByteArray(), StandardCharsets.UTF_8);
+                lineBuffer.reset();
+                try {
+                    head = parse(line);
+                    return head;
+                } catch (RuntimeException e) {
+                    //无法解析的行跳过，不能阻塞后面的SQL
+                    System.out.println("async db sql journal error,line:" + line + "error:" + e);
+                    readOffset += headLength;
+                    if (--size <= 0) {
+                        reset();
+                        return null;
+                    }
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("read sql journal error " + file, e);
+        }
+    }
+
+    /**
+     * 移除peek返回的SQL，全部读回后删除日志文件
+     */
+    void poll() {
+        if (null == head) return;
+        head = null;
+        readOffset += headLength;
+        size--;
+        if (size <= 0) {
+            reset();
+        }
+    }
+
+    /**
+     * 刷新写入的SQL并记录读回位置
+     */
+    void flush() {
+        try {
+            if (null != writer) {
+                writer.flush();
+            }
+            if (size > 0 && file.exists()) {
+                try (RandomAccessFile raf = new RandomAccessFile(offsetFile, "rw")) {
+                    raf.writeLong(readOffset);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("flush sql journal error " + file, e);
+        }
+    }
+
+    /**
+     * 未读回的SQL条数
+     *
+     * @return
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size <= 0;
+    }
+
+    /**
+     * 全部读回，关闭并删除文件
+     */
+    private void reset() {
+        closeQuietly(writer);
+        closeQuietly(reader);
+        writer = null;
+        reader = null;
+        readOffset = 0;
+        size = 0;
+        lineBuffer.reset();
+        file.delete();
+        offsetFile.delete();
+    }
+
+    private SQLEntry parse(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder builder = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                columns.add(builder.toString());
+                builder.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        columns.add(builder.toString());
+        if (columns.size() < 5) {
+            throw new RuntimeException("bad sql journal line " + line);
+        }
+        SQLEntry entry = new SQLEntry();
+        entry.entity = getEntity(columns.get(0));
+        entry.op = AsyncOp.valueOf(columns.get(1));
+        entry.idKey = columns.get(2).isEmpty() ? null : columns.get(2);
+        entry.sqlIdentify = columns.get(3);
+        String count = columns.get(4);
+        if (count.isEmpty()) {
+            if (columns.size() != 5) throw new RuntimeException("bad sql journal line " + line);
+            return entry;
+        }
+        int size = Integer.parseInt(count);
+        if (columns.size() != 5 + size) {
+            throw new RuntimeException("bad sql journal line " + line);
+        }
+        entry.params = new ArrayList<>(size);
+        for (int i = 5; i < columns.size(); i++) {
+            String column = columns.get(i);
+            entry.params.add(column.isEmpty() ? null : decode(column));
+        }
+        return entry;
+    }
+
+    /**
+     * 参数编码为 参数类别:值类别:值
+     *
+     * @param param
+     * @return
+     */
+    static String encode(Param param) {
+        Object obj = param.obj;
+        String type = param.type.name() + ':';
+        if (null == obj) return type + "N:";
+        try {
+            //子类在前
+            if (obj instanceof String) return type + "S:" + obj;
+            if (obj instanceof Integer) return type + "I:" + obj;
+            if (obj instanceof Long) return type + "L:" + obj;
+            if (obj instanceof Short) return type + "H:" + obj;
+            if (obj instanceof Byte) return type + "Y:" + obj;
+            if (obj instanceof Boolean) return type + "Z:" + obj;
+            if (obj instanceof Double) return type + "D:" + obj;
+            if (obj instanceof Float) return type + "F:" + obj;
+            if (obj instanceof Character) return type + "c:" + obj;
+            if (obj instanceof BigDecimal) return type + "M:" + obj;
+            if (obj instanceof BigInteger) return type + "G:" + obj;
+            if (obj instanceof Timestamp) return type + "s:" + ((Timestamp) obj).getTime() + ',' + ((Timestamp) obj).getNanos();
+            if (obj instanceof java.sql.Date) return type + "d:" + ((java.sql.Date) obj).getTime();
+            if (obj instanceof Time) return type + "t:" + ((Time) obj).getTime();
+            if (obj instanceof Date) return type + "U:" + ((Date) obj).getTime();
+            if (obj instanceof byte[]) return type + "X:" + Base64.getEncoder().encodeToString((byte[]) obj);
+            if (obj instanceof Blob) {
+                Blob blob = (Blob) obj;
+                return type + "B:" + Base64.getEncoder().encodeToString(blob.getBytes(1, (int) blob.length()));
+            }
+            if (obj instanceof Clob && !(obj instanceof NClob)) {
+                Clob clob = (Clob) obj;
+                return type + "C:" + clob.getSubString(1, (int) clob.length());
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("sql journal read param error " + param.type, e);
+        }
+        throw new IllegalArgumentException("sql journal not support param " + param.type + " " + obj.getClass().getName());
+    }
+
+    /**
+     * 还原encode生成的参数
+     *
+     * @param column
+     * @return
+     */
+    static Param decode(String column) {
+        int split = column.indexOf(':');
+        if (split < 0 || column.length() < split + 3 || column.charAt(split + 2) != ':') {
+            throw new IllegalArgumentException("bad sql journal param " + column);
+        }
+        Type type = Type.valueOf(column.substring(0, split));
+        String value = column.substring(split + 3);
+        try {
+            switch (column.charAt(split + 1)) {
+                case 'N':
+                    return new Param(null, type);
+                case 'S':
+                    return new Param(value, type);
+                case 'I':
+                    return new Param(Integer.valueOf(value), type);
+                case 'L':
+                    return new Param(Long.valueOf(value), type);
+                case 'H':
+                    return new Param(Short.valueOf(value), type);
+                case 'Y':
+                    return new Param(Byte.valueOf(value), type);
+                case 'Z':
+                    return new Param(Boolean.valueOf(value), type);
+                case 'D':
+                    return new Param(Double.valueOf(value), type);
+                case 'F':
+                    return new Param(Float.valueOf(value), type);
+                case 'c':
+                    return new Param(value.charAt(0), type);
+                case 'M':
+                    return new Param(new BigDecimal(value), type);
+                case 'G':
+                    return new Param(new BigInteger(value), type);
+                case 's':
+                    int comma = value.indexOf(',');
+                    Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, comma)));
+                    timestamp.setNanos(Integer.parseInt(value.substring(comma + 1)));
+                    return new Param(timestamp, type);
+                case 'd':
+                    return new Param(new java.sql.Date(Long.parseLong(value)), type);
+                case 't':
+                    return new Param(new Time(Long.parseLong(value)), type);
+                case 'U':
+                    return new Param(new Date(Long.parseLong(value)), type);
+                case 'X':
+                    return new Param(Base64.getDecoder().decode(value), type);
+                case 'B':
+                    return new Param(new SerialBlob(Base64.getDecoder().decode(value)), type);
+                case 'C':
+                    return new Param(new SerialClob(value.toCharArray()), type);
+                default:
+                    throw new IllegalArgumentException("bad sql journal param " + column);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("bad sql journal param " + column, e);
+        }
+    }
+
+    /**
+     * 获取表名对应的实体，上次进程写入的SQL只有表名
+     *
+     * @param tableName
+     * @return
+     */
+    private JdbcEntity getEntity(String tableName) {
+        JdbcEntity entity = entityMap.get(tableName);
+        if (null == entity) {
+            entity = new JdbcEntity();
+            entity.setTableName(tableName);
+            entityMap.put(tableName, entity);
+        }
+        return entity;
+    }
+
+    private static StringBuilder escape(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+        return builder;
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1) return;
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (null == closeable) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //忽略
+        }
+    }
+}
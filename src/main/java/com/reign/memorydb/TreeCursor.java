@@ -0,0 +1,70 @@
+package com.reign.memorydb;
+
+/**
+ * @ClassName: TreeCursor
+ * @Description: 索引树游标，沿叶子节点链表逐条遍历，遍历过程中不产生结果集合
+ * <p>
+ * 游标创建后处于未定位状态，需要先调用seek/first/last定位；同一个游标可以反复定位复用。
+ * 遍历期间不能修改索引树，否则游标位置失效
+ * @Author: wuwx
+ * @Date: 2021-04-08 10:05
+ **/
+public interface TreeCursor<T, V> {
+
+    /**
+     * 定位到第一个大于等于key的位置
+     *
+     * @param key
+     * @return 是否定位到有效位置
+     */
+    boolean seek(T key);
+
+    /**
+     * 定位到第一个元素
+     *
+     * @return 是否定位到有效位置
+     */
+    boolean first();
+
+    /**
+     * 定位到最后一个元素
+     *
+     * @return 是否定位到有效位置
+     */
+    boolean last();
+
+    /**
+     * 向后移动一位
+     *
+     * @return 是否移动到有效位置
+     */
+    boolean next();
+
+    /**
+     * 向前移动一位
+     *
+     * @return 是否移动到有效位置
+     */
+    boolean previous();
+
+    /**
+     * 当前位置是否有效
+     *
+     * @return
+     */
+    boolean valid();
+
+    /**
+     * 当前位置的key
+     *
+     * @return
+     */
+    T key();
+
+    /**
+     * 当前位置的value
+     *
+     * @return
+     */
+    V value();
+}
@@ -1,5 +1,7 @@
 package com.reign.memorydb.annotation;
 
+import com.reign.memorydb.BPlusTree;
+
 import java.lang.annotation.*;
 
 /**
@@ -29,4 +31,41 @@ public @interface BTreeIndex {
      * @return
      */
     boolean unique() default  true;
+
+    /**
+     * 索引树的阶数，即每个节点最多容纳的key数量
+     * @return
+     */
+    int order() default BPlusTree.DEFAULT_M;
+
+    /**
+     * 是否使用支持并发访问的索引树，读写都不持有内存表的索引锁，读操作不会被其他行的写操作阻塞；
+     * 索引列修改时先删除旧key再插入新key，期间并发的读操作可能查不到该行
+     * @return
+     */
+    boolean concurrent() default false;
+
+    /**
+     * 是否使用写时复制的索引树，范围扫描在快照上进行，读写都不持有内存表的索引锁，长时间扫描不阻塞写操作
+     * @return
+     */
+    boolean copyOnWrite() default false;
+
+    /**
+     * 是否将索引树节点存放在堆外，减少堆上的节点对象
+     * @return
+     */
+    boolean offHeap() default false;
+
+    /**
+     * 堆外存储时索引key的最大字节数以及主键key的最大字符数，超长时插入失败
+     * @return
+     */
+    int keyWidth() default 32;
+
+    /**
+     * 覆盖列，列值冗余存放在索引叶子节点中，投影查询只读索引而不访问主表；只支持唯一索引，不支持堆外存储
+     * @return
+     */
+    String[] include() default {};
 }
@@ -0,0 +1,32 @@
+package com.reign.memorydb.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @ClassName: HashIndex
+ * @Description: 哈希索引，只支持唯一索引的等值查找，不支持范围查找以及最左匹配
+ * @Author: wuwx
+ * @Date: 2021-04-14 16:05
+ **/
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface HashIndex {
+    /**
+     * 索引名称
+     * @return
+     */
+    String name();
+
+    /**
+     * 索引列
+     * @return
+     */
+    String[] value();
+
+    /**
+     * 预计的元素个数，用于初始化哈希表容量
+     * @return
+     */
+    int expectedSize() default 16;
+}
@@ -0,0 +1,21 @@
+package com.reign.memorydb.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @ClassName: HashIndexs
+ * @Description: 多重哈希索引
+ * @Author: wuwx
+ * @Date: 2021-04-14 16:06
+ **/
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface HashIndexs {
+
+    /**
+     * 多重哈希索引
+     * @return
+     */
+    HashIndex[] value();
+}
@@ -18,4 +18,10 @@ public @interface SyncDBConfig {
      * @return
      */
     long interval() default 300L;
+
+    /**
+     * 是否为低优先级的表，异步SQL队列满且溢出策略为SHED时丢弃该表的SQL
+     * @return
+     */
+    boolean lowPriority() default false;
 }
@@ -0,0 +1,255 @@
+package com.reign.memorydb.index;
+
+import com.reign.jdbc.orm.IdEntity;
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcField;
+import com.reign.jdbc.orm.JdbcModel;
+import com.reign.memorydb.MemoryTable;
+import com.reign.memorydb.annotation.BTreeIndex;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * @ClassName: AbstractIndexManager
+ * @Description: 索引管理器基类，负责解析索引列
+ * @Author: wuwx
+ * @Date: 2021-04-06 11:20
+ **/
+public abstract class AbstractIndexManager<V extends JdbcModel> implements IndexManager<V> {
+
+    //支持并发读写的索引不需要加锁，lockIndex返回的空锁
+    private static final Lock NO_LOCK = new NoLock();
+
+    //实体对象
+    protected JdbcEntity entity;
+
+    //索引名称
+    protected String name;
+
+    //索引列
+    protected JdbcField[] fields;
+
+    //主键索引
+    protected IdEntity id;
+
+    //主表
+    protected MemoryTable<?, ?> table;
+
+    //索引key编码器
+    protected IndexKeyEncoder keyEncoder;
+
+
+    /**
+     * 索引管理器构造函数
+     *
+     * @param table
+     * @param entity
+     * @param index
+     */
+    public AbstractIndexManager(MemoryTable<?, ?> table, JdbcEntity entity, BTreeIndex index) {
+        this(table, entity, index.name(), index.value());
+    }
+
+    /**
+     * 索引管理器构造函数
+     *
+     * @param table
+     * @param entity
+     * @param name    索引名称
+     * @param columns 索引列
+     */
+    protected AbstractIndexManager(MemoryTable<?, ?> table, JdbcEntity entity, String name, String[] columns) {
+        this.entity = entity;
+        this.table = table;
+        this.name = name;
+        this.fields = getIndexFields(entity, columns);
+        this.id = entity.getId();
+        this.keyEncoder = new IndexKeyEncoder(fields);
+    }
+
+    /**
+     * 获取并持有内存表的索引读锁，索引树的读取和结果的生成都要在锁内完成；
+     * 支持并发读写的索引不加锁，返回空锁
+     *
+     * @return
+     */
+    protected Lock lockIndex() {
+        if (lockFree()) return NO_LOCK;
+        Lock lock = table.getIndexReadLock();
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * 根据主键读取主表，long主键不转换为字符串
+     *
+     * @param idKey Long或String主键
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected V read(Object idKey) {
+        if (null == idKey) return null;
+        if (idKey instanceof Long) return (V) table.readById((Long) idKey);
+        return table.readByIdKey((String) idKey);
+    }
+
+    /**
+     * 根据主键批量读取主表，忽略已经被删除的对象；支持并发读写的索引取出主键时不持有索引读锁
+     *
+     * @param idKeys
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected List<V> readByIdKeys(Iterator<?> idKeys) {
+        if (!lockFree()) return (List<V>) table.readByIdKeys(idKeys);
+        List<Object> ids = new ArrayList<>();
+        while (idKeys.hasNext()) {
+            ids.add(idKeys.next());
+        }
+        return (List<V>) table.readByIds(ids);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String[] columns() {
+        String[] columns = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = fields[i].propertyName;
+        }
+        return columns;
+    }
+
+    @Override
+    public boolean supportRange() {
+        return true;
+    }
+
+    @Override
+    public boolean lockFree() {
+        return false;
+    }
+
+    /**
+     * 根据列名获取索引列
+     *
+     * @param entity
+     * @param columns
+     * @return
+     */
+    static JdbcField[] getIndexFields(JdbcEntity entity, String[] columns) {
+        JdbcField[] indexFields = new JdbcField[columns.length];
+        int index = 0;
+        for (String column : columns) {
+            JdbcField temp = null;
+            for (JdbcField field : entity.getFields()) {
+                if (column.equals(field.propertyName)) {
+                    temp = field;
+                    break;
+                }
+            }
+            if (null == temp) throw new RuntimeException("cannot found index column ,index:" + column);
+
+            indexFields[index++] = temp;
+        }
+        return indexFields;
+    }
+
+    /**
+     * 根据对象获取索引key值
+     *
+     * @param obj
+     * @return
+     */
+    protected IndexKey getIndexKey(Object obj) {
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = getFieldValue(fields[i], obj);
+        }
+        return keyEncoder.encode(values);
+    }
+
+    /**
+     * 将索引列的值转换为key，传入前几列时得到最左前缀
+     *
+     * @param values
+     * @return
+     */
+    protected IndexKey toIndexKey(Object... values) {
+        return keyEncoder.encode(values);
+    }
+
+    /**
+     * 将范围条件转换为[start, end)，范围为空时返回null
+     *
+     * @param range
+     * @return
+     */
+    protected IndexKey[] toBounds(IndexRange range) {
+        IndexKey start = null;
+        IndexKey end = null;
+        if (null != range.getLower()) {
+            IndexKey key = toIndexKey(range.getLower());
+            //大于某个前缀即大于等于所有以该前缀开头的key的上界
+            start = range.isLowerInclusive() ? key : key.prefixUpperBound();
+            if (null == start) return null;
+        }
+        if (null != range.getUpper()) {
+            IndexKey key = toIndexKey(range.getUpper());
+            end = range.isUpperInclusive() ? key.prefixUpperBound() : key;
+        }
+        return new IndexKey[]{start, end};
+    }
+
+    /**
+     * 获取对象中指定列的值
+     *
+     * @param field
+     * @param obj
+     * @return
+     */
+    protected static Object getFieldValue(JdbcField field, Object obj) {
+        return field.getValue(obj);
+    }
+
+    /**
+     * 空锁，加锁和解锁都不做任何事
+     */
+    private static final class NoLock implements Lock {
+
+        @Override
+        public void lock() {
+        }
+
+        @Override
+        public void lockInterruptibly() {
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package com.reign.memorydb.index;
 
-import com.reign.jdbc.orm.IdEntity;
 import com.reign.jdbc.orm.JdbcEntity;
 import com.reign.jdbc.orm.JdbcField;
 import com.reign.jdbc.orm.JdbcModel;
 import com.reign.memorydb.BPlusTree;
+import com.reign.memorydb.ConcurrentBPlusTree;
+import com.reign.memorydb.CopyOnWriteBPlusTree;
+import com.reign.memorydb.IndexTree;
+import com.reign.memorydb.KeyCodec;
+import com.reign.memorydb.KeyCodecs;
 import com.reign.memorydb.MemoryTable;
+import com.reign.memorydb.OffHeapBPlusTree;
+import com.reign.memorydb.TreeCursor;
 import com.reign.memorydb.annotation.BTreeIndex;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
 
 /**
  * @ClassName: BTreeIndexManager
@@ -18,28 +30,22 @@ import java.util.List;
  * @Author: wuwx
  * @Date: 2021-04-02 17:16
  **/
-public class BTreeIndexManager<V extends JdbcModel> implements IndexManager<V> {
+public class BTreeIndexManager<V extends JdbcModel> extends AbstractIndexManager<V> {
 
-    //实体对象
-    private JdbcEntity entity;
+    //索引树，value为主键，有覆盖列时为IndexRow；int/long主键的表存放long主键，否则存放主键key
+    private IndexTree<IndexKey, Object> indexTree;
 
-    //索引名称
-    private String name;
+    //主键为int/long
+    private boolean primitiveId;
 
-    //索引列
-    private JdbcField[] fields;
+    //覆盖列，没有时为null
+    private JdbcField[] includeFields;
 
-    //索引树
-    private BPlusTree<String, String> indexTree;
+    //覆盖列名
+    private String[] includeColumns;
 
-    //主键索引
-    private IdEntity id;
-
-    //主表
-    private MemoryTable table;
-
-    //最左前缀匹配器
-    private Comparator<String> leftComparator;
+    //索引树支持并发读写（并发索引树、写时复制索引树），读取和修改不持有内存表的索引锁
+    private boolean lockFree;
 
 
     /**
@@ -49,134 +55,393 @@ public class BTreeIndexManager<V extends JdbcModel> implements IndexManager<V> {
      * @param entity
      * @param index
      */
-    public BTreeIndexManager(MemoryTable table, JdbcEntity entity, BTreeIndex index) {
-        this.entity = entity;
-        this.table = table;
-        this.name = index.name();
-        String[] columns = index.value();
-        List<JdbcField> indexFields = new ArrayList<>();
-        for (String column : columns) {
-            JdbcField temp = null;
-            for (JdbcField field : entity.getFields()) {
-                if (column.equals(field.propertyName)) {
-                    temp = field;
-                    break;
-                }
-            }
-            if (null == temp) throw new RuntimeException("cannot found index column ,index:" + column);
-
-            indexFields.add(temp);
+    public BTreeIndexManager(MemoryTable<?, ?> table, JdbcEntity entity, BTreeIndex index) {
+        super(table, entity, index);
+        this.primitiveId = id.isPrimitiveKey();
+        if (index.include().length > 0) {
+            if (index.offHeap()) throw new RuntimeException("off heap index not support include columns, index:" + index.name());
+            this.includeFields = getIndexFields(entity, index.include());
+            this.includeColumns = index.include().clone();
+        }
+        if (index.offHeap()) {
+            this.indexTree = offHeapTree(index.order(), IndexKey.codec(index.keyWidth()),
+                    primitiveId ? KeyCodecs.LONG : KeyCodecs.fixedString(index.keyWidth()));
+        } else if (index.copyOnWrite()) {
+            this.indexTree = new CopyOnWriteBPlusTree<>(index.order());
+            this.lockFree = true;
+        } else if (index.concurrent()) {
+            this.indexTree = new ConcurrentBPlusTree<>(index.order());
+            this.lockFree = true;
+        } else {
+            this.indexTree = new BPlusTree<>(index.order());
         }
-        this.fields = indexFields.toArray(new JdbcField[0]);
-        this.indexTree = new BPlusTree<>();
-        this.id = entity.getId();
-        this.leftComparator = new Comparator<String>() {
-            @Override
-            public int compare(String key, String searchKey) {
-                if (key.startsWith(searchKey)) {
-                    return 0;
-                }
-                return key.compareTo(searchKey);
-            }
-        };
     }
 
-    @Override
-    public String name() {
-        return name;
+    /**
+     * 生成叶子节点中存放的值，有覆盖列时把覆盖列的值一起存入
+     *
+     * @param value
+     * @return
+     */
+    private Object entryOf(V value) {
+        Object idKey = primitiveId ? (Object) id.getLongKeyByObject(value) : id.getKeyValueByObject(value);
+        if (null == includeFields) return idKey;
+        Object[] values = new Object[includeFields.length];
+        for (int i = 0; i < includeFields.length; i++) {
+            values[i] = getFieldValue(includeFields[i], value);
+        }
+        return new IndexRow(idKey, includeColumns, values);
     }
 
-    @Override
-    public void insert(V value) {
-        String idKey = id.getKeyValueByObject(value);
-        String indexKey = getKeyValueByObject(value);
-        indexTree.insert(indexKey, idKey);
+    /**
+     * 从叶子节点的值中取出主键，Long或主键key
+     *
+     * @param entry
+     * @return
+     */
+    private static Object idOf(Object entry) {
+        return entry instanceof IndexRow ? ((IndexRow) entry).getId() : entry;
     }
 
     /**
-     * 根据对象获取索引key值
+     * 根据叶子节点的值读取主表，long主键不转换为字符串
      *
-     * @param obj
+     * @param entry
      * @return
      */
-    private String getKeyValueByObject(Object obj) {
-        try {
-            Object[] array = new Object[fields.length];
-            int index = 0;
-            for (JdbcField field : fields) {
-                field.field.setAccessible(true);
-                array[index++] = field.field.get(obj);
-            }
-            return toString(array);
-        } catch (Throwable t) {
-            throw new RuntimeException("get Key error" + t);
-        }
-
+    private V readEntry(Object entry) {
+        return read(idOf(entry));
     }
 
     /**
-     * 将数组转换为key
+     * 创建堆外索引树，叶子节点的值只会是idOf返回的Long或String，与值编码器一致
      *
-     * @param array
+     * @param order
+     * @param keyCodec
+     * @param valueCodec
      * @return
      */
-    private String toString(Object[] array) {
-        StringBuilder builder = new StringBuilder();
-        for (Object obj : array) {
-            builder.append(obj.toString()).append(":");
+    @SuppressWarnings("unchecked")
+    private static IndexTree<IndexKey, Object> offHeapTree(int order, KeyCodec<IndexKey> keyCodec, KeyCodec<?> valueCodec) {
+        return new OffHeapBPlusTree<>(order, keyCodec, (KeyCodec<Object>) valueCodec);
+    }
+
+    @Override
+    public boolean lockFree() {
+        return lockFree;
+    }
+
+    @Override
+    public void insert(V value) {
+        indexTree.insert(getIndexKey(value), entryOf(value));
+    }
+
+    @Override
+    public void load(Collection<V> values) {
+        if (!(indexTree instanceof BPlusTree)) {
+            for (V value : values) {
+                insert(value);
+            }
+            return;
         }
-        return builder.toString();
+        List<Map.Entry<IndexKey, Object>> entries = new ArrayList<>(values.size());
+        for (V value : values) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(getIndexKey(value), entryOf(value)));
+        }
+        ((BPlusTree<IndexKey, Object>) indexTree).bulkLoadUnsorted(entries);
     }
 
     @Override
     public void remove(V value) {
-        String indexKey = getKeyValueByObject(value);
+        IndexKey indexKey = getIndexKey(value);
         indexTree.remove(indexKey);
     }
 
     @Override
     public void remove(Object... args) {
-        String indexKey = getKeyValueByObject(args);
-        indexTree.remove(indexKey);
+        indexTree.remove(toIndexKey(args));
     }
 
     @Override
     public void update(V oldValue, V newValue) {
         if (oldValue == null) return;
-        String oldIndexKey = getKeyValueByObject(oldValue);
-        String newIndexKey = getKeyValueByObject(newValue);
-        String idKey =id.getKeyValueByObject(newValue);
+        IndexKey oldIndexKey = getIndexKey(oldValue);
+        IndexKey newIndexKey = getIndexKey(newValue);
         if (!oldIndexKey.equals(newIndexKey)){
             indexTree.remove(oldIndexKey);
-            indexTree.insert(newIndexKey,idKey);
+            indexTree.insert(newIndexKey,entryOf(newValue));
+        } else if (null != includeFields) {
+            //索引列不变，覆盖列可能变化，覆盖原来的值
+            indexTree.insert(newIndexKey, entryOf(newValue));
         }
     }
 
     @Override
     public V find(V value) {
-        String indexKey = getKeyValueByObject(value);
-        String idKey = indexTree.find(indexKey);
-        return table.readByIdKey(idKey);
+        IndexKey indexKey = getIndexKey(value);
+        Lock lock = lockIndex();
+        try {
+            return readEntry(indexTree.find(indexKey));
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public V find(Object... args) {
-        return null;
+        IndexKey indexKey = toIndexKey(args);
+        Lock lock = lockIndex();
+        try {
+            return readEntry(indexTree.find(indexKey));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 覆盖索引等值查找，只读取索引，不访问主表
+     *
+     * @param args 全部索引列的值
+     * @return 覆盖列的值，不存在时返回null
+     */
+    public IndexRow findRow(Object... args) {
+        checkInclude();
+        IndexKey indexKey = toIndexKey(args);
+        Lock lock = lockIndex();
+        try {
+            return (IndexRow) indexTree.find(indexKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 覆盖索引范围查找，只读取索引
+     *
+     * @param range
+     * @return
+     */
+    public List<IndexRow> rangeFindRows(IndexRange range) {
+        checkInclude();
+        IndexKey[] bounds = toBounds(range);
+        if (null == bounds) return Collections.emptyList();
+        Lock lock = lockIndex();
+        try {
+            return toRows(scanEntries(bounds[0], bounds[1]));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 覆盖索引最左前缀匹配，只读取索引
+     *
+     * @param args 前几列索引列的值
+     * @return
+     */
+    public List<IndexRow> leftFindRows(Object... args) {
+        checkInclude();
+        IndexKey prefix = toIndexKey(args);
+        Lock lock = lockIndex();
+        try {
+            return toRows(scanEntries(prefix, prefix.prefixUpperBound()));
+        } finally {
+            lock.unlock();
+        }
     }
 
+    private void checkInclude() {
+        if (null == includeFields) throw new RuntimeException("index has no include columns, index:" + name);
+    }
+
+    private static List<IndexRow> toRows(Iterator<Object> entries) {
+        List<IndexRow> resultList = new ArrayList<>();
+        while (entries.hasNext()) {
+            resultList.add((IndexRow) entries.next());
+        }
+        return resultList;
+    }
+
+    /**
+     * 范围查找，包含start和end的索引列
+     *
+     * @param start
+     * @param end
+     * @return
+     */
     @Override
     public List<V> rangeFind(V start, V end) {
-        return null;
+        IndexKey startKey = getIndexKey(start);
+        IndexKey endKey = getIndexKey(end).prefixUpperBound();
+        Lock lock = lockIndex();
+        try {
+            return readByIdKeys(scan(startKey, endKey));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按索引列范围查找，结果按索引顺序排列，在索引读锁内扫描索引树并批量读取对象
+     *
+     * @param range
+     * @return
+     */
+    public List<V> rangeFind(IndexRange range) {
+        IndexKey[] bounds = toBounds(range);
+        if (null == bounds) return Collections.emptyList();
+        Lock lock = lockIndex();
+        try {
+            return readByIdKeys(scan(bounds[0], bounds[1]));
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * 按索引列范围查找主键key，惰性返回；底层为BPlusTree时沿游标逐个读取，不物化整个结果，
+     * 遍历期间不能修改索引，需在内存表读锁内或单线程使用
+     *
+     * @param range
+     * @return
+     */
+    public Iterator<String> rangeIdKeys(IndexRange range) {
+        IndexKey[] bounds = toBounds(range);
+        if (null == bounds) return Collections.emptyIterator();
+        final Iterator<Object> ids = scan(bounds[0], bounds[1]);
+        if (!primitiveId) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Iterator<String> idKeys = (Iterator) ids;
+            return idKeys;
+        }
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return String.valueOf(ids.next());
+            }
+        };
+    }
+
+    /**
+     * 最左前缀匹配，前缀转换为[prefix, prefixUpperBound())范围，定位到前缀后沿叶子链表顺序扫描，O(log n + k)
+     *
+     * @param args 前几列索引列的值
+     * @return
+     */
     @Override
     public List<V> leftFind(Object... args) {
-        return null;
+        IndexKey prefix = toIndexKey(args);
+        Lock lock = lockIndex();
+        try {
+            return readByIdKeys(scan(prefix, prefix.prefixUpperBound()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 扫描[start, end)范围内的主键，Long或主键key，start或end为null表示不限制
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    private Iterator<Object> scan(IndexKey start, IndexKey end) {
+        final Iterator<Object> entries = scanEntries(start, end);
+        if (null == includeFields) return entries;
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return idOf(entries.next());
+            }
+        };
+    }
+
+    /**
+     * 扫描[start, end)范围内叶子节点中存放的值
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    private Iterator<Object> scanEntries(IndexKey start, IndexKey end) {
+        if (indexTree instanceof BPlusTree) {
+            return new CursorIterator(((BPlusTree<IndexKey, Object>) indexTree).cursor(), start, end);
+        }
+        if (indexTree instanceof CopyOnWriteBPlusTree) {
+            //在快照上扫描，不持有索引锁，写操作在新版本上进行
+            return ((CopyOnWriteBPlusTree<IndexKey, Object>) indexTree).snapshot().rangeFind(start, true, end, false).iterator();
+        }
+        //其他索引树没有游标，范围查找结果已经是一次校验过的快照
+        return indexTree.rangeFind(start, true, end, false).iterator();
+    }
+
+    /**
+     * 基于游标的迭代器，定位到start后沿叶子链表读取直到end
+     */
+    private static final class CursorIterator implements Iterator<Object> {
+
+        //游标
+        private final TreeCursor<IndexKey, Object> cursor;
+
+        //上界，不包含，null表示不限制
+        private final IndexKey end;
+
+        //游标是否指向范围内的元素
+        private boolean valid;
+
+        CursorIterator(TreeCursor<IndexKey, Object> cursor, IndexKey start, IndexKey end) {
+            this.cursor = cursor;
+            this.end = end;
+            this.valid = check(null == start ? cursor.first() : cursor.seek(start));
+        }
+
+        private boolean check(boolean positioned) {
+            return positioned && (null == end || cursor.key().compareTo(end) < 0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return valid;
+        }
+
+        @Override
+        public Object next() {
+            if (!valid) throw new NoSuchElementException();
+            Object entry = cursor.value();
+            valid = check(cursor.next());
+            return entry;
+        }
+    }
+
+    @Override
+    public boolean unique() {
+        return true;
+    }
+
+    @Override
+    public int cardinality() {
+        return -1;
+    }
+
+    @Override
+    public Iterator<String> findIdKeys(IndexRange range) {
+        return rangeIdKeys(range);
     }
 
     @Override
     public int getHeight() {
-        return 0;
+        return indexTree.getHeight();
     }
 
     @Override
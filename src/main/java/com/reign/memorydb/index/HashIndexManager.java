@@ -0,0 +1,274 @@
+package com.reign.memorydb.index;
+
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcModel;
+import com.reign.memorydb.LongOpenHashMap;
+import com.reign.memorydb.MemoryTable;
+import com.reign.memorydb.OpenHashMap;
+import com.reign.memorydb.annotation.HashIndex;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * @ClassName: HashIndexManager
+ * @Description: 哈希索引管理器，唯一索引的等值查找为O(1)。
+ * 单列int/long/byte索引直接以long作为key存放在LongOpenHashMap中；
+ * 其他单列索引以列值作为key，多列索引以编码后的IndexKey作为key。
+ * int/long主键的表存放long主键，查找时不需要解析主键key。
+ * 索引列为null的对象不进入索引，哈希表的读取在内存表的索引读锁内进行
+ * @Author: wuwx
+ * @Date: 2021-04-14 16:20
+ **/
+public class HashIndexManager<V extends JdbcModel> extends AbstractIndexManager<V> {
+
+    //单列整数索引使用的哈希表，值为主键，int/long主键存放Long，其他主键存放主键key
+    private LongOpenHashMap<Object> longIndex;
+
+    //其他索引使用的哈希表，值同上
+    private OpenHashMap<Object, Object> objectIndex;
+
+    //主键是否为int/long
+    private boolean primitiveId;
+
+    //预计的元素个数
+    private int expectedSize;
+
+
+    /**
+     * 索引管理器构造函数
+     *
+     * @param table
+     * @param entity
+     * @param index
+     */
+    public HashIndexManager(MemoryTable<?, ?> table, JdbcEntity entity, HashIndex index) {
+        super(table, entity, index.name(), index.value());
+        this.expectedSize = index.expectedSize();
+        this.primitiveId = id.isPrimitiveKey();
+        if (fields.length == 1 && isIntegral(fields[0].jdbcType)) {
+            this.longIndex = new LongOpenHashMap<>(expectedSize);
+        } else {
+            this.objectIndex = new OpenHashMap<>(expectedSize);
+        }
+    }
+
+    private static boolean isIntegral(Type type) {
+        return Type.Int == type || Type.Long == type || Type.Byte == type;
+    }
+
+    /**
+     * 根据对象获取哈希key，单列索引为列值，多列索引为IndexKey，索引列为null时返回null
+     *
+     * @param obj
+     * @return
+     */
+    private Object getHashKey(Object obj) {
+        if (fields.length == 1) return getFieldValue(fields[0], obj);
+        for (int i = 0; i < fields.length; i++) {
+            if (null == getFieldValue(fields[i], obj)) return null;
+        }
+        return getIndexKey(obj);
+    }
+
+    /**
+     * 将索引列的值转换为哈希key
+     *
+     * @param args 全部索引列的值
+     * @return
+     */
+    private Object toHashKey(Object... args) {
+        if (args.length != fields.length) throw new IllegalArgumentException("hash index need all index values, index:" + name);
+        return fields.length == 1 ? args[0] : toIndexKey(args);
+    }
+
+    /**
+     * 对象的主键，int/long主键不转换为字符串
+     *
+     * @param value
+     * @return
+     */
+    private Object idOf(V value) {
+        return primitiveId ? (Object) id.getLongKeyByObject(value) : id.getKeyValueByObject(value);
+    }
+
+    private void put(Object key, Object idKey) {
+        if (null == key) return;
+        if (null != longIndex) {
+            longIndex.put(((Number) key).longValue(), idKey);
+        } else {
+            objectIndex.put(key, idKey);
+        }
+    }
+
+    private Object get(Object key) {
+        if (null == key) return null;
+        return null != longIndex ? longIndex.get(((Number) key).longValue()) : objectIndex.get(key);
+    }
+
+    private void delete(Object key) {
+        if (null == key) return;
+        if (null != longIndex) {
+            longIndex.remove(((Number) key).longValue());
+        } else {
+            objectIndex.remove(key);
+        }
+    }
+
+    @Override
+    public void insert(V value) {
+        put(getHashKey(value), idOf(value));
+    }
+
+    @Override
+    public void load(Collection<V> values) {
+        if (null != longIndex) {
+            longIndex.ensureCapacity(longIndex.size() + values.size());
+        } else {
+            objectIndex.ensureCapacity(objectIndex.size() + values.size());
+        }
+        for (V value : values) {
+            insert(value);
+        }
+    }
+
+    @Override
+    public void remove(V value) {
+        delete(getHashKey(value));
+    }
+
+    @Override
+    public void remove(Object... args) {
+        delete(toHashKey(args));
+    }
+
+    @Override
+    public void update(V oldValue, V newValue) {
+        if (oldValue == null) return;
+        Object oldKey = getHashKey(oldValue);
+        Object newKey = getHashKey(newValue);
+        if (null == oldKey ? null == newKey : oldKey.equals(newKey)) return;
+        delete(oldKey);
+        put(newKey, idOf(newValue));
+    }
+
+    @Override
+    public V find(V value) {
+        return findByHashKey(getHashKey(value));
+    }
+
+    @Override
+    public V find(Object... args) {
+        return findByHashKey(toHashKey(args));
+    }
+
+    /**
+     * 等值查找，在索引读锁内读取哈希表和主表
+     *
+     * @param key
+     * @return
+     */
+    private V findByHashKey(Object key) {
+        Lock lock = lockIndex();
+        try {
+            return read(get(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 单列索引等值查找，不创建可变参数数组
+     *
+     * @param key 索引列的值
+     * @return
+     */
+    public V findByKey(Object key) {
+        if (fields.length != 1) throw new IllegalArgumentException("findByKey only support single column index, index:" + name);
+        return findByHashKey(key);
+    }
+
+    /**
+     * 单列整数索引等值查找，不装箱，不分配对象
+     *
+     * @param key 索引列的值
+     * @return
+     */
+    public V findByKey(long key) {
+        if (null == longIndex) return findByKey((Object) key);
+        Lock lock = lockIndex();
+        try {
+            return read(longIndex.get(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<V> rangeFind(V start, V end) {
+        throw new UnsupportedOperationException("hash index not support range find, index:" + name);
+    }
+
+    @Override
+    public List<V> leftFind(Object... args) {
+        throw new UnsupportedOperationException("hash index not support left find, index:" + name);
+    }
+
+    @Override
+    public boolean unique() {
+        return true;
+    }
+
+    @Override
+    public boolean supportRange() {
+        return false;
+    }
+
+    @Override
+    public int cardinality() {
+        return -1;
+    }
+
+    /**
+     * 只支持上下界相同且包含全部索引列的等值范围
+     *
+     * @param range
+     * @return
+     */
+    @Override
+    public Iterator<String> findIdKeys(IndexRange range) {
+        Object[] values = range.getLower();
+        if (null == values || !range.isLowerInclusive() || !range.isUpperInclusive() || !Arrays.equals(values, range.getUpper())) {
+            throw new UnsupportedOperationException("hash index only support equality, index:" + name);
+        }
+        Object key = toHashKey(values);
+        Object idKey;
+        Lock lock = lockIndex();
+        try {
+            idKey = get(key);
+        } finally {
+            lock.unlock();
+        }
+        return null == idKey ? Collections.<String>emptyIterator() : Collections.singletonList(String.valueOf(idKey)).iterator();
+    }
+
+    @Override
+    public int getHeight() {
+        //哈希索引没有层级，一次探测即可定位
+        return 1;
+    }
+
+    @Override
+    public void clear() {
+        if (null != longIndex) {
+            this.longIndex = new LongOpenHashMap<>(expectedSize);
+        } else {
+            this.objectIndex = new OpenHashMap<>(expectedSize);
+        }
+    }
+}
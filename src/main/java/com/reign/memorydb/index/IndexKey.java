@@ -0,0 +1,146 @@
+package com.reign.memorydb.index;
+
+import com.reign.memorydb.KeyCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @ClassName: IndexKey
+ * @Description: 二进制索引key，由IndexKeyEncoder按列编码，按无符号字节逐个比较即可得到各列依次比较的结果；
+ * 每一列的编码都是自定界的，前几列的key就是完整key的字节前缀
+ * @Author: wuwx
+ * @Date: 2021-04-12 10:10
+ **/
+public final class IndexKey implements Comparable<IndexKey> {
+
+    //编码后的字节
+    private final byte[] bytes;
+
+    //hash缓存
+    private int hash;
+
+    IndexKey(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * 是否以prefix开头，用于最左前缀匹配
+     *
+     * @param prefix
+     * @return
+     */
+    public boolean startsWith(IndexKey prefix) {
+        byte[] other = prefix.bytes;
+        if (other.length > bytes.length) return false;
+        for (int i = 0; i < other.length; i++) {
+            if (bytes[i] != other[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 前缀上界：大于所有以本key为前缀的key的最小key，即去掉末尾的0xFF后最后一个字节加1；
+     * 全部为0xFF时不存在上界，返回null。最左前缀匹配即为[prefix, prefixUpperBound())范围查找
+     *
+     * @return
+     */
+    public IndexKey prefixUpperBound() {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] != (byte) 0xFF) {
+                byte[] upper = Arrays.copyOf(bytes, i + 1);
+                upper[i]++;
+                return new IndexKey(upper);
+            }
+        }
+        return null;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    @Override
+    public int compareTo(IndexKey o) {
+        byte[] other = o.bytes;
+        int min = Math.min(bytes.length, other.length);
+        for (int i = 0; i < min; i++) {
+            int c = (bytes[i] & 0xFF) - (other[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return bytes.length - other.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IndexKey)) return false;
+        return Arrays.equals(bytes, ((IndexKey) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(bytes);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 堆外索引树使用的定长编解码器，布局为2字节长度加width个字节
+     *
+     * @param width 最大字节数
+     * @return
+     */
+    public static KeyCodec<IndexKey> codec(final int width) {
+        if (width <= 0 || width > Short.MAX_VALUE) throw new IllegalArgumentException("illegal width " + width);
+        return new KeyCodec<IndexKey>() {
+            @Override
+            public int width() {
+                return 2 + width;
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, int offset, IndexKey value) {
+                byte[] bytes = value.bytes;
+                if (bytes.length > width) throw new IllegalArgumentException("index key too long, max width " + width);
+                buffer.putShort(offset, (short) bytes.length);
+                for (int i = 0; i < bytes.length; i++) {
+                    buffer.put(offset + 2 + i, bytes[i]);
+                }
+            }
+
+            @Override
+            public IndexKey read(ByteBuffer buffer, int offset) {
+                byte[] bytes = new byte[buffer.getShort(offset)];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buffer.get(offset + 2 + i);
+                }
+                return new IndexKey(bytes);
+            }
+
+            @Override
+            public int compare(ByteBuffer buffer, int offset, IndexKey key) {
+                int len = buffer.getShort(offset);
+                byte[] other = key.bytes;
+                int min = Math.min(len, other.length);
+                for (int i = 0; i < min; i++) {
+                    int c = (buffer.get(offset + 2 + i) & 0xFF) - (other[i] & 0xFF);
+                    if (c != 0) return c;
+                }
+                return len - other.length;
+            }
+        };
+    }
+}
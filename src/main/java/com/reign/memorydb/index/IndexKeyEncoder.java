@@ -0,0 +1,212 @@
+package com.reign.memorydb.index;
+
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.JdbcField;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * @ClassName: IndexKeyEncoder
+ * @Description: 按JdbcField.jdbcType为每个索引列选择编码方式，生成保持顺序的二进制索引key
+ * <p>
+ * 每列先写1字节null标记（null为0，非null为1），随后：
+ * 整数/日期为符号位翻转的大端定长编码；浮点数翻转后按大端编码；
+ * 字符串以及其他类型按UTF-8编码，0x00转义为0x00 0xFF，以0x00 0x00结尾
+ * @Author: wuwx
+ * @Date: 2021-04-12 10:40
+ **/
+public class IndexKeyEncoder {
+
+    //null标记
+    private static final byte NULL = 0;
+    private static final byte NOT_NULL = 1;
+
+    //各列编码器
+    private final ColumnEncoder[] encoders;
+
+    public IndexKeyEncoder(JdbcField[] fields) {
+        this.encoders = new ColumnEncoder[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            this.encoders[i] = encoderOf(fields[i].jdbcType);
+        }
+    }
+
+    /**
+     * 编码索引列的值，传入前几列时得到最左前缀
+     *
+     * @param values
+     * @return
+     */
+    public IndexKey encode(Object... values) {
+        if (values.length > encoders.length) throw new IllegalArgumentException("too many index values " + values.length);
+        Buffer buffer = new Buffer();
+        for (int i = 0; i < values.length; i++) {
+            if (null == values[i]) {
+                buffer.put(NULL);
+            } else {
+                buffer.put(NOT_NULL);
+                encoders[i].encode(values[i], buffer);
+            }
+        }
+        return new IndexKey(buffer.toBytes());
+    }
+
+    /**
+     * 根据数据库类型选择编码器
+     *
+     * @param type
+     * @return
+     */
+    private static ColumnEncoder encoderOf(Type type) {
+        if (null == type) return STRING;
+        switch (type) {
+            case Int:
+                return INT;
+            case Long:
+                return LONG;
+            case Byte:
+                return BYTE;
+            case Bool:
+                return BOOL;
+            case Float:
+            case Double:
+                return DOUBLE;
+            case Date:
+            case SqlDate:
+            case Time:
+            case Timestamp:
+                return DATE;
+            case Bytes:
+                return BYTES;
+            default:
+                return STRING;
+        }
+    }
+
+    /**
+     * 单列编码器
+     */
+    private interface ColumnEncoder {
+        void encode(Object value, Buffer buffer);
+    }
+
+    private static final ColumnEncoder INT = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            buffer.putInt(((Number) value).intValue() ^ Integer.MIN_VALUE);
+        }
+    };
+
+    private static final ColumnEncoder LONG = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            buffer.putLong(((Number) value).longValue() ^ Long.MIN_VALUE);
+        }
+    };
+
+    private static final ColumnEncoder BYTE = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            buffer.put((byte) (((Number) value).byteValue() ^ Byte.MIN_VALUE));
+        }
+    };
+
+    private static final ColumnEncoder BOOL = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            buffer.put((byte) ((Boolean) value ? 1 : 0));
+        }
+    };
+
+    private static final ColumnEncoder DOUBLE = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            //正数翻转符号位，负数翻转全部位
+            buffer.putLong(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+        }
+    };
+
+    private static final ColumnEncoder DATE = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            buffer.putLong(((Date) value).getTime() ^ Long.MIN_VALUE);
+        }
+    };
+
+    private static final ColumnEncoder BYTES = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            buffer.putEscaped((byte[]) value);
+        }
+    };
+
+    private static final ColumnEncoder STRING = new ColumnEncoder() {
+        @Override
+        public void encode(Object value, Buffer buffer) {
+            buffer.putEscaped(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    };
+
+    /**
+     * 编码缓冲区
+     */
+    private static final class Buffer {
+
+        private byte[] bytes = new byte[16];
+
+        private int size;
+
+        void put(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            bytes[size++] = (byte) (v >>> 24);
+            bytes[size++] = (byte) (v >>> 16);
+            bytes[size++] = (byte) (v >>> 8);
+            bytes[size++] = (byte) v;
+        }
+
+        void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        /**
+         * 写入变长字节，0x00转义为0x00 0xFF，以0x00 0x00结尾，保证较短的值排在前面且可以作为前缀
+         *
+         * @param data
+         */
+        void putEscaped(byte[] data) {
+            //每个0x00占两个字节
+            int zeros = 0;
+            for (byte b : data) {
+                if (b == 0) zeros++;
+            }
+            ensure(data.length + zeros + 2);
+            for (byte b : data) {
+                bytes[size++] = b;
+                if (b == 0) {
+                    bytes[size++] = (byte) 0xFF;
+                }
+            }
+            bytes[size++] = 0;
+            bytes[size++] = 0;
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + n));
+            }
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.reign.memorydb.index;
 
 import com.reign.jdbc.orm.JdbcModel;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -27,6 +29,13 @@ public interface IndexManager<V extends JdbcModel> {
      */
     void insert(V value);
 
+    /**
+     * 批量载入内容，用于内存表启动时构建索引
+     *
+     * @param values
+     */
+    void load(Collection<V> values);
+
     /**
      * 索引中移除内容
      *
@@ -84,6 +93,49 @@ public interface IndexManager<V extends JdbcModel> {
      */
     List<V> leftFind(Object... args);
 
+    /**
+     * 索引列属性名，按索引中的顺序
+     *
+     * @return
+     */
+    String[] columns();
+
+    /**
+     * 是否为唯一索引
+     *
+     * @return
+     */
+    boolean unique();
+
+    /**
+     * 是否支持范围查找以及最左前缀匹配，不支持时只能按全部索引列等值查找
+     *
+     * @return
+     */
+    boolean supportRange();
+
+    /**
+     * 不同索引key的个数，用于估算等值查询的选择性；唯一索引返回-1，表示每个key只对应一行
+     *
+     * @return
+     */
+    int cardinality();
+
+    /**
+     * 按索引列范围查找主键key，供查询计划使用
+     *
+     * @param range
+     * @return
+     */
+    Iterator<String> findIdKeys(IndexRange range);
+
+    /**
+     * 索引是否支持并发读写，是时读取和修改索引都不需要持有内存表的索引锁
+     *
+     * @return
+     */
+    boolean lockFree();
+
     /**
      * 获取树高
      *
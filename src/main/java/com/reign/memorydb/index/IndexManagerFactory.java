@@ -1,10 +1,15 @@
 package com.reign.memorydb.index;
 
 import com.reign.common.Lang;
+import com.reign.jdbc.Type;
 import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcField;
+import com.reign.memorydb.AbstractDomain;
 import com.reign.memorydb.MemoryTable;
 import com.reign.memorydb.annotation.BTreeIndex;
 import com.reign.memorydb.annotation.BTreeIndexs;
+import com.reign.memorydb.annotation.HashIndex;
+import com.reign.memorydb.annotation.HashIndexs;
 
 import java.util.Map;
 
@@ -24,7 +29,7 @@ public class IndexManagerFactory {
      * @param entity
      * @param indexTable
      */
-    public static void initIndex(Class<?> clazz, MemoryTable table, JdbcEntity entity, Map indexTable) {
+    public static <V extends AbstractDomain> void initIndex(Class<?> clazz, MemoryTable<V, ?> table, JdbcEntity entity, Map<String, IndexManager<V>> indexTable) {
         BTreeIndexs indexs = Lang.getAnnotation(clazz, BTreeIndexs.class);
         if (null!=indexs){
             for (BTreeIndex index:indexs.value()){
@@ -35,6 +40,28 @@ public class IndexManagerFactory {
             initIndex(index,table,entity,indexTable);
         }
 
+        HashIndexs hashIndexs = Lang.getAnnotation(clazz, HashIndexs.class);
+        if (null!=hashIndexs){
+            for (HashIndex index:hashIndexs.value()){
+                initIndex(index,table,entity,indexTable);
+            }
+        }else {
+            HashIndex index = Lang.getAnnotation(clazz,HashIndex.class);
+            initIndex(index,table,entity,indexTable);
+        }
+    }
+
+    /**
+     * 初始化哈希索引
+     * @param index
+     * @param table
+     * @param entity
+     * @param indexTable
+     */
+    private static <V extends AbstractDomain> void initIndex(HashIndex index,MemoryTable<V,?> table,JdbcEntity entity,Map<String,IndexManager<V>> indexTable){
+        if (index == null) return;
+        if (indexTable.containsKey(index.name())) throw new RuntimeException("duplicate index name " + index.name());
+        indexTable.put(index.name(),new HashIndexManager<V>(table,entity,index));
     }
 
 
@@ -45,14 +72,47 @@ public class IndexManagerFactory {
      * @param entity
      * @param indexTable
      */
-    private static void initIndex(BTreeIndex index,MemoryTable<?,?> table,JdbcEntity entity,Map<String,IndexManager<?>> indexTable){
+    private static <V extends AbstractDomain> void initIndex(BTreeIndex index,MemoryTable<V,?> table,JdbcEntity entity,Map<String,IndexManager<V>> indexTable){
         if (index == null) return;
-        IndexManager<?> manager = null;
+        checkTreeFlags(index);
+        IndexManager<V> manager = null;
         if (index.unique()){
-            manager = new BTreeIndexManager(table,entity,index);
+            manager = createUniqueIndexManager(index,table,entity);
+        }else if (index.include().length > 0){
+            throw new RuntimeException("include columns only supported by unique index, index:" + index.name());
         }else {
-            manager = new MultiBtreeIndexManager(table,entity,index);
+            manager = new MultiBtreeIndexManager<V>(table,entity,index);
         }
         indexTable.put(index.name(),manager);
     }
+
+    /**
+     * 校验索引树类型，concurrent、copyOnWrite、offHeap只能指定一个
+     * @param index
+     */
+    private static void checkTreeFlags(BTreeIndex index){
+        int count = (index.concurrent() ? 1 : 0) + (index.copyOnWrite() ? 1 : 0) + (index.offHeap() ? 1 : 0);
+        if (count > 1){
+            throw new RuntimeException("concurrent, copyOnWrite and offHeap are mutually exclusive, index:" + index.name());
+        }
+    }
+
+    /**
+     * 创建唯一索引管理器，未指定索引树类型的单列int/long索引使用long类型key的索引树
+     * @param index
+     * @param table
+     * @param entity
+     * @return
+     */
+    private static <V extends AbstractDomain> IndexManager<V> createUniqueIndexManager(BTreeIndex index,MemoryTable<?,?> table,JdbcEntity entity){
+        JdbcField[] fields = AbstractIndexManager.getIndexFields(entity,index.value());
+        //覆盖索引需要在叶子节点存放覆盖列，并发、写时复制、堆外索引树由BTreeIndexManager实现
+        boolean plainTree = !index.concurrent() && !index.copyOnWrite() && !index.offHeap();
+        if (fields.length == 1 && index.include().length == 0 && plainTree){
+            if (Type.Int == fields[0].jdbcType || Type.Long == fields[0].jdbcType){
+                return new LongBTreeIndexManager<V>(table,entity,index);
+            }
+        }
+        return new BTreeIndexManager<V>(table,entity,index);
+    }
 }
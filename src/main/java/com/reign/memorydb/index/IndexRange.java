@@ -0,0 +1,159 @@
+package com.reign.memorydb.index;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: IndexRange
+ * @Description: 索引列范围条件，上下界为索引前几列的值，可以是开区间、闭区间或不限制。
+ * 例如 IndexRange.between(start, end)、IndexRange.atLeast(start).lessThan(end)、IndexRange.greaterThan(playerId, time)
+ * @Author: wuwx
+ * @Date: 2021-04-14 10:10
+ **/
+public final class IndexRange {
+
+    //不限制上下界
+    private static final IndexRange ALL = new IndexRange(null, true, null, true);
+
+    //下界索引列的值，null表示不限制
+    private final Object[] lower;
+
+    //是否包含下界
+    private final boolean lowerInclusive;
+
+    //上界索引列的值，null表示不限制
+    private final Object[] upper;
+
+    //是否包含上界
+    private final boolean upperInclusive;
+
+    private IndexRange(Object[] lower, boolean lowerInclusive, Object[] upper, boolean upperInclusive) {
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+    }
+
+    /**
+     * 不限制范围
+     *
+     * @return
+     */
+    public static IndexRange all() {
+        return ALL;
+    }
+
+    /**
+     * 单列闭区间[start, end]
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    public static IndexRange between(Object start, Object end) {
+        return new IndexRange(new Object[]{start}, true, new Object[]{end}, true);
+    }
+
+    /**
+     * 大于等于values
+     *
+     * @param values 前几列索引列的值
+     * @return
+     */
+    public static IndexRange atLeast(Object... values) {
+        return ALL.from(values, true);
+    }
+
+    /**
+     * 大于values
+     *
+     * @param values 前几列索引列的值
+     * @return
+     */
+    public static IndexRange greaterThan(Object... values) {
+        return ALL.from(values, false);
+    }
+
+    /**
+     * 小于等于values
+     *
+     * @param values 前几列索引列的值
+     * @return
+     */
+    public static IndexRange atMost(Object... values) {
+        return ALL.to(values, true);
+    }
+
+    /**
+     * 小于values
+     *
+     * @param values 前几列索引列的值
+     * @return
+     */
+    public static IndexRange lessThan(Object... values) {
+        return ALL.to(values, false);
+    }
+
+    /**
+     * 设置下界
+     *
+     * @param values    前几列索引列的值
+     * @param inclusive 是否包含
+     * @return 新的范围
+     */
+    public IndexRange from(Object[] values, boolean inclusive) {
+        return new IndexRange(values.clone(), inclusive, upper, upperInclusive);
+    }
+
+    /**
+     * 设置上界
+     *
+     * @param values    前几列索引列的值
+     * @param inclusive 是否包含
+     * @return 新的范围
+     */
+    public IndexRange to(Object[] values, boolean inclusive) {
+        return new IndexRange(lower, lowerInclusive, values.clone(), inclusive);
+    }
+
+    /**
+     * 增加上界，小于等于values
+     *
+     * @param values
+     * @return
+     */
+    public IndexRange andAtMost(Object... values) {
+        return to(values, true);
+    }
+
+    /**
+     * 增加上界，小于values
+     *
+     * @param values
+     * @return
+     */
+    public IndexRange andLessThan(Object... values) {
+        return to(values, false);
+    }
+
+    public Object[] getLower() {
+        return lower;
+    }
+
+    public boolean isLowerInclusive() {
+        return lowerInclusive;
+    }
+
+    public Object[] getUpper() {
+        return upper;
+    }
+
+    public boolean isUpperInclusive() {
+        return upperInclusive;
+    }
+
+    @Override
+    public String toString() {
+        return (null == lower ? "(-inf" : (lowerInclusive ? "[" : "(") + Arrays.toString(lower))
+                + ", " + (null == upper ? "+inf)" : Arrays.toString(upper) + (upperInclusive ? "]" : ")"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.reign.memorydb.index;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: IndexRow
+ * @Description: 覆盖索引叶子节点中存放的行，包含主键以及写入索引时覆盖列的值；不可变，直接返回给调用方
+ * @Author: wuwx
+ * @Date: 2021-04-15 10:30
+ **/
+public final class IndexRow {
+
+    //主键，int/long主键的表为Long，否则为主键key
+    private final Object id;
+
+    //覆盖列名，同一索引的所有行共享
+    private final String[] columns;
+
+    //覆盖列的值
+    private final Object[] values;
+
+    IndexRow(Object id, String[] columns, Object[] values) {
+        this.id = id;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    public String getIdKey() {
+        return String.valueOf(id);
+    }
+
+    /**
+     * 主键，int/long主键的表返回Long，不生成字符串key
+     *
+     * @return
+     */
+    public Object getId() {
+        return id;
+    }
+
+    /**
+     * 按@BTreeIndex.include中的顺序获取覆盖列的值
+     *
+     * @param i
+     * @return
+     */
+    public Object get(int i) {
+        return values[i];
+    }
+
+    /**
+     * 按列名获取覆盖列的值
+     *
+     * @param column
+     * @return
+     */
+    public Object get(String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) return values[i];
+        }
+        throw new IllegalArgumentException("column not included in index: " + column);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public String toString() {
+        return id + Arrays.toString(values);
+    }
+}
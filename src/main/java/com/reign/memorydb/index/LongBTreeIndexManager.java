@@ -0,0 +1,236 @@
+package com.reign.memorydb.index;
+
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcModel;
+import com.reign.memorydb.LongBPlusTree;
+import com.reign.memorydb.MemoryTable;
+import com.reign.memorydb.annotation.BTreeIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * @ClassName: LongBTreeIndexManager
+ * @Description: 单列int/long索引管理器，索引树直接使用long作为key，int索引列扩展为long
+ * @Author: wuwx
+ * @Date: 2021-04-06 11:52
+ **/
+public class LongBTreeIndexManager<V extends JdbcModel> extends AbstractIndexManager<V> {
+
+    //索引树，值为主键，int/long主键存放Long，其他主键存放主键key
+    private LongBPlusTree<Object> indexTree;
+
+    //主键是否为int/long
+    private boolean primitiveId;
+
+    //索引树阶数
+    private int order;
+
+
+    /**
+     * 索引管理器构造函数
+     *
+     * @param table
+     * @param entity
+     * @param index
+     */
+    public LongBTreeIndexManager(MemoryTable<?, ?> table, JdbcEntity entity, BTreeIndex index) {
+        super(table, entity, index);
+        this.order = index.order();
+        this.primitiveId = id.isPrimitiveKey();
+        this.indexTree = new LongBPlusTree<>(order);
+    }
+
+    @Override
+    public void insert(V value) {
+        Number indexKey = getKeyValueByObject(value);
+        if (null == indexKey) return;
+        indexTree.insert(indexKey.longValue(), idOf(value));
+    }
+
+    /**
+     * 对象的主键，int/long主键不转换为字符串
+     *
+     * @param value
+     * @return
+     */
+    private Object idOf(V value) {
+        return primitiveId ? (Object) id.getLongKeyByObject(value) : id.getKeyValueByObject(value);
+    }
+
+    @Override
+    public void load(Collection<V> values) {
+        for (V value : values) {
+            insert(value);
+        }
+    }
+
+    /**
+     * 根据对象获取索引key值
+     *
+     * @param obj
+     * @return
+     */
+    private Number getKeyValueByObject(Object obj) {
+        return (Number) getFieldValue(fields[0], obj);
+    }
+
+    @Override
+    public void remove(V value) {
+        Number indexKey = getKeyValueByObject(value);
+        if (null == indexKey) return;
+        indexTree.remove(indexKey.longValue());
+    }
+
+    @Override
+    public void remove(Object... args) {
+        indexTree.remove(((Number) args[0]).longValue());
+    }
+
+    @Override
+    public void update(V oldValue, V newValue) {
+        if (oldValue == null) return;
+        Number oldIndexKey = getKeyValueByObject(oldValue);
+        Number newIndexKey = getKeyValueByObject(newValue);
+        if (null == oldIndexKey ? null == newIndexKey : oldIndexKey.equals(newIndexKey)) return;
+        if (null != oldIndexKey) {
+            indexTree.remove(oldIndexKey.longValue());
+        }
+        if (null != newIndexKey) {
+            indexTree.insert(newIndexKey.longValue(), idOf(newValue));
+        }
+    }
+
+    @Override
+    public V find(V value) {
+        Number indexKey = getKeyValueByObject(value);
+        if (null == indexKey) return null;
+        return findByKey(indexKey.longValue());
+    }
+
+    @Override
+    public V find(Object... args) {
+        return findByKey(((Number) args[0]).longValue());
+    }
+
+    /**
+     * 等值查找，在索引读锁内读取索引树和主表
+     *
+     * @param key
+     * @return
+     */
+    private V findByKey(long key) {
+        Lock lock = lockIndex();
+        try {
+            return read(indexTree.find(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<V> rangeFind(V start, V end) {
+        Number startKey = getKeyValueByObject(start);
+        Number endKey = getKeyValueByObject(end);
+        Lock lock = lockIndex();
+        try {
+            List<Object> idKeys = indexTree.rangeFind(startKey.longValue(), endKey.longValue());
+            List<V> resultList = new ArrayList<>(idKeys.size());
+            for (Object idKey : idKeys) {
+                V v = read(idKey);
+                if (null != v) {
+                    resultList.add(v);
+                }
+            }
+            return resultList;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<V> leftFind(Object... args) {
+        //单列索引，最左匹配即等值匹配
+        V v = find(args);
+        return null == v ? Collections.<V>emptyList() : Collections.singletonList(v);
+    }
+
+    @Override
+    public boolean unique() {
+        return true;
+    }
+
+    @Override
+    public int cardinality() {
+        return -1;
+    }
+
+    /**
+     * 单列整数索引，开区间边界转换为相邻整数，不限制的边界取long的最值
+     *
+     * @param range
+     * @return
+     */
+    @Override
+    public Iterator<String> findIdKeys(IndexRange range) {
+        long start = Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        if (null != range.getLower() && range.getLower().length > 0) {
+            start = ((Number) range.getLower()[0]).longValue();
+            if (!range.isLowerInclusive()) {
+                if (start == Long.MAX_VALUE) return Collections.emptyIterator();
+                start++;
+            }
+        }
+        if (null != range.getUpper() && range.getUpper().length > 0) {
+            end = ((Number) range.getUpper()[0]).longValue();
+            if (!range.isUpperInclusive()) {
+                if (end == Long.MIN_VALUE) return Collections.emptyIterator();
+                end--;
+            }
+        }
+        if (start > end) return Collections.emptyIterator();
+        List<Object> ids;
+        Lock lock = lockIndex();
+        try {
+            ids = indexTree.rangeFind(start, end);
+        } finally {
+            lock.unlock();
+        }
+        return toIdKeys(ids.iterator());
+    }
+
+    /**
+     * 主键转换为主键key
+     *
+     * @param ids
+     * @return
+     */
+    private static Iterator<String> toIdKeys(final Iterator<Object> ids) {
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return String.valueOf(ids.next());
+            }
+        };
+    }
+
+    @Override
+    public int getHeight() {
+        return indexTree.getHeight();
+    }
+
+    @Override
+    public void clear() {
+        this.indexTree = new LongBPlusTree<>(order);
+    }
+}
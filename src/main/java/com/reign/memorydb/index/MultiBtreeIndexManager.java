@@ -1,10 +1,257 @@
 package com.reign.memorydb.index;
 
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcModel;
+import com.reign.memorydb.MemoryTable;
+import com.reign.memorydb.MultiBPlusTree;
+import com.reign.memorydb.PostingList;
+import com.reign.memorydb.TreeCursor;
+import com.reign.memorydb.annotation.BTreeIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.locks.Lock;
+
 /**
  * @ClassName: MultiBtreeIndexManager
- * @Description: 管理器
+ * @Description: 非唯一索引管理器，同一个索引key对应多个主键key。
+ * int/long主键的表以Long存放主键，每个索引key下的主键为PostingList
  * @Author: wuwx
  * @Date: 2021-04-02 17:17
  **/
-public class MultiBtreeIndexManager {
+public class MultiBtreeIndexManager<V extends JdbcModel> extends AbstractIndexManager<V> {
+
+    //索引树，int/long主键的表value为Long，其他表value为主键key
+    private MultiBPlusTree<IndexKey, Object> indexTree;
+
+    //索引树阶数
+    private int order;
+
+    //主键是否为int/long
+    private boolean primitiveId;
+
+
+    /**
+     * 索引管理器构造函数
+     *
+     * @param table
+     * @param entity
+     * @param index
+     */
+    public MultiBtreeIndexManager(MemoryTable<?, ?> table, JdbcEntity entity, BTreeIndex index) {
+        super(table, entity, index);
+        //非唯一索引只有普通索引树，由内存表的锁保护
+        if (index.concurrent() || index.copyOnWrite() || index.offHeap()) {
+            throw new RuntimeException("non-unique index not support concurrent, copyOnWrite or offHeap, index:" + index.name());
+        }
+        this.order = index.order();
+        this.primitiveId = id.isPrimitiveKey();
+        this.indexTree = new MultiBPlusTree<>(order, primitiveId);
+    }
+
+    /**
+     * 对象的主键，int/long主键不转换为字符串
+     *
+     * @param value
+     * @return
+     */
+    private Object idOf(V value) {
+        return primitiveId ? (Object) id.getLongKeyByObject(value) : id.getKeyValueByObject(value);
+    }
+
+    @Override
+    public void insert(V value) {
+        indexTree.insert(getIndexKey(value), idOf(value));
+    }
+
+    @Override
+    public void load(Collection<V> values) {
+        for (V value : values) {
+            insert(value);
+        }
+    }
+
+    @Override
+    public void remove(V value) {
+        indexTree.remove(getIndexKey(value), idOf(value));
+    }
+
+    /**
+     * 删除索引key下的所有主键
+     *
+     * @param args 全部索引列的值
+     */
+    @Override
+    public void remove(Object... args) {
+        indexTree.remove(toIndexKey(args));
+    }
+
+    @Override
+    public void update(V oldValue, V newValue) {
+        if (oldValue == null) return;
+        IndexKey oldIndexKey = getIndexKey(oldValue);
+        IndexKey newIndexKey = getIndexKey(newValue);
+        if (oldIndexKey.equals(newIndexKey)) return;
+        //只把当前主键从旧key移动到新key，不影响同一key下的其他主键
+        Object idKey = idOf(newValue);
+        indexTree.remove(oldIndexKey, idKey);
+        indexTree.insert(newIndexKey, idKey);
+    }
+
+    /**
+     * 查找与value索引列相同的所有对象
+     *
+     * @param value
+     * @return List<V>
+     */
+    @Override
+    public List<V> find(V value) {
+        return findAll(getIndexKey(value));
+    }
+
+    /**
+     * 查找索引列等于args的所有对象
+     *
+     * @param args 全部索引列的值
+     * @return List<V>
+     */
+    @Override
+    public List<V> find(Object... args) {
+        return findAll(toIndexKey(args));
+    }
+
+    /**
+     * 在索引读锁内读取key下的主键集合，集合会被索引修改改变
+     *
+     * @param indexKey
+     * @return
+     */
+    private List<V> findAll(IndexKey indexKey) {
+        Lock lock = lockIndex();
+        try {
+            return readAll(indexTree.find(indexKey));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<V> rangeFind(V start, V end) {
+        IndexKey startKey = getIndexKey(start);
+        IndexKey endKey = getIndexKey(end);
+        List<Object> idKeys = new ArrayList<>();
+        Lock lock = lockIndex();
+        try {
+            TreeCursor<IndexKey, Object> cursor = indexTree.cursor();
+            for (boolean valid = cursor.seek(startKey); valid && endKey.compareTo(cursor.key()) >= 0; valid = cursor.next()) {
+                idKeys.add(cursor.value());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return readAll(idKeys);
+    }
+
+    /**
+     * 最左前缀匹配，定位到前缀后顺序扫描
+     *
+     * @param args 前几列索引列的值
+     * @return
+     */
+    @Override
+    public List<V> leftFind(Object... args) {
+        IndexKey prefix = toIndexKey(args);
+        List<Object> idKeys = new ArrayList<>();
+        Lock lock = lockIndex();
+        try {
+            TreeCursor<IndexKey, Object> cursor = indexTree.cursor();
+            for (boolean valid = cursor.seek(prefix); valid && cursor.key().startsWith(prefix); valid = cursor.next()) {
+                idKeys.add(cursor.value());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return readAll(idKeys);
+    }
+
+    /**
+     * 根据主键key读取对象，忽略已经被删除的对象
+     *
+     * @param idKeys Long或String主键
+     * @return
+     */
+    private List<V> readAll(Collection<?> idKeys) {
+        if (null == idKeys || idKeys.isEmpty()) return Collections.emptyList();
+        return readByIdKeys(idKeys.iterator());
+    }
+
+    @Override
+    public boolean unique() {
+        return false;
+    }
+
+    @Override
+    public int cardinality() {
+        return indexTree.keyCount();
+    }
+
+    /**
+     * 在索引读锁内取出范围内的主键；int/long主键直接合并各个key的PostingList
+     *
+     * @param range
+     * @return
+     */
+    @Override
+    public Iterator<String> findIdKeys(IndexRange range) {
+        IndexKey[] bounds = toBounds(range);
+        if (null == bounds) return Collections.emptyIterator();
+        Lock lock = lockIndex();
+        try {
+            if (primitiveId) return toIdKeys(indexTree.unionRange(bounds[0], bounds[1]));
+            List<String> idKeys = new ArrayList<>();
+            TreeCursor<IndexKey, Object> cursor = indexTree.cursor();
+            boolean valid = null == bounds[0] ? cursor.first() : cursor.seek(bounds[0]);
+            for (; valid && (null == bounds[1] || cursor.key().compareTo(bounds[1]) < 0); valid = cursor.next()) {
+                idKeys.add((String) cursor.value());
+            }
+            return idKeys.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 遍历时再把主键转换为主键key
+     *
+     * @param ids
+     * @return
+     */
+    private static Iterator<String> toIdKeys(PostingList ids) {
+        final PrimitiveIterator.OfLong it = ids.iterator();
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return String.valueOf(it.nextLong());
+            }
+        };
+    }
+
+    @Override
+    public int getHeight() {
+        return indexTree.getHeight();
+    }
+
+    @Override
+    public void clear() {
+        this.indexTree = new MultiBPlusTree<>(order, primitiveId);
+    }
 }
@@ -0,0 +1,152 @@
+package com.reign.memorydb.query;
+
+import java.util.Date;
+
+/**
+ * @ClassName: Condition
+ * @Description: 单列查询条件，等值条件的上下界相同且都包含；上界或下界为null表示不限制。列值为null时不匹配任何条件
+ * @Author: wuwx
+ * @Date: 2021-04-15 14:10
+ **/
+public final class Condition {
+
+    //列属性名
+    private final String column;
+
+    //下界
+    private final Object lower;
+
+    //是否包含下界
+    private final boolean lowerInclusive;
+
+    //上界
+    private final Object upper;
+
+    //是否包含上界
+    private final boolean upperInclusive;
+
+    Condition(String column, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+        this.column = column;
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+    }
+
+    /**
+     * 与同一列上的另一个条件合并，取更严格的上下界
+     *
+     * @param other
+     * @return
+     */
+    Condition and(Condition other) {
+        Object newLower = lower;
+        boolean newLowerInclusive = lowerInclusive;
+        if (null != other.lower) {
+            int c = null == lower ? -1 : compare(lower, other.lower);
+            if (c < 0 || (c == 0 && !other.lowerInclusive)) {
+                newLower = other.lower;
+                newLowerInclusive = other.lowerInclusive;
+            }
+        }
+        Object newUpper = upper;
+        boolean newUpperInclusive = upperInclusive;
+        if (null != other.upper) {
+            int c = null == upper ? 1 : compare(upper, other.upper);
+            if (c > 0 || (c == 0 && !other.upperInclusive)) {
+                newUpper = other.upper;
+                newUpperInclusive = other.upperInclusive;
+            }
+        }
+        return new Condition(column, newLower, newLowerInclusive, newUpper, newUpperInclusive);
+    }
+
+    /**
+     * 是否为等值条件
+     *
+     * @return
+     */
+    public boolean isEquality() {
+        return null != lower && lowerInclusive && upperInclusive && null != upper && compare(lower, upper) == 0;
+    }
+
+    /**
+     * 是否同时有上下界
+     *
+     * @return
+     */
+    public boolean isBounded() {
+        return null != lower && null != upper;
+    }
+
+    /**
+     * 判断列值是否满足条件
+     *
+     * @param value
+     * @return
+     */
+    public boolean match(Object value) {
+        if (null == value) return false;
+        if (null != lower) {
+            int c = compare(value, lower);
+            if (c < 0 || (c == 0 && !lowerInclusive)) return false;
+        }
+        if (null != upper) {
+            int c = compare(value, upper);
+            if (c > 0 || (c == 0 && !upperInclusive)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 比较两个值，不同类型的整数按long比较，整数与浮点数按double比较
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Date && b instanceof Date) {
+            return Long.compare(((Date) a).getTime(), ((Date) b).getTime());
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static boolean isIntegral(Object n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Object getLower() {
+        return lower;
+    }
+
+    public boolean isLowerInclusive() {
+        return lowerInclusive;
+    }
+
+    public Object getUpper() {
+        return upper;
+    }
+
+    public boolean isUpperInclusive() {
+        return upperInclusive;
+    }
+
+    @Override
+    public String toString() {
+        if (isEquality()) return column + " = " + lower;
+        return column + " in " + (null == lower ? "(-inf" : (lowerInclusive ? "[" : "(") + lower)
+                + ", " + (null == upper ? "+inf)" : upper + (upperInclusive ? "]" : ")"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.reign.memorydb.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @ClassName: Query
+ * @Description: 内存表查询条件，各列条件之间为and关系，同一列的多个条件合并为更严格的范围。
+ * 条件值的类型需要与列类型一致，例如int列使用Integer
+ * <pre>
+ *     table.query(new Query().eq("playerId", playerId).between("createTime", start, end));
+ * </pre>
+ * @Author: wuwx
+ * @Date: 2021-04-15 14:30
+ **/
+public class Query {
+
+    //按列属性名保存的条件
+    private final Map<String, Condition> conditions = new LinkedHashMap<>();
+
+    /**
+     * 等于
+     *
+     * @param column 列属性名
+     * @param value
+     * @return
+     */
+    public Query eq(String column, Object value) {
+        return add(new Condition(column, value, true, value, true));
+    }
+
+    /**
+     * 大于
+     *
+     * @param column
+     * @param value
+     * @return
+     */
+    public Query gt(String column, Object value) {
+        return add(new Condition(column, value, false, null, true));
+    }
+
+    /**
+     * 大于等于
+     *
+     * @param column
+     * @param value
+     * @return
+     */
+    public Query ge(String column, Object value) {
+        return add(new Condition(column, value, true, null, true));
+    }
+
+    /**
+     * 小于
+     *
+     * @param column
+     * @param value
+     * @return
+     */
+    public Query lt(String column, Object value) {
+        return add(new Condition(column, null, true, value, false));
+    }
+
+    /**
+     * 小于等于
+     *
+     * @param column
+     * @param value
+     * @return
+     */
+    public Query le(String column, Object value) {
+        return add(new Condition(column, null, true, value, true));
+    }
+
+    /**
+     * 闭区间[start, end]
+     *
+     * @param column
+     * @param start
+     * @param end
+     * @return
+     */
+    public Query between(String column, Object start, Object end) {
+        return add(new Condition(column, start, true, end, true));
+    }
+
+    private Query add(Condition condition) {
+        if (null == condition.getLower() && null == condition.getUpper()) {
+            throw new IllegalArgumentException("condition value must not be null, column:" + condition.getColumn());
+        }
+        Condition old = conditions.get(condition.getColumn());
+        conditions.put(condition.getColumn(), null == old ? condition : old.and(condition));
+        return this;
+    }
+
+    /**
+     * 获取列上的条件
+     *
+     * @param column
+     * @return 没有条件时返回null
+     */
+    public Condition get(String column) {
+        return conditions.get(column);
+    }
+
+    public Collection<Condition> getConditions() {
+        return new ArrayList<>(conditions.values());
+    }
+
+    @Override
+    public String toString() {
+        return conditions.values().toString();
+    }
+}
@@ -0,0 +1,166 @@
+package com.reign.memorydb.query;
+
+import com.reign.jdbc.orm.JdbcField;
+import com.reign.memorydb.PostingList;
+import com.reign.memorydb.index.IndexManager;
+import com.reign.memorydb.index.IndexRange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * @ClassName: QueryPlan
+ * @Description: 查询计划，由QueryPlanner生成：全表扫描、单个索引范围查找或者两个索引结果取交集；
+ * 从索引得到的行仍需按全部条件过滤
+ * @Author: wuwx
+ * @Date: 2021-04-15 15:00
+ **/
+public class QueryPlan {
+
+    //使用的索引访问，为空表示全表扫描
+    private final List<Access> accesses;
+
+    //估算代价
+    private final double cost;
+
+    //估算返回行数
+    private final double rows;
+
+    //条件列
+    private final JdbcField[] fields;
+
+    //条件，与fields一一对应
+    private final Condition[] conditions;
+
+    //主键是否为int/long，是时使用PostingList求交集
+    private final boolean primitiveId;
+
+    QueryPlan(List<Access> accesses, double cost, double rows, JdbcField[] fields, Condition[] conditions, boolean primitiveId) {
+        this.accesses = accesses;
+        this.cost = cost;
+        this.rows = rows;
+        this.fields = fields;
+        this.conditions = conditions;
+        this.primitiveId = primitiveId;
+    }
+
+    /**
+     * 是否全表扫描
+     *
+     * @return
+     */
+    public boolean isScan() {
+        return accesses.isEmpty();
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public double getRows() {
+        return rows;
+    }
+
+    /**
+     * 通过索引得到候选主键key，多个索引时求交集
+     *
+     * @return
+     */
+    public Iterator<String> idKeys() {
+        if (isScan()) throw new IllegalStateException("scan plan has no index");
+        Iterator<String> first = accesses.get(0).idKeys();
+        if (accesses.size() == 1) return first;
+        Iterator<String> second = accesses.get(1).idKeys();
+        if (primitiveId) {
+            PostingList result = PostingList.intersection(toPostingList(first), toPostingList(second));
+            List<String> idKeys = new ArrayList<>(result.size());
+            for (PrimitiveIterator.OfLong it = result.iterator(); it.hasNext(); ) {
+                idKeys.add(String.valueOf(it.nextLong()));
+            }
+            return idKeys.iterator();
+        }
+        Set<String> set = new HashSet<>();
+        while (first.hasNext()) {
+            set.add(first.next());
+        }
+        List<String> idKeys = new ArrayList<>();
+        while (second.hasNext()) {
+            String idKey = second.next();
+            if (set.contains(idKey)) {
+                idKeys.add(idKey);
+            }
+        }
+        return idKeys.iterator();
+    }
+
+    private static PostingList toPostingList(Iterator<String> idKeys) {
+        PostingList list = new PostingList();
+        while (idKeys.hasNext()) {
+            list.add(Long.parseLong(idKeys.next()));
+        }
+        return list;
+    }
+
+    /**
+     * 判断对象是否满足全部条件
+     *
+     * @param obj
+     * @return
+     */
+    public boolean match(Object obj) {
+        for (int i = 0; i < fields.length; i++) {
+            if (!conditions[i].match(fields[i].getValue(obj))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (isScan()) {
+            sb.append("scan");
+        } else {
+            for (int i = 0; i < accesses.size(); i++) {
+                if (i > 0) sb.append(" intersect ");
+                sb.append(accesses.get(i));
+            }
+        }
+        return sb.append(String.format(" rows=%.1f cost=%.1f", rows, cost)).toString();
+    }
+
+    /**
+     * 单个索引的访问方式
+     */
+    static final class Access {
+
+        //索引
+        final IndexManager<?> index;
+
+        //索引列范围
+        final IndexRange range;
+
+        //估算返回行数
+        final double rows;
+
+        Access(IndexManager<?> index, IndexRange range, double rows) {
+            this.index = index;
+            this.range = range;
+            this.rows = rows;
+        }
+
+        Iterator<String> idKeys() {
+            Iterator<String> idKeys = index.findIdKeys(range);
+            return null == idKeys ? Collections.<String>emptyIterator() : idKeys;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("index %s %s rows=%.1f", index.name(), range, rows);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.reign.memorydb.query;
+
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcField;
+import com.reign.memorydb.index.IndexManager;
+import com.reign.memorydb.index.IndexRange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @ClassName: QueryPlanner
+ * @Description: 基于代价的查询计划生成器。
+ * 对每个索引取最左连续的等值列以及紧随其后的一个范围列，按索引的基数估算返回行数：
+ * 全部列等值时为 rows / cardinality，只匹配前k列时按 (1 / cardinality)^(k / n) 插值，范围条件再乘以固定选择率。
+ * 在全表扫描、代价最低的索引以及两个索引求交集之间选择代价最低的方案
+ * @Author: wuwx
+ * @Date: 2021-04-15 15:30
+ **/
+public final class QueryPlanner {
+
+    //单边范围条件的选择率
+    private static final double OPEN_RANGE_SELECTIVITY = 1.0 / 3;
+
+    //双边范围条件的选择率
+    private static final double BOUNDED_RANGE_SELECTIVITY = 1.0 / 4;
+
+    //全表扫描时每行的代价
+    private static final double SCAN_ROW_COST = 1;
+
+    //从索引读取一个主键key的代价
+    private static final double INDEX_ROW_COST = 1;
+
+    //根据主键key回表读取并过滤一行的代价
+    private static final double FETCH_ROW_COST = 3;
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * 生成查询计划
+     *
+     * @param query
+     * @param entity
+     * @param indexes  内存表上的全部索引
+     * @param rowCount 表中的行数
+     * @return
+     */
+    public static QueryPlan plan(Query query, JdbcEntity entity, Collection<? extends IndexManager<?>> indexes, int rowCount) {
+        Collection<Condition> conditions = query.getConditions();
+        JdbcField[] fields = new JdbcField[conditions.size()];
+        Condition[] conditionArray = conditions.toArray(new Condition[0]);
+        for (int i = 0; i < conditionArray.length; i++) {
+            fields[i] = getField(entity, conditionArray[i].getColumn());
+        }
+        boolean primitiveId = entity.getIdFields().length == 1
+                && (Type.Int == entity.getIdFields()[0].jdbcType || Type.Long == entity.getIdFields()[0].jdbcType);
+        double n = Math.max(rowCount, 1);
+
+        List<QueryPlan.Access> accesses = new ArrayList<>();
+        for (IndexManager<?> index : indexes) {
+            QueryPlan.Access access = access(query, index, n);
+            if (null != access) {
+                accesses.add(access);
+            }
+        }
+        Collections.sort(accesses, new Comparator<QueryPlan.Access>() {
+            @Override
+            public int compare(QueryPlan.Access a, QueryPlan.Access b) {
+                return Double.compare(a.rows, b.rows);
+            }
+        });
+
+        //全表扫描
+        List<QueryPlan.Access> best = Collections.emptyList();
+        double bestCost = n * SCAN_ROW_COST;
+        double bestRows = n;
+        double probe = Math.log(n + 1) / Math.log(2);
+        if (!accesses.isEmpty()) {
+            //代价最低的单个索引
+            QueryPlan.Access first = accesses.get(0);
+            double cost = probe + first.rows * (INDEX_ROW_COST + FETCH_ROW_COST);
+            if (cost < bestCost) {
+                best = Collections.singletonList(first);
+                bestCost = cost;
+                bestRows = first.rows;
+            }
+            //两个索引求交集，假设条件之间相互独立
+            if (accesses.size() > 1) {
+                QueryPlan.Access second = accesses.get(1);
+                double rows = first.rows * second.rows / n;
+                cost = 2 * probe + (first.rows + second.rows) * INDEX_ROW_COST + rows * FETCH_ROW_COST;
+                if (cost < bestCost) {
+                    best = Arrays.asList(first, second);
+                    bestCost = cost;
+                    bestRows = rows;
+                }
+            }
+        }
+        return new QueryPlan(best, bestCost, bestRows, fields, conditionArray, primitiveId);
+    }
+
+    /**
+     * 计算索引的访问方式，索引无法使用时返回null
+     *
+     * @param query
+     * @param index
+     * @param n     表中的行数
+     * @return
+     */
+    private static QueryPlan.Access access(Query query, IndexManager<?> index, double n) {
+        String[] columns = index.columns();
+        int k = 0;
+        while (k < columns.length && null != query.get(columns[k]) && query.get(columns[k]).isEquality()) {
+            k++;
+        }
+        Condition range = k < columns.length ? query.get(columns[k]) : null;
+        if (k == 0 && null == range) return null;
+        if (!index.supportRange() && k < columns.length) return null;
+
+        //估算选择率
+        double cardinality = index.unique() ? n : Math.max(index.cardinality(), 1);
+        double selectivity = Math.pow(1 / cardinality, (double) k / columns.length);
+        if (null != range) {
+            selectivity *= range.isBounded() ? BOUNDED_RANGE_SELECTIVITY : OPEN_RANGE_SELECTIVITY;
+        }
+        double rows = Math.max(n * selectivity, 1);
+
+        //前k列等值，第k+1列范围
+        Object[] values = new Object[k];
+        for (int i = 0; i < k; i++) {
+            values[i] = query.get(columns[i]).getLower();
+        }
+        IndexRange indexRange;
+        if (null == range) {
+            indexRange = IndexRange.atLeast(values).andAtMost(values);
+        } else {
+            indexRange = IndexRange.all()
+                    .from(null == range.getLower() ? values : append(values, range.getLower()), null == range.getLower() || range.isLowerInclusive())
+                    .to(null == range.getUpper() ? values : append(values, range.getUpper()), null == range.getUpper() || range.isUpperInclusive());
+        }
+        return new QueryPlan.Access(index, indexRange, rows);
+    }
+
+    private static Object[] append(Object[] values, Object value) {
+        Object[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static JdbcField getField(JdbcEntity entity, String column) {
+        for (JdbcField field : entity.getFields()) {
+            if (column.equals(field.propertyName)) return field;
+        }
+        throw new RuntimeException("cannot found query column ,column:" + column);
+    }
+}
@@ -0,0 +1,78 @@
+package com.reign.jdbc.orm;
+
+import java.lang.reflect.Field;
+
+/**
+ * @ClassName: FieldAccessorsBenchmark
+ * @Description: 反射读取属性与FieldAccessor读取属性的耗时对比
+ * 运行：java com.reign.jdbc.orm.FieldAccessorsBenchmark
+ * @Author: wuwx
+ * @Date: 2021-04-13 10:20
+ **/
+public final class FieldAccessorsBenchmark {
+
+    private FieldAccessorsBenchmark() {
+    }
+
+    /**
+     * 基准测试使用的实体
+     */
+    public static final class Sample {
+        private int id;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 对比每次setAccessible+Field.get与访问器的耗时
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int count = 20000000;
+        Sample[] samples = new Sample[1024];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = new Sample();
+            samples[i].id = i;
+        }
+        Field idField = Sample.class.getDeclaredField("id");
+        FieldAccessor handleAccessor = FieldAccessors.of(idField);
+        FieldAccessor accessor = FieldAccessors.of(idField, Sample.class.getMethod("getId"), Sample.class.getMethod("setId", int.class));
+        for (int round = 0; round < 3; round++) {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                idField.setAccessible(true);
+                sum += (Integer) idField.get(samples[i & 1023]);
+            }
+            long reflect = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sum += handleAccessor.getInt(samples[i & 1023]);
+            }
+            long handle = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sum += (Integer) accessor.get(samples[i & 1023]);
+            }
+            long boxed = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sum += accessor.getInt(samples[i & 1023]);
+            }
+            long primitive = System.nanoTime() - start;
+            System.out.println(String.format("reflect %.2fns/op, method handle getInt %.2fns/op, lambda get %.2fns/op, lambda getInt %.2fns/op, sum %d",
+                    (double) reflect / count, (double) handle / count, (double) boxed / count, (double) primitive / count, sum));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.reign.memorydb;
+
+import com.reign.common.Lang;
+import com.reign.jdbc.NameStrategy;
+import com.reign.jdbc.Param;
+import com.reign.jdbc.SqlFactory;
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcField;
+import com.reign.jdbc.orm.cache.SingleIdEntity;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @ClassName: AsyncDBExecutorTest
+ * @Description: 接收队列取出后生成的SQL模板、绑定参数，以及同一行未执行SQL的合并
+ * @Author: wuwx
+ * @Date: 2021-04-21 10:40
+ **/
+public class AsyncDBExecutorTest {
+
+    private static final String INSERT_SQL = "insert into foo(id,level) values(?,?)";
+
+    private static final String UPDATE_SQL = "update foo set level=? where id=?";
+
+    private static final String DELETE_SQL = "delete from foo where id=?";
+
+    /**
+     * 测试用的行
+     */
+    public static class Foo {
+        private long id;
+        private int level;
+
+        public Foo() {
+        }
+
+        public Foo(long id, int level) {
+            this.id = id;
+            this.level = level;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+
+    //执行器，不启动执行线程
+    private AsyncDBExecutor executor;
+
+    //实体
+    private JdbcEntity entity;
+
+    @Before
+    public void setUp() throws Exception {
+        JdbcField id = field("id", Type.Long);
+        id.isPrimary = true;
+        JdbcField level = field("level", Type.Int);
+
+        entity = new JdbcEntity();
+        entity.setEntityClass(Foo.class);
+        entity.setTableName("foo");
+        entity.setFields(new JdbcField[]{id, level});
+        entity.setIdFields(new JdbcField[]{id});
+        entity.setId(new SingleIdEntity(id, entity));
+        entity.setInsertSQL(INSERT_SQL);
+        entity.setUpdateSQL(UPDATE_SQL);
+        entity.setDeleteSQL(DELETE_SQL);
+
+        executor = new AsyncDBExecutor();
+        executor.setRingBufferSize(16);
+        executor.init(new SqlFactory(), null);
+    }
+
+    @Test
+    public void deleteByEntityBindsPrimaryKey() throws Exception {
+        executor.addSQL(AsyncOp.DELETE, entity, new Foo(42, 3), 0, 0);
+
+        List<SQLEntry> list = drain();
+        assertEquals(1, list.size());
+        SQLEntry entry = list.get(0);
+        assertEquals(AsyncOp.DELETE, entry.op);
+        assertEquals("42", entry.idKey);
+        assertEquals(DELETE_SQL, entry.sqlIdentify);
+        assertParams(entry.params, 42L);
+    }
+
+    @Test
+    public void deleteByKeyBindsPrimaryKey() throws Exception {
+        executor.addSQL(AsyncOp.DELETE, entity, 42L, 0, 0);
+
+        List<SQLEntry> list = drain();
+        assertEquals(1, list.size());
+        assertEquals("42", list.get(0).idKey);
+        assertParams(list.get(0).params, 42L);
+    }
+
+    @Test
+    public void updateBindsNewValue() throws Exception {
+        executor.addUpdateSQL(entity, new Foo(7, 2), new Foo(7, 1), 0, 0);
+
+        List<SQLEntry> list = drain();
+        assertEquals(1, list.size());
+        assertEquals(UPDATE_SQL, list.get(0).sqlIdentify);
+        assertParams(list.get(0).params, 2, 7L);
+    }
+
+    @Test
+    public void updateAfterInsertRebuildsInsert() throws Exception {
+        executor.addSQL(AsyncOp.INSERT, entity, new Foo(7, 1), 0, 0);
+        executor.addUpdateSQL(entity, new Foo(7, 2), new Foo(7, 1), 0, 0);
+
+        List<SQLEntry> list = drain();
+        assertEquals(1, list.size());
+        assertEquals(AsyncOp.INSERT, list.get(0).op);
+        assertEquals(INSERT_SQL, list.get(0).sqlIdentify);
+        assertParams(list.get(0).params, 7L, 2);
+    }
+
+    @Test
+    public void deleteAfterUpdateReplacesUpdate() throws Exception {
+        executor.addUpdateSQL(entity, new Foo(7, 2), new Foo(7, 1), 0, 0);
+        executor.addSQL(AsyncOp.DELETE, entity, new Foo(7, 2), 0, 0);
+
+        List<SQLEntry> list = drain();
+        assertEquals(1, list.size());
+        assertEquals(AsyncOp.DELETE, list.get(0).op);
+        assertEquals(DELETE_SQL, list.get(0).sqlIdentify);
+        assertParams(list.get(0).params, 7L);
+    }
+
+    @Test
+    public void deleteAfterInsertCancelsBoth() throws Exception {
+        executor.addSQL(AsyncOp.INSERT, entity, new Foo(7, 1), 0, 0);
+        executor.addSQL(AsyncOp.DELETE, entity, 7L, 0, 0);
+
+        List<SQLEntry> list = drain();
+        assertEquals(1, list.size());
+        assertTrue(list.get(0).cancelled);
+    }
+
+    /**
+     * 取出接收队列，返回消息队列
+     *
+     * @return
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    private List<SQLEntry> drain() throws Exception {
+        Method drainIntake = AsyncDBExecutor.class.getDeclaredMethod("drainIntake");
+        drainIntake.setAccessible(true);
+        drainIntake.invoke(executor);
+        Field messageList = AsyncDBExecutor.class.getDeclaredField("messageList");
+        messageList.setAccessible(true);
+        return (List<SQLEntry>) messageList.get(executor);
+    }
+
+    private static void assertParams(List<Param> params, Object... values) {
+        assertEquals(values.length, params.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], params.get(i).obj);
+        }
+    }
+
+    private static JdbcField field(String name, Type type) throws Exception {
+        Lang.MyField myField = new Lang.MyField();
+        myField.field = Foo.class.getDeclaredField(name);
+        myField.fieldName = name;
+        myField.type = Lang.ClassType.PRIMITIVE_TYPE;
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        myField.getter = Foo.class.getMethod("get" + suffix);
+        myField.writter = Foo.class.getMethod("set" + suffix, myField.field.getType());
+        JdbcField field = new JdbcField(myField, new NameStrategy() {
+            @Override
+            public String columnNameToPropertyName(String colomnName) {
+                return colomnName;
+            }
+
+            @Override
+            public String propertyNameToColumnName(String propertyName) {
+                return propertyName;
+            }
+        });
+        field.jdbcType = type;
+        return field;
+    }
+}
@@ -0,0 +1,77 @@
+package com.reign.memorydb;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @ClassName: BPlusTreeBenchmark
+ * @Description: BPlusTree插入、查找与批量构建的耗时对比，以调整前的线性路由10阶树为基线
+ * 运行：java com.reign.memorydb.BPlusTreeBenchmark
+ * @Author: wuwx
+ * @Date: 2021-04-06 10:30
+ **/
+public final class BPlusTreeBenchmark {
+
+    private BPlusTreeBenchmark() {
+    }
+
+    /**
+     * 线性路由基线与二分路由不同阶数的插入与查找耗时对比，10阶为原默认阶数
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int max = 2000000;
+        Integer[] keys = new Integer[max];
+        for (int i = 0; i < max; i++) {
+            keys[i] = i;
+        }
+        Collections.shuffle(Arrays.asList(keys), new Random(max));
+
+        //基线：调整前的线性路由，默认10阶
+        LinearRoutingBPlusTree<Integer, Integer> linear = new LinearRoutingBPlusTree<>();
+        long start = System.currentTimeMillis();
+        for (Integer key : keys) {
+            linear.insert(key, key);
+        }
+        long insertCost = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        long sum = 0;
+        for (Integer key : keys) {
+            sum += linear.find(key);
+        }
+        long findCost = System.currentTimeMillis() - start;
+        System.out.println("linear m=10 height=" + linear.getHeight() + " insert cost " + insertCost + "ms find cost " + findCost + "ms checksum " + sum);
+
+        for (int m : new int[]{10, 64, 128, 256}) {
+            BPlusTree<Integer, Integer> tree = new BPlusTree<>(m);
+            start = System.currentTimeMillis();
+            for (Integer key : keys) {
+                tree.insert(key, key);
+            }
+            insertCost = System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            sum = 0;
+            for (Integer key : keys) {
+                sum += tree.find(key);
+            }
+            findCost = System.currentTimeMillis() - start;
+            System.out.println("binary m=" + m + " height=" + tree.getHeight() + " insert cost " + insertCost + "ms find cost " + findCost + "ms checksum " + sum);
+        }
+
+        //批量构建
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(max);
+        for (Integer key : keys) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, key));
+        }
+        BPlusTree<Integer, Integer> tree = new BPlusTree<>();
+        start = System.currentTimeMillis();
+        tree.bulkLoadUnsorted(entries);
+        System.out.println("bulk load height=" + tree.getHeight() + " cost " + (System.currentTimeMillis() - start) + "ms");
+    }
+}
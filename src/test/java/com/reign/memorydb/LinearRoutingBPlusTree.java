@@ -0,0 +1,396 @@
+package com.reign.memorydb;
+
+/**
+ * @ClassName: LinearRoutingBPlusTree
+ * @Description: 调整前BPlusTree的插入与查找路径：内部节点逐个比较key路由，默认10阶。
+ * 只保留BPlusTreeBenchmark对比需要的部分
+ * @Author: wuwx
+ * @Date: 2021-04-06 10:30
+ **/
+final class LinearRoutingBPlusTree<T extends Comparable<T>, V> {
+
+    /**
+     * 默认阶数，10阶
+     **/
+    private static final int DEFAULT_M = 10;
+
+    //M的大小，偶数个
+    private int M;
+
+    //叶子节点的头结点
+    private LeafNode head;
+
+    private Node root;
+
+    public LinearRoutingBPlusTree() {
+        this(DEFAULT_M);
+    }
+
+    public LinearRoutingBPlusTree(int m) {
+        this.M = m % 2 == 0 ? m : m - 1;
+        //初始时根节点是一个叶子节点
+        this.root = new LeafNode();
+        this.head = (LeafNode) this.root;
+    }
+
+    /**
+     * 设置key，value
+     *
+     * @param key
+     * @param value
+     */
+    public void insert(T key, V value) {
+        if (key == null) throw new NullPointerException("must not be null for key");
+        Node<T, V> node = this.root.insert(key, value);
+        if (node != null) this.root = node;
+    }
+
+    /**
+     * 依据key查找
+     *
+     * @param key
+     * @return
+     */
+    public V find(T key) {
+        return (V) this.root.find(key);
+    }
+
+    /**
+     * 获取树高
+     *
+     * @return
+     */
+    public int getHeight() {
+        int height = 1;
+        Node node = this.root;
+        while (!(node instanceof LeafNode)) {
+            height++;
+            node = ((InternalNode) node).pointers[0];
+        }
+        return height;
+    }
+
+    /**
+     * 内部节点
+     */
+    abstract class Node<T extends Comparable<T>, V> {
+
+        //父节点
+        protected Node<T, V> parent;
+        //keys节点key值
+        protected Object[] keys;
+        //节点大小
+        protected int size;
+
+        /**
+         * 插入数据
+         *
+         * @param key
+         * @param value
+         * @return
+         */
+        abstract Node<T, V> insert(T key, V value);
+
+        /**
+         * 查找数据
+         *
+         * @param key
+         * @return
+         */
+        abstract V find(T key);
+
+        /**
+         * 采用二分法查找key 值
+         *
+         * @param key
+         * @return
+         */
+        protected final int binaryFind(T key) {
+            //找到位置
+            int start = 0;
+            int end = this.size;
+            int middle = (start + end) / 2;
+            while (start < end) {
+                if (start == middle) break;
+                T middleKey = (T) this.keys[middle];
+                int cvalue = key.compareTo(middleKey);
+                if (cvalue == 0) return middle;
+                if (cvalue < 0) {
+                    end = middle;
+                } else {
+                    start = middle;
+                }
+                middle = (start + end) / 2;
+            }
+
+            T middleKey = (T) this.keys[middle];
+            if (key.compareTo(middleKey) == 0) {
+                //找到
+                return middle;
+            }
+            //未找到
+            return -1;
+        }
+
+    }
+
+    /**
+     * 非叶子节点，只存储keys
+     *
+     * @param <T>
+     * @param <V>
+     */
+    class InternalNode<T extends Comparable<T>, V> extends Node<T, V> {
+
+        //指向下一级的指针
+        private Node<T, V>[] pointers;
+
+        public InternalNode() {
+            this.pointers = new Node[M];
+            this.size = 0;
+            this.keys = new Object[M];
+        }
+
+        @Override
+        Node<T, V> insert(T key, V value) {
+            int i = 1;
+            for (; i < this.size; i++) {
+                if (key.compareTo((T) this.keys[i]) < 0) break;
+            }
+
+            return this.pointers[i - 1].insert(key, value);
+        }
+
+        @Override
+        V find(T key) {
+            int i = 1;
+            for (; i < this.size; i++) {
+                if (key.compareTo((T) this.keys[i]) < 0) break;
+            }
+            return this.pointers[i - 1].find(key);
+        }
+
+        /**
+         * 更新key值
+         *
+         * @param newKey
+         * @param oldKey
+         * @param node
+         */
+        public void update(T newKey, T oldKey, Node<T, V> node) {
+            //找到位置
+            int middle = binaryFind(oldKey);
+            if (middle == -1) return;
+            //找到位置了
+            this.keys[middle] = newKey;
+            this.pointers[middle] = node;
+            if (middle == 0 && this.parent != null) {
+                ((InternalNode) this.parent).update(newKey, oldKey, this);
+            }
+        }
+
+        /**
+         * 插入元素
+         *
+         * @param leftKey
+         * @param left
+         * @param rightKey
+         * @param right
+         * @return
+         */
+        private Node<T, V> insert(T leftKey, Node<T, V> left, T rightKey, Node<T, V> right) {
+            //数组为0时
+            if (this.size == 0) {
+                this.keys[0] = leftKey;
+                this.keys[1] = rightKey;
+
+                this.pointers[0] = left;
+                this.pointers[1] = right;
+
+                left.parent = this;
+                right.parent = this;
+                this.size += 2;
+                return this;
+            }
+
+
+            if (this.size >= M) {
+                //查找插入位置
+                int i = 0;
+                for (; i < this.size; i++) {
+                    T curKey = (T) this.keys[i];
+                    if (curKey.compareTo(rightKey) > 0) break;
+                }
+
+                //已满，需要分裂
+                int m = this.size / 2;
+
+                //split the internal node
+                InternalNode<T, V> rightNode = new InternalNode<>();
+                rightNode.size = this.size - m;
+                System.arraycopy(this.keys, m, rightNode.keys, 0, this.size - m);
+                System.arraycopy(this.pointers, m, rightNode.pointers, 0, this.size - m);
+
+                //reset the children's parent to the new node
+                for (int j = 0; j < rightNode.size; j++) {
+                    rightNode.pointers[j].parent = rightNode;
+                }
+
+                //清理自己
+                for (int j = m; j < this.size; j++) {
+                    this.keys[j] = null;
+                    this.pointers[j] = null;
+                }
+                this.size = m;
+
+                //建立新的父节点
+                if (this.parent == null) {
+                    this.parent = new InternalNode<>();
+                }
+                rightNode.parent = this.parent;
+
+                if (i >= m) {
+                    rightNode.insert(null, null, rightKey, right);
+                } else {
+                    this.insert(null, null, rightKey, right);
+                }
+
+                return ((InternalNode<T, V>) this.parent).insert((T) this.keys[0], this, (T) rightNode.keys[0], rightNode);
+            }
+
+            //查找插入位置
+            int i = 0;
+            for (; i < this.size; i++) {
+                T curKey = (T) this.keys[i];
+                if (curKey.compareTo(rightKey) > 0) break;
+            }
+
+            //插入
+            System.arraycopy(this.keys, i, this.keys, i + 1, size - i);
+            System.arraycopy(this.pointers, i, this.pointers, i + 1, size - i);
+            this.keys[i] = rightKey;
+            this.pointers[i] = right;
+            right.parent = this;
+            this.size++;
+            return null;
+        }
+    }
+
+
+    /**
+     * 叶子节点，用来存储keys和真正的value;
+     *
+     * @param <T>
+     * @param <V>
+     */
+    class LeafNode<T extends Comparable<T>, V> extends Node<T, V> {
+
+        //叶节点的前节点
+        protected LeafNode<T, V> previous;
+
+        //叶节点的后节点
+        protected LeafNode<T, V> next;
+
+
+        private Object[] values;
+
+        public LeafNode() {
+            this.size = 0;
+            this.keys = new Object[M];
+            this.values = new Object[M];
+            this.parent = null;
+        }
+
+
+        @Override
+        public Node<T, V> insert(T key, V value) {
+            if (this.size >= M) {
+                //走到这里表明新插入key的大小必定在该node数组中间；需要找到插入的位置
+                int i = 0;
+                for (; i < this.size; i++) {
+                    T curKey = (T) this.keys[i];
+                    int cvalue = curKey.compareTo(key);
+                    if (cvalue == 0) {
+                        //如果插入的key已经存在，则覆盖值
+                        values[i] = value;
+                        return null;
+                    }
+                    if (cvalue > 0) break;
+                }
+                //已满，分裂
+                int m = this.size / 2;
+                //分裂出一个右节点
+                LeafNode<T, V> rightNode = new LeafNode<>();
+                rightNode.size = this.size - m;
+                //对右节点赋值，并且清理自己分裂出去的部分节点数据,保留左边的数据
+                System.arraycopy(this.keys, m, rightNode.keys, 0, rightNode.size);
+                System.arraycopy(this.values, m, rightNode.values, 0, rightNode.size);
+                //清理原节点分裂出去的右边的数据
+                for (int j = m; j < this.size; j++) {
+                    this.keys[j] = null;
+                    this.values[j] = null;
+                }
+                //设置原节点新size;因为M 已经保证必定是偶数；所以分裂出去的两个size相等
+                this.size = m;
+                //设置链接
+                if (next != null) {
+                    next.previous = rightNode;
+                    rightNode.next = next;
+                }
+                if (previous == null) {
+                    head = this;
+                }
+                rightNode.previous = this;
+                this.next = rightNode;
+
+                //插入节点;如果插入的位置大于原节点的中点，则查到分裂出去的右边节点中；否则查到原节点中
+                if (i >= m) {
+                    rightNode.insert(key, value);
+                } else {
+                    this.insert(key, value);
+                }
+
+                //设置父节点
+                if (this.parent == null) {
+                    this.parent = new InternalNode<>();
+                }
+                rightNode.parent = this.parent;
+                //父节点插入
+                return ((InternalNode<T, V>) this.parent).insert((T) this.keys[0], this, (T) rightNode.keys[0], rightNode);
+            }
+
+
+            //若节点没有满，则通过遍历节点中key并比较后找到合适位置并插入
+            int i = 0;
+            T headKey = (T) this.keys[0];
+            for (; i < this.size; i++) {
+                T curKey = (T) this.keys[i];
+                int cvalue = curKey.compareTo(key);
+                if (cvalue == 0) {
+                    values[i] = value;
+                    return null;
+                }
+                if (cvalue > 0) break;
+            }
+
+            System.arraycopy(this.keys, i, this.keys, i + 1, size - i);
+            System.arraycopy(this.values, i, this.values, i + 1, size - i);
+            this.keys[i] = key;
+            this.values[i] = value;
+            this.size++;
+
+            //更新父节点
+            if (i == 0 && this.parent != null) {
+                ((InternalNode<T, V>) this.parent).update(key, headKey, this);
+            }
+            return null;
+        }
+
+        @Override
+        public V find(T key) {
+            if (this.size == 0) return null;
+            int middle = binaryFind(key);
+            return middle != -1 ? (V) this.values[middle] : null;
+        }
+    }
+}
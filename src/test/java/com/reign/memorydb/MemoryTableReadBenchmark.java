@@ -0,0 +1,244 @@
+package com.reign.memorydb;
+
+import com.reign.common.Lang;
+import com.reign.jdbc.NameStrategy;
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.IBaseDao;
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcField;
+import com.reign.jdbc.orm.cache.SingleIdEntity;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @ClassName: MemoryTableReadBenchmark
+ * @Description: MemoryTable主键读取的多线程基准测试，读线程数从1增加到64，对比三种读路径：
+ * long主键表readById(long)（ConcurrentLongHashMap）、long主键表readByIdKey(String)、String主键表readByIdKey(String)（ConcurrentHashMap）。
+ * 表由手工构建的JdbcEntity初始化，DESC由代理的IBaseDao应答，不需要数据库。
+ * 运行：java com.reign.memorydb.MemoryTableReadBenchmark [行数] [每轮毫秒数]
+ * @Author: wuwx
+ * @Date: 2021-04-16 11:20
+ **/
+public final class MemoryTableReadBenchmark {
+
+    //线程数
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private MemoryTableReadBenchmark() {
+    }
+
+    /**
+     * long主键的行
+     */
+    public static class LongRow extends AbstractDomain {
+        private long id;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * String主键的行
+     */
+    public static class StringRow extends AbstractDomain {
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 读路径
+     */
+    private interface ReadPath {
+        Object read(int index);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        final long[] ids = new long[rows];
+        final String[] keys = new String[rows];
+        final MemoryTable<LongRow, Long> longTable = createTable(LongRow.class, Type.Long, "bigint(20)");
+        final MemoryTable<StringRow, String> stringTable = createTable(StringRow.class, Type.String, "varchar(32)");
+        for (int i = 0; i < rows; i++) {
+            ids[i] = i;
+            keys[i] = String.valueOf(i);
+            LongRow longRow = new LongRow();
+            longRow.setId(i);
+            longTable.insert(longRow);
+            StringRow stringRow = new StringRow();
+            stringRow.setId(keys[i]);
+            stringTable.insert(stringRow);
+        }
+
+        ReadPath longById = new ReadPath() {
+            @Override
+            public Object read(int index) {
+                return longTable.readById(ids[index]);
+            }
+        };
+        ReadPath longByKey = new ReadPath() {
+            @Override
+            public Object read(int index) {
+                return longTable.readByIdKey(keys[index]);
+            }
+        };
+        ReadPath stringByKey = new ReadPath() {
+            @Override
+            public Object read(int index) {
+                return stringTable.readByIdKey(keys[index]);
+            }
+        };
+
+        //预热
+        for (int threads : new int[]{1, THREADS[THREADS.length - 1]}) {
+            run(longById, rows, threads, millis);
+            run(longByKey, rows, threads, millis);
+            run(stringByKey, rows, threads, millis);
+        }
+        System.out.println(String.format("%8s %20s %20s %20s", "threads", "long id ops/ms", "long key ops/ms", "string key ops/ms"));
+        for (int threads : THREADS) {
+            System.out.println(String.format("%8d %20.0f %20.0f %20.0f", threads,
+                    run(longById, rows, threads, millis), run(longByKey, rows, threads, millis), run(stringByKey, rows, threads, millis)));
+        }
+    }
+
+    /**
+     * 以单个id字段构建并初始化内存表
+     *
+     * @param clazz
+     * @param idType
+     * @param columnType DESC返回的列类型
+     * @return
+     * @throws NoSuchFieldException
+     * @throws NoSuchMethodException
+     */
+    private static <V extends AbstractDomain, K extends Serializable> MemoryTable<V, K> createTable(
+            Class<V> clazz, Type idType, final String columnType) throws NoSuchFieldException, NoSuchMethodException {
+        Lang.MyField myField = new Lang.MyField();
+        myField.field = clazz.getDeclaredField("id");
+        myField.fieldName = "id";
+        myField.type = Lang.ClassType.PRIMITIVE_TYPE;
+        myField.getter = clazz.getMethod("getId");
+        myField.writter = clazz.getMethod("setId", myField.field.getType());
+        JdbcField field = new JdbcField(myField, new NameStrategy() {
+            @Override
+            public String columnNameToPropertyName(String colomnName) {
+                return colomnName;
+            }
+
+            @Override
+            public String propertyNameToColumnName(String propertyName) {
+                return propertyName.toLowerCase();
+            }
+        });
+        field.jdbcType = idType;
+        field.isPrimary = true;
+
+        JdbcEntity entity = new JdbcEntity();
+        entity.setEntityClass(clazz);
+        entity.setTableName(clazz.getSimpleName().toLowerCase());
+        entity.setFields(new JdbcField[]{field});
+        entity.setIdFields(new JdbcField[]{field});
+        entity.setId(new SingleIdEntity(field, entity));
+
+        //只应答表结构校验的DESC
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!"query".equals(method.getName()) || args.length != 2) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                Map<String, Object> column = new HashMap<>();
+                column.put("COLUMN_NAME", "id");
+                column.put("COLUMN_TYPE", columnType);
+                List<Map<String, Object>> result = new ArrayList<>();
+                result.add(column);
+                return result;
+            }
+        };
+        @SuppressWarnings("unchecked")
+        IBaseDao<V, K> dao = (IBaseDao<V, K>) Proxy.newProxyInstance(IBaseDao.class.getClassLoader(), new Class<?>[]{IBaseDao.class}, handler);
+        MemoryTable<V, K> table = new MemoryTable<>();
+        table.init(dao, entity);
+        return table;
+    }
+
+    /**
+     * 多个线程持续读取millis毫秒
+     *
+     * @param path
+     * @param rows
+     * @param threads
+     * @param millis
+     * @return 每毫秒的读取次数
+     * @throws InterruptedException
+     */
+    private static double run(final ReadPath path, final int rows, int threads, long millis) throws InterruptedException {
+        final LongAdder ops = new LongAdder();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final Object[] sink = new Object[threads];
+        for (int t = 0; t < threads; t++) {
+            final int seed = t * 0x9E3779B9 + 1;
+            final int slot = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    int x = seed;
+                    long count = 0;
+                    Object last = null;
+                    while (!stop.get()) {
+                        for (int i = 0; i < 1024; i++) {
+                            //xorshift随机访问
+                            x ^= x << 13;
+                            x ^= x >>> 17;
+                            x ^= x << 5;
+                            last = path.read((x & Integer.MAX_VALUE) % rows);
+                        }
+                        count += 1024;
+                    }
+                    sink[slot] = last;
+                    ops.add(count);
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        done.await();
+        double elapsed = (System.nanoTime() - begin) / 1e6;
+        return ops.sum() / elapsed;
+    }
+}
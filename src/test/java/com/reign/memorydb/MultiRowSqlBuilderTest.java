@@ -0,0 +1,116 @@
+package com.reign.memorydb;
+
+import com.reign.common.Lang;
+import com.reign.jdbc.NameStrategy;
+import com.reign.jdbc.Param;
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.JdbcEntity;
+import com.reign.jdbc.orm.JdbcField;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @ClassName: MultiRowSqlBuilderTest
+ * @Description: 多行insert的解析，以及整行update按模板本身的列顺序改写为upsert
+ * @Author: wuwx
+ * @Date: 2021-04-21 14:10
+ **/
+public class MultiRowSqlBuilderTest {
+
+    /**
+     * 测试用的行
+     */
+    public static class Foo {
+        private long id;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+    }
+
+    //实体
+    private JdbcEntity entity;
+
+    @Before
+    public void setUp() throws Exception {
+        Lang.MyField myField = new Lang.MyField();
+        myField.field = Foo.class.getDeclaredField("id");
+        myField.fieldName = "id";
+        myField.type = Lang.ClassType.PRIMITIVE_TYPE;
+        myField.getter = Foo.class.getMethod("getId");
+        myField.writter = Foo.class.getMethod("setId", long.class);
+        JdbcField id = new JdbcField(myField, new NameStrategy() {
+            @Override
+            public String columnNameToPropertyName(String colomnName) {
+                return colomnName;
+            }
+
+            @Override
+            public String propertyNameToColumnName(String propertyName) {
+                return propertyName;
+            }
+        });
+        id.jdbcType = Type.Long;
+        id.isPrimary = true;
+
+        entity = new JdbcEntity();
+        entity.setTableName("foo");
+        entity.setIdFields(new JdbcField[]{id});
+    }
+
+    @Test
+    public void insertMergesValues() {
+        MultiRowSqlBuilder builder = MultiRowSqlBuilder.of(entry(AsyncOp.INSERT, "insert into foo(id,a) values(?,?)", 2), false);
+        assertEquals(2, builder.getParamCount());
+        assertEquals("insert into foo(id,a) values(?,?),(?,?)", builder.sql(2));
+    }
+
+    @Test
+    public void updateNotRewrittenWithoutUpsert() {
+        entity.setUpdateSQL("update foo set a=? where id=?");
+        assertNull(MultiRowSqlBuilder.of(entry(AsyncOp.UPDATE, "update foo set a=? where id=?", 2), false));
+    }
+
+    @Test
+    public void upsertFollowsTemplateColumnOrder() {
+        String sql = "UPDATE foo SET `b` = ?, a=? WHERE id = ?";
+        entity.setUpdateSQL(sql);
+        MultiRowSqlBuilder builder = MultiRowSqlBuilder.of(entry(AsyncOp.UPDATE, sql, 3), true);
+        assertEquals(3, builder.getParamCount());
+        assertEquals("INSERT INTO foo (`b`,a,id) VALUES (?,?,?),(?,?,?) ON DUPLICATE KEY UPDATE `b`=VALUES(`b`),a=VALUES(a)", builder.sql(2));
+    }
+
+    @Test
+    public void upsertRejectsNonPrimaryKeyWhere() {
+        String sql = "update foo set a=? where name=?";
+        entity.setUpdateSQL(sql);
+        assertNull(MultiRowSqlBuilder.of(entry(AsyncOp.UPDATE, sql, 2), true));
+    }
+
+    @Test
+    public void upsertRejectsExpressions() {
+        String sql = "update foo set a=a+? where id=?";
+        entity.setUpdateSQL(sql);
+        assertNull(MultiRowSqlBuilder.of(entry(AsyncOp.UPDATE, sql, 2), true));
+    }
+
+    private SQLEntry entry(AsyncOp op, String sql, int paramCount) {
+        SQLEntry entry = new SQLEntry();
+        entry.entity = entity;
+        entry.op = op;
+        entry.idKey = "1";
+        entry.sqlIdentify = sql;
+        entry.params = new ArrayList<>(Arrays.asList(new Param[paramCount]));
+        return entry;
+    }
+}
@@ -0,0 +1,160 @@
+package com.reign.memorydb;
+
+import com.reign.jdbc.Param;
+import com.reign.jdbc.Type;
+import com.reign.jdbc.orm.JdbcEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @ClassName: SqlJournalTest
+ * @Description: 溢写日志写入后重新打开读回，SQL模板与参数的类别、Java类型和值保持不变
+ * @Author: wuwx
+ * @Date: 2021-04-20 15:30
+ **/
+public class SqlJournalTest {
+
+    //日志文件
+    private File file;
+
+    //实体
+    private JdbcEntity entity;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("sql-journal", ".log");
+        file.delete();
+        entity = new JdbcEntity();
+        entity.setTableName("player");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".offset").delete();
+    }
+
+    @Test
+    public void replayRestoresTypedParams() {
+        Timestamp timestamp = new Timestamp(1618900000123L);
+        timestamp.setNanos(123456789);
+        List<Param> params = new ArrayList<>(Arrays.asList(
+                new Param(7, Type.Int),
+                new Param(1L << 40, Type.Long),
+                new Param("a\tb\nc\\d:e\r中文", Type.String),
+                new Param(new BigDecimal("12345.6789"), Type.BigDecimal),
+                new Param(0.1d, Type.Double),
+                new Param(1.5f, Type.Float),
+                new Param(true, Type.Bool),
+                new Param(new Date(1618900000000L), Type.Date),
+                new Param(timestamp, Type.Timestamp),
+                new Param(new byte[]{0, 9, 10, 13, 92, -1}, Type.Bytes),
+                new Param(42, Type.Object),
+                new Param(null, Type.String),
+                null));
+
+        SQLEntry insert = entry(AsyncOp.INSERT, "1", "insert into player(id) values(?)", new ArrayList<>(Arrays.asList(new Param(1, Type.Int))));
+        SQLEntry update = entry(AsyncOp.UPDATE, "1", "update player set a=?,b=?,c=?,d=?,e=?,f=?,g=?,h=?,i=?,j=?,k=?,l=?,m=? where id=1", params);
+        update.parent = insert;
+
+        SqlJournal journal = new SqlJournal(file);
+        journal.append(update);
+        journal.append(entry(AsyncOp.DELETE, null, "delete from player where id=2", null));
+        journal.flush();
+        assertEquals(3, journal.size());
+
+        //重新打开，相当于进程重启后读回
+        SqlJournal replay = new SqlJournal(file);
+        assertEquals(3, replay.size());
+
+        SQLEntry first = replay.peek();
+        assertEquals("player", first.entity.getTableName());
+        assertEquals(AsyncOp.INSERT, first.op);
+        assertEquals("1", first.idKey);
+        assertEquals(insert.sqlIdentify, first.sqlIdentify);
+        assertParams(insert.params, first.params);
+        replay.poll();
+
+        SQLEntry second = replay.peek();
+        assertEquals(AsyncOp.UPDATE, second.op);
+        assertEquals(update.sqlIdentify, second.sqlIdentify);
+        assertParams(params, second.params);
+        replay.poll();
+
+        SQLEntry third = replay.peek();
+        assertEquals(AsyncOp.DELETE, third.op);
+        assertNull(third.idKey);
+        assertEquals("delete from player where id=2", third.sqlIdentify);
+        assertNull(third.params);
+        replay.poll();
+
+        assertTrue(replay.isEmpty());
+        assertNull(replay.peek());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void unsupportedParamWritesNothing() {
+        SQLEntry insert = entry(AsyncOp.INSERT, "1", "insert into player(id) values(?)", new ArrayList<>(Arrays.asList(new Param(1, Type.Int))));
+        SQLEntry update = entry(AsyncOp.UPDATE, "1", "update player set a=? where id=1", new ArrayList<>(Arrays.asList(new Param(new Object(), Type.Object))));
+        update.parent = insert;
+
+        SqlJournal journal = new SqlJournal(file);
+        try {
+            journal.append(update);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //父节点也不写入
+        }
+        assertTrue(journal.isEmpty());
+        assertNull(journal.peek());
+    }
+
+    private SQLEntry entry(AsyncOp op, String idKey, String sqlIdentify, List<Param> params) {
+        SQLEntry entry = new SQLEntry();
+        entry.entity = entity;
+        entry.op = op;
+        entry.idKey = idKey;
+        entry.sqlIdentify = sqlIdentify;
+        entry.params = params;
+        return entry;
+    }
+
+    private static void assertParams(List<Param> expected, List<Param> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Param e = expected.get(i);
+            Param a = actual.get(i);
+            if (null == e) {
+                assertNull(a);
+                continue;
+            }
+            assertEquals(e.type, a.type);
+            if (e.obj instanceof byte[]) {
+                assertArrayEquals((byte[]) e.obj, (byte[]) a.obj);
+            } else if (null == e.obj) {
+                assertNull(a.obj);
+            } else {
+                assertEquals(e.obj.getClass(), a.obj.getClass());
+                assertEquals(e.obj, a.obj);
+            }
+        }
+    }
+}